@@ -0,0 +1,415 @@
+package mgci.jhdap.shogi;
+
+/** A Class holding precomputed attack sets for the pieces of a game of shogi.
+ * The step attacks of every piece type, as given by PieceRules,
+ * are worked out once for every square and side,
+ * so that asking whether a piece on one square attacks another square
+ * is a single lookup instead of a comparison of coordinates.
+ * Attack sets are bitboards, split into low and high halves as in Bitboard.
+ * <br><br>
+ * Sliding attacks are looked up by the occupancy of the line the piece slides along,
+ * which the GameState keeps as a 9-bit set for every rank, file and diagonal.
+ * The tiles a slider reaches along a line depend only on its place in the line
+ * and that occupancy, so they are worked out once for all 512 occupancies
+ * and then spread back onto the board with a second table.
+ * Which of those tiles a piece may slide to, by direction and range,
+ * is a 9-bit mask per line, worked out for every square by compile.
+ */
+public final class Attacks {
+    /** The low halves of the step attacks,
+     * indexed by allegiance+1, then by type code, then by square.
+     * Mercenary pieces do not move, so their attacks are left empty.
+     */
+    private static final long[][][] STEP_LOW = new long[3][PieceType.COUNT][Bitboard.SQUARES];
+
+    /** The high halves of the step attacks,
+     * indexed by allegiance+1, then by type code, then by square.
+     */
+    private static final long[][][] STEP_HIGH = new long[3][PieceType.COUNT][Bitboard.SQUARES];
+
+    /** The tiles a slider reaches along a line of 9 tiles,
+     * indexed by its place in the line and then by the occupancy of the line.
+     * Both are counted in bits, and the reached tiles include the first blocker each way.
+     */
+    private static final int[][] LINE = new int[9][512];
+
+    /** The places along each of its lines that a piece may slide to,
+     * indexed by allegiance+1, then by type code, then by square.
+     * Four 9-bit masks, for the piece's file, rank, diagonal and anti-diagonal from the lowest bits up,
+     * numbered along each line as the line occupancies are. 0 for a piece that does not slide.
+     */
+    private static final long[][][] SLIDE_MASKS = new long[3][PieceType.COUNT][Bitboard.SQUARES];
+
+    /** The low halves of the sliding attacks on an empty board,
+     * indexed by allegiance+1, then by type code, then by square.
+     */
+    private static final long[][][] EMPTY_SLIDES_LOW = new long[3][PieceType.COUNT][Bitboard.SQUARES];
+
+    /** The high halves of the sliding attacks on an empty board,
+     * indexed by allegiance+1, then by type code, then by square.
+     */
+    private static final long[][][] EMPTY_SLIDES_HIGH = new long[3][PieceType.COUNT][Bitboard.SQUARES];
+
+    /** The bits of one line's mask in SLIDE_MASKS. */
+    private static final int LINE_MASK = 0x1FF;
+
+    /** The bitboards of sets of tiles on each rank,
+     * indexed by half (0 for low, 1 for high), y-value, and a set of x-values.
+     */
+    private static final long[][][] RANK = new long[2][9][512];
+
+    /** The bitboards of sets of tiles on each file,
+     * indexed by half, x-value, and a set of y-values.
+     */
+    private static final long[][][] FILE = new long[2][9][512];
+
+    /** The bitboards of sets of tiles on each diagonal of increasing x and y,
+     * indexed by half, x-y+8, and a set of x-values.
+     * x-values that fall off the board on a short diagonal are left out.
+     */
+    private static final long[][][] DIAGONAL = new long[2][17][512];
+
+    /** The bitboards of sets of tiles on each diagonal of increasing x and decreasing y,
+     * indexed by half, x+y, and a set of x-values.
+     */
+    private static final long[][][] ANTI_DIAGONAL = new long[2][17][512];
+
+    /** The tiles strictly between two squares on the same rank, file or diagonal,
+     * indexed by half and then by the two squares.
+     * Empty for squares that do not share a line, or that are next to each other.
+     */
+    private static final long[][][] BETWEEN = new long[2][Bitboard.SQUARES][Bitboard.SQUARES];
+
+    /** The whole rank, file or diagonal through two squares, from one edge of the board to the other,
+     * indexed by half and then by the two squares.
+     * Empty for squares that do not share a line.
+     */
+    private static final long[][][] LINE_THROUGH = new long[2][Bitboard.SQUARES][Bitboard.SQUARES];
+
+    static {
+        for (int place = 0; place < 9; place++) {
+            for (int occupancy = 0; occupancy < 512; occupancy++) {
+                int reached = 0;
+                for (int i = place+1; i < 9 && (reached & occupancy) == 0; i++) {
+                    reached |= 1 << i;
+                }
+                int behind = 0;
+                for (int i = place-1; i >= 0 && (behind & occupancy) == 0; i--) {
+                    behind |= 1 << i;
+                }
+                LINE[place][occupancy] = reached | behind;
+            }
+        }
+
+        for (int set = 0; set < 512; set++) {
+            for (int i = 0; i < 9; i++) {
+                if ((set & 1 << i) == 0) {
+                    continue;
+                }
+                for (int line = 0; line < 9; line++) {
+                    addToLine(RANK, line, set, Bitboard.square(i, line));
+                    addToLine(FILE, line, set, Bitboard.square(line, i));
+                }
+                for (int line = 0; line < 17; line++) {
+                    int y = i - (line - 8);
+                    if (y >= 0 && y < 9) {
+                        addToLine(DIAGONAL, line, set, Bitboard.square(i, y));
+                    }
+                    y = line - i;
+                    if (y >= 0 && y < 9) {
+                        addToLine(ANTI_DIAGONAL, line, set, Bitboard.square(i, y));
+                    }
+                }
+            }
+        }
+
+        for (int from = 0; from < Bitboard.SQUARES; from++) {
+            for (int to = 0; to < Bitboard.SQUARES; to++) {
+                int dx = Bitboard.x(to) - Bitboard.x(from);
+                int dy = Bitboard.y(to) - Bitboard.y(from);
+                if (from == to || (dx != 0 && dy != 0 && Math.abs(dx) != Math.abs(dy))) {
+                    continue;
+                }
+                dx = Integer.signum(dx);
+                dy = Integer.signum(dy);
+                for (int x = Bitboard.x(from) + dx, y = Bitboard.y(from) + dy; x != Bitboard.x(to) || y != Bitboard.y(to); x += dx, y += dy) {
+                    BETWEEN[0][from][to] |= Bitboard.low(Bitboard.square(x, y));
+                    BETWEEN[1][from][to] |= Bitboard.high(Bitboard.square(x, y));
+                }
+                int x = Bitboard.x(from);
+                int y = Bitboard.y(from);
+                while (x-dx >= 0 && x-dx < 9 && y-dy >= 0 && y-dy < 9) {
+                    x -= dx;
+                    y -= dy;
+                }
+                for (; x >= 0 && x < 9 && y >= 0 && y < 9; x += dx, y += dy) {
+                    LINE_THROUGH[0][from][to] |= Bitboard.low(Bitboard.square(x, y));
+                    LINE_THROUGH[1][from][to] |= Bitboard.high(Bitboard.square(x, y));
+                }
+            }
+        }
+
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            compile(type);
+        }
+    }
+
+    /** Works out the step attacks, slide masks and empty board slides
+     * of a piece type on every square, from its rules in PieceRules.
+     * Called for every type as the tables are filled,
+     * and again for each custom type PieceRules.define sets.
+     * @param   type        The type code of the piece.
+     */
+    static void compile (int type) {
+        int[] steps = PieceRules.getSteps(type);
+        for (int allegiance = -1; allegiance <= 1; allegiance += 2) {
+            for (int from = 0; from < Bitboard.SQUARES; from++) {
+                int fromX = Bitboard.x(from);
+                int fromY = Bitboard.y(from);
+                long low = 0L;
+                long high = 0L;
+                for (int i = 0; i < steps.length; i += 2) {
+                    int x = fromX + steps[i];
+                    int y = fromY + steps[i+1]*allegiance;
+                    if (x >= 0 && x < 9 && y >= 0 && y < 9) {
+                        low |= Bitboard.low(Bitboard.square(x, y));
+                        high |= Bitboard.high(Bitboard.square(x, y));
+                    }
+                }
+                STEP_LOW[allegiance+1][type][from] = low;
+                STEP_HIGH[allegiance+1][type][from] = high;
+
+                long masks = 0L;
+                for (int direction = 0; direction < PieceRules.DIRECTIONS; direction++) {
+                    int range = PieceRules.getSlide(type, direction);
+                    int[] offsets = PieceRules.getDirectionOffsets(direction);
+                    for (int mirror = 1; mirror >= -1 && range > 0; mirror -= 2) {
+                        int dx = offsets[0]*mirror;
+                        int dy = offsets[1]*allegiance;
+                        /* The file is numbered by y-value, the other lines by x-value.
+                         */
+                        int line = dx == 0 ? 0 : dy == 0 ? 1 : dx == dy ? 2 : 3;
+                        for (int i = 1; i <= range; i++) {
+                            int x = fromX + i*dx;
+                            int y = fromY + i*dy;
+                            if (x < 0 || x >= 9 || y < 0 || y >= 9) {
+                                break;
+                            }
+                            masks |= 1L << (9*line + (line == 0 ? y : x));
+                        }
+                    }
+                }
+                SLIDE_MASKS[allegiance+1][type][from] = masks;
+                EMPTY_SLIDES_LOW[allegiance+1][type][from] = slides(masks, fromX, fromY, 0, 0, 0, 0, 0);
+                EMPTY_SLIDES_HIGH[allegiance+1][type][from] = slides(masks, fromX, fromY, 1, 0, 0, 0, 0);
+            }
+        }
+    }
+
+    /** This class only holds tables, and is never instantiated.
+     */
+    private Attacks () {
+    }
+
+    /** Returns the low half of the squares a piece can step to.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @return              The low half of its step attacks.
+     */
+    public static long getStepsLow (int allegiance, int type, int square) {
+        return STEP_LOW[allegiance+1][type][square];
+    }
+
+    /** Looks up one half of the step attacks of a piece.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of its step attacks.
+     */
+    static long steps (int allegiance, int type, int square, int half) {
+        return half == 0 ? STEP_LOW[allegiance+1][type][square] : STEP_HIGH[allegiance+1][type][square];
+    }
+
+    /** Returns the high half of the squares a piece can step to.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @return              The high half of its step attacks.
+     */
+    public static long getStepsHigh (int allegiance, int type, int square) {
+        return STEP_HIGH[allegiance+1][type][square];
+    }
+
+    /** Returns whether a piece can step from one square to another,
+     * ignoring what is on either square.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The target square.
+     * @return              Whether the target is one of the piece's steps.
+     */
+    public static boolean canStep (int allegiance, int type, int from, int to) {
+        return Bitboard.contains(STEP_LOW[allegiance+1][type][from], STEP_HIGH[allegiance+1][type][from], to);
+    }
+
+    /** Returns the low half of the squares a sliding piece reaches,
+     * stopping at the first occupied tile in each direction.
+     * Only the slides are included; the single steps of promoted bishops and rooks
+     * are in the step attacks.
+     * @param   state       The state of the game, for the occupancy of each line.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @return              The low half of its sliding attacks.
+     */
+    public static long getSlidesLow (GameState state, int allegiance, int type, int square) {
+        return slides(state, allegiance, type, square, 0);
+    }
+
+    /** Returns the high half of the squares a sliding piece reaches.
+     * @param   state       The state of the game, for the occupancy of each line.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @return              The high half of its sliding attacks.
+     */
+    public static long getSlidesHigh (GameState state, int allegiance, int type, int square) {
+        return slides(state, allegiance, type, square, 1);
+    }
+
+    /** Returns whether a sliding piece reaches one square from another,
+     * without being blocked on the way.
+     * @param   state       The state of the game, for the occupancy of each line.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The target square.
+     * @return              Whether the target is one of the piece's slides.
+     */
+    public static boolean canSlide (GameState state, int allegiance, int type, int from, int to) {
+        return to < Bitboard.LOW_SQUARES
+             ? (slides(state, allegiance, type, from, 0) >>> to & 1L) != 0
+             : (slides(state, allegiance, type, from, 1) >>> (to - Bitboard.LOW_SQUARES) & 1L) != 0;
+    }
+
+    /** Looks up one half of the sliding attacks of a piece.
+     * @param   state       The state of the game, for the occupancy of each line.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of its sliding attacks.
+     */
+    static long slides (GameState state, int allegiance, int type, int square, int half) {
+        long masks = SLIDE_MASKS[allegiance+1][type][square];
+        if (masks == 0) {
+            return 0L;
+        }
+        int x = Bitboard.x(square);
+        int y = Bitboard.y(square);
+        return slides(masks, x, y, half,
+                      state.getRankOccupancy(y), state.getFileOccupancy(x),
+                      state.getDiagonalOccupancy(x-y+8), state.getAntiDiagonalOccupancy(x+y));
+    }
+
+    /** Looks up one half of the sliding attacks of a piece, given the occupancy of its lines
+     * instead of that of a GameState, so that some pieces may be left off them.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @param   rank        The occupancy of the piece's rank.
+     * @param   file        The occupancy of the piece's file.
+     * @param   diagonal    The occupancy of the piece's diagonal of increasing x and y.
+     * @param   antiDiagonal The occupancy of the piece's other diagonal.
+     * @return              That half of its sliding attacks.
+     */
+    static long slidesOnLines (int allegiance, int type, int square, int half,
+                               int rank, int file, int diagonal, int antiDiagonal) {
+        long masks = SLIDE_MASKS[allegiance+1][type][square];
+        if (masks == 0) {
+            return 0L;
+        }
+        return slides(masks, Bitboard.x(square), Bitboard.y(square), half, rank, file, diagonal, antiDiagonal);
+    }
+
+    /** Looks up one half of the sliding attacks a piece would have on an empty board.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   type        The type code of the piece.
+     * @param   square      The square the piece is on.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of its sliding attacks, ignoring every blocker.
+     */
+    static long emptyBoardSlides (int allegiance, int type, int square, int half) {
+        return half == 0 ? EMPTY_SLIDES_LOW[allegiance+1][type][square] : EMPTY_SLIDES_HIGH[allegiance+1][type][square];
+    }
+
+    /** Looks up one half of the sliding attacks of a piece, given the occupancy of its lines.
+     * @param   masks       The piece's slide masks, from SLIDE_MASKS.
+     * @param   x           The x-value of the piece.
+     * @param   y           The y-value of the piece.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @param   rank        The occupancy of the piece's rank.
+     * @param   file        The occupancy of the piece's file.
+     * @param   diagonal    The occupancy of the piece's diagonal of increasing x and y.
+     * @param   antiDiagonal The occupancy of the piece's other diagonal.
+     * @return              That half of its sliding attacks.
+     */
+    private static long slides (long masks, int x, int y, int half,
+                                int rank, int file, int diagonal, int antiDiagonal) {
+        long slides = 0L;
+        int mask = (int) masks & LINE_MASK;
+        if (mask != 0) {
+            slides |= FILE[half][x][LINE[y][file] & mask];
+        }
+        mask = (int) (masks >>> 9) & LINE_MASK;
+        if (mask != 0) {
+            slides |= RANK[half][y][LINE[x][rank] & mask];
+        }
+        mask = (int) (masks >>> 18) & LINE_MASK;
+        if (mask != 0) {
+            slides |= DIAGONAL[half][x-y+8][LINE[x][diagonal] & mask];
+        }
+        mask = (int) (masks >>> 27) & LINE_MASK;
+        if (mask != 0) {
+            slides |= ANTI_DIAGONAL[half][x+y][LINE[x][antiDiagonal] & mask];
+        }
+        return slides;
+    }
+
+    /** Looks up one half of the tiles strictly between two squares.
+     * @param   from        One square.
+     * @param   to          The other square.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of the tiles between them,
+     *                      or 0 if they do not share a rank, file or diagonal.
+     */
+    static long between (int from, int to, int half) {
+        return BETWEEN[half][from][to];
+    }
+
+    /** Looks up one half of the whole line through two squares.
+     * @param   from        One square.
+     * @param   to          The other square.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of the rank, file or diagonal through both,
+     *                      or 0 if they do not share one.
+     */
+    static long lineThrough (int from, int to, int half) {
+        return LINE_THROUGH[half][from][to];
+    }
+
+    /** Adds a square to every set of a line's bitboard table that contains it.
+     * Used while filling the tables.
+     * @param   table       The table, indexed by half, line, and set.
+     * @param   line        The line the square is on.
+     * @param   set         The set the square belongs to.
+     * @param   square      The square.
+     */
+    private static void addToLine (long[][][] table, int line, int set, int square) {
+        table[0][line][set] |= Bitboard.low(square);
+        table[1][line][set] |= Bitboard.high(square);
+    }
+}
@@ -0,0 +1,336 @@
+package mgci.jhdap.shogi;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/** A Class that times the rules engine over a fixed corpus of positions.
+ * Each benchmark is one engine call, such as Piece.generateMoves or GameState.isAttacked,
+ * made for every piece, tile or move it applies to in every corpus position.
+ * Results are given per call, both in time and in bytes allocated,
+ * so that an engine change can be compared against the results before it.
+ * <br><br>
+ * A benchmark is run untimed first, so that the JIT compiler has compiled it,
+ * and then as many times as fit in the time asked for.
+ * Allocation is read from the JVM's per-thread allocation counter where the JVM has one.
+ * Run with "java mgci.jhdap.shogi.Benchmark [milliseconds]", or with the bench console command.
+ * <br><br>
+ * Every benchmark is expected to allocate nothing once warmed up,
+ * as a search makes these calls millions of times.
+ * "java mgci.jhdap.shogi.Benchmark alloc", or "bench alloc", checks that it still does,
+ * and the former exits with status 1 if any benchmark allocates.
+ */
+public final class Benchmark {
+    /** The corpus, as SFEN strings:
+     * the start position, an opening after a bishop exchange,
+     * two middle games, and an endgame with many pieces in hand.
+     */
+    private static final String[] CORPUS = {
+        Perft.START,
+        "lnsgk2nl/1r4gs1/p1pppp1pp/1p4p2/7P1/2P6/PP1PPPP1P/1SG4R1/LN2KGSNL b Bb 1",
+        "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1",
+        "8l/1l+R2P3/p2pBG1pp/kps1p4/Nn1P2G2/P1P1P2PP/1PS6/1KSG3+r1/LN2+p3L w Sbgn3p 1",
+        "R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p 1",
+    };
+
+    /** The names of the benchmarks, in the order they are run.
+     */
+    private static final String[] NAMES = {
+        "Piece.generateMoves",
+        "Piece.generateDrops",
+        "GameState.isAttacked",
+        "GameState.isKingInCheck",
+        "GameState.isKingCheckmated",
+        "GameState.willKingBeInCheckAfterMove",
+        "GameState.willKingBeInCheckAfterDrop",
+        "Pawn.isValidDrop",
+        "Piece.isValidMove",
+        "MoveGenerator.generateLegalMoves",
+        "GameState.makeMove/unmakeMove",
+    };
+
+    /** The untimed time each benchmark is run for first, in milliseconds.
+     */
+    private static final long WARMUP_MILLIS = 300;
+
+    /** The number of passes over the corpus an allocation check makes.
+     */
+    private static final int CHECK_PASSES = 1000;
+
+    /** The bytes an allocation check allows in total,
+     * for what the JVM's own counting may allocate.
+     */
+    private static final long CHECK_SLACK_BYTES = 1024;
+
+    /** The corpus positions, loaded once.
+     */
+    private final GameState[] states;
+
+    /** The legal moves of each corpus position, for the benchmarks that need moves.
+     */
+    private final MoveList[] moves;
+
+    /** The Piece on each square of each corpus position, indexed by position and then by square.
+     * GameState.getPieceAt makes a new Piece on every call,
+     * so the Pieces are made once here rather than in the timed calls.
+     */
+    private final Piece[][] pieces;
+
+    /** The array the move generation benchmarks fill, reused between calls.
+     */
+    private final boolean[][] tiles;
+
+    /** The MoveList the legal move benchmark fills, reused between calls.
+     */
+    private final MoveList list;
+
+    /** Collects the results of every call, so that the JIT compiler cannot drop any of them.
+     */
+    private long sink;
+
+    /** Constructs a Benchmark, loading the corpus.
+     */
+    public Benchmark () {
+        this.states = new GameState[CORPUS.length];
+        this.moves = new MoveList[CORPUS.length];
+        this.pieces = new Piece[CORPUS.length][Bitboard.SQUARES];
+        this.tiles = new boolean[9][9];
+        this.list = new MoveList();
+        for (int i = 0; i < CORPUS.length; i++) {
+            this.states[i] = new GameState();
+            this.states[i].sfenBoardConfigure(CORPUS[i]);
+            this.moves[i] = new MoveList();
+            MoveGenerator.generateLegalMoves(this.states[i], this.moves[i]);
+            for (int square = 0; square < Bitboard.SQUARES; square++) {
+                this.pieces[i][square] = this.states[i].getPieceAt(Bitboard.x(square), Bitboard.y(square));
+            }
+        }
+    }
+
+    /** Returns the number of benchmarks.
+     * @return              The number of benchmarks.
+     */
+    public static int getCount () {
+        return NAMES.length;
+    }
+
+    /** Returns the name of a benchmark.
+     * @param   index       The number of the benchmark.
+     * @return              The name of the engine call it times.
+     */
+    public static String getName (int index) {
+        return NAMES[index];
+    }
+
+    /** Runs a benchmark for about a given time.
+     * @param   index       The number of the benchmark.
+     * @param   millis      How long to time it for, in milliseconds.
+     * @return              A line giving the time and bytes allocated per call.
+     */
+    public String run (int index, long millis) {
+        long end = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+        while (System.nanoTime() < end) {
+            this.runOnce(index);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long before = allocatedBytes(threads);
+        long calls = 0L;
+        long start = System.nanoTime();
+        end = start + millis * 1000000L;
+        long now;
+        do {
+            calls += this.runOnce(index);
+            now = System.nanoTime();
+        } while (now < end);
+        long after = allocatedBytes(threads);
+
+        StringBuilder line = new StringBuilder(NAMES[index]);
+        while (line.length() < 40) {
+            line.append(' ');
+        }
+        line.append(String.format("%10.1f ns/call", (now - start) / (double) calls));
+        if (before >= 0) {
+            line.append(String.format("%10.1f B/call", (after - before) / (double) calls));
+        }
+        return line.toString();
+    }
+
+    /** Makes one benchmark's calls once over the whole corpus.
+     * @param   index       The number of the benchmark.
+     * @return              The number of calls made.
+     */
+    private long runOnce (int index) {
+        long calls = 0L;
+        for (int i = 0; i < this.states.length; i++) {
+            GameState state = this.states[i];
+            int side = state.getSideToMove();
+            switch (index) {
+                case 0:
+                    for (int square = 0; square < Bitboard.SQUARES; square++) {
+                        if (state.getAllegianceAt(square) == side && state.getTypeAt(square) != PieceType.EMPTY) {
+                            this.sink += this.pieces[i][square].generateMoves(state, this.tiles).length;
+                            calls++;
+                        }
+                    }
+                    break;
+                case 1:
+                    for (int type = PieceType.PAWN; type <= PieceType.GOLD_GENERAL; type++) {
+                        Piece piece = state.getHandPiece(side, type);
+                        if (piece != null) {
+                            this.sink += piece.generateDrops(state, this.tiles).length;
+                            calls++;
+                        }
+                    }
+                    break;
+                case 2:
+                    for (int y = 0; y < 9; y++) {
+                        for (int x = 0; x < 9; x++) {
+                            this.sink += state.isAttacked(x, y, side) ? 1 : 0;
+                            this.sink += state.isAttacked(x, y, -side) ? 1 : 0;
+                            calls += 2;
+                        }
+                    }
+                    break;
+                case 3:
+                    this.sink += state.isKingInCheck(side) ? 1 : 0;
+                    this.sink += state.isKingInCheck(-side) ? 1 : 0;
+                    calls += 2;
+                    break;
+                case 4:
+                    this.sink += state.isKingCheckmated(side) ? 1 : 0;
+                    this.sink += state.isKingCheckmated(-side) ? 1 : 0;
+                    calls += 2;
+                    break;
+                case 5:
+                    for (int j = 0; j < this.moves[i].size(); j++) {
+                        int move = this.moves[i].get(j);
+                        if (!PackedMove.isDrop(move)) {
+                            int from = PackedMove.getFrom(move);
+                            int to = PackedMove.getTo(move);
+                            Piece piece = this.pieces[i][from];
+                            this.sink += state.willKingBeInCheckAfterMove(Bitboard.x(to), Bitboard.y(to), piece) ? 1 : 0;
+                            calls++;
+                        }
+                    }
+                    break;
+                case 6:
+                    for (int j = 0; j < this.moves[i].size(); j++) {
+                        int move = this.moves[i].get(j);
+                        if (PackedMove.isDrop(move)) {
+                            int to = PackedMove.getTo(move);
+                            this.sink += state.willKingBeInCheckAfterDrop(Bitboard.x(to), Bitboard.y(to), side, PackedMove.getDropType(move)) ? 1 : 0;
+                            calls++;
+                        }
+                    }
+                    break;
+                case 7:
+                    Piece pawn = state.getHandPiece(side, PieceType.PAWN);
+                    if (pawn != null) {
+                        for (int y = 0; y < 9; y++) {
+                            for (int x = 0; x < 9; x++) {
+                                this.sink += pawn.isValidDrop(state, x, y) ? 1 : 0;
+                                calls++;
+                            }
+                        }
+                    }
+                    break;
+                case 8:
+                    for (int j = 0; j < this.moves[i].size(); j++) {
+                        int move = this.moves[i].get(j);
+                        int to = PackedMove.getTo(move);
+                        Piece piece = PackedMove.isDrop(move) 
+                                    ? state.getHandPiece(side, PackedMove.getDropType(move))
+                                    : this.pieces[i][PackedMove.getFrom(move)];
+                        this.sink += piece.isValidMove(state, Bitboard.x(to), Bitboard.y(to)) ? 1 : 0;
+                        calls++;
+                    }
+                    break;
+                case 9:
+                    MoveGenerator.generateLegalMoves(state, this.list);
+                    this.sink += this.list.size();
+                    calls++;
+                    break;
+                case 10:
+                    for (int j = 0; j < this.moves[i].size(); j++) {
+                        state.makeMove(this.moves[i].get(j));
+                        this.sink += state.getKey();
+                        state.unmakeMove();
+                        calls++;
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("No benchmark " + index);
+            }
+        }
+        return calls;
+    }
+
+    /** Checks that a benchmark allocates nothing once warmed up.
+     * @param   index       The number of the benchmark.
+     * @return              The bytes it allocated per call,
+     *                      0 if it allocated no more than the JVM's counting itself may,
+     *                      or -1 if the JVM does not count allocations.
+     */
+    public double checkAllocation (int index) {
+        long end = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+        while (System.nanoTime() < end) {
+            this.runOnce(index);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long before = allocatedBytes(threads);
+        long calls = 0L;
+        for (int i = 0; i < CHECK_PASSES; i++) {
+            calls += this.runOnce(index);
+        }
+        long bytes = allocatedBytes(threads) - before;
+        if (before < 0) {
+            return -1;
+        }
+        return bytes <= CHECK_SLACK_BYTES ? 0 : bytes / (double) calls;
+    }
+
+    /** Returns the bytes allocated so far by the current thread.
+     * @param   threads     The JVM's thread bean.
+     * @return              The bytes allocated, or -1 if the JVM does not count them.
+     */
+    private static long allocatedBytes (ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    /** Runs every benchmark and prints the results,
+     * or checks that none of them allocates.
+     * @param   args        Either "alloc" to check allocation,
+     *                      or optionally how long to time each benchmark for, in milliseconds.
+     *                      One second by default.
+     */
+    public static void main (String[] args) {
+        Benchmark benchmark = new Benchmark();
+        if (args.length > 0 && args[0].equals("alloc")) {
+            boolean allocates = false;
+            for (int i = 0; i < getCount(); i++) {
+                double bytes = benchmark.checkAllocation(i);
+                if (bytes < 0) {
+                    System.out.println("This JVM does not count allocated bytes.");
+                    return;
+                }
+                System.out.println((bytes == 0 ? "ok    " : "FAIL  ") + NAMES[i] 
+                                 + (bytes == 0 ? "" : String.format(" allocates %.1f B/call", bytes)));
+                allocates |= bytes > 0;
+            }
+            if (allocates) {
+                System.exit(1);
+            }
+            return;
+        }
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000L;
+        for (int i = 0; i < getCount(); i++) {
+            System.out.println(benchmark.run(i, millis));
+        }
+    }
+}
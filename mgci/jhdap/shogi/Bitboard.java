@@ -0,0 +1,105 @@
+package mgci.jhdap.shogi;
+
+/** A Class of helpers for 81-bit sets of board tiles.
+ * A set is kept in two primitive longs:
+ * the low half holds squares 0 to 62,
+ * and the high half holds squares 63 to 80.
+ * A square is numbered y*9 + x,
+ * so square 0 is the bottom left tile, (0, 0),
+ * and square 80 is the top right tile, (8, 8).
+ */
+public final class Bitboard {
+    /** The number of tiles on the board. */
+    public static final int SQUARES = 81;
+
+    /** The number of squares held in the low half of a set. */
+    public static final int LOW_SQUARES = 63;
+
+    /** The low half of the set of every tile on the board. */
+    public static final long ALL_LOW = (1L << LOW_SQUARES) - 1;
+
+    /** The high half of the set of every tile on the board. */
+    public static final long ALL_HIGH = (1L << (SQUARES - LOW_SQUARES)) - 1;
+
+    /** This class only holds static helpers, and is never instantiated.
+     */
+    private Bitboard () {
+    }
+
+    /** Returns the square number of a tile.
+     * @param   x           The x-value of the tile.
+     * @param   y           The y-value of the tile.
+     * @return              The square number of the tile.
+     */
+    public static int square (int x, int y) {
+        return y * 9 + x;
+    }
+
+    /** Returns the x-value of a square.
+     * @param   square      The square number.
+     * @return              The x-value of the square.
+     */
+    public static int x (int square) {
+        return square % 9;
+    }
+
+    /** Returns the y-value of a square.
+     * @param   square      The square number.
+     * @return              The y-value of the square.
+     */
+    public static int y (int square) {
+        return square / 9;
+    }
+
+    /** Returns the low half of the set containing only the given square.
+     * @param   square      The square number.
+     * @return              The low half of the set, which is 0 for squares 63 and up.
+     */
+    public static long low (int square) {
+        return square < LOW_SQUARES ? 1L << square : 0L;
+    }
+
+    /** Returns the high half of the set containing only the given square.
+     * @param   square      The square number.
+     * @return              The high half of the set, which is 0 for squares below 63.
+     */
+    public static long high (int square) {
+        return square < LOW_SQUARES ? 0L : 1L << (square - LOW_SQUARES);
+    }
+
+    /** Returns whether a set contains a given square.
+     * @param   low         The low half of the set.
+     * @param   high        The high half of the set.
+     * @param   square      The square number.
+     * @return              Whether the square is in the set.
+     */
+    public static boolean contains (long low, long high, int square) {
+        return square < LOW_SQUARES
+             ? (low >>> square & 1L) != 0
+             : (high >>> (square - LOW_SQUARES) & 1L) != 0;
+    }
+
+    /** Returns the lowest square in a set.
+     * @param   low         The low half of the set.
+     * @param   high        The high half of the set.
+     * @return              The lowest square number in the set, or -1 if the set is empty.
+     */
+    public static int first (long low, long high) {
+        if (low != 0) {
+            return Long.numberOfTrailingZeros(low);
+        } else if (high != 0) {
+            return LOW_SQUARES + Long.numberOfTrailingZeros(high);
+        } else {
+            return -1;
+        }
+    }
+
+    /** Returns the number of squares in a set.
+     * @param   low         The low half of the set.
+     * @param   high        The high half of the set.
+     * @return              The number of squares in the set.
+     */
+    public static int count (long low, long high) {
+        return Long.bitCount(low) + Long.bitCount(high);
+    }
+}
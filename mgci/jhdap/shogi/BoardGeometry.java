@@ -0,0 +1,271 @@
+package mgci.jhdap.shogi;
+
+/** A Class describing the size of a board and the depth of its promotion zone.
+ * Tiles are numbered from the bottom left tile, (0, 0), up and to the right,
+ * and each board is laid out in one of three ways, which the MoveGenerator has a path for each of:
+ * <ul>
+ * <li> WHOLE_GRID: The standard 9*9 board, which is the whole grid of a Bitboard.
+ *      Its moves are generated on both halves of the bitboards, with no mask.
+ * <li> LOW_HALF: A board of up to 9 files and 7 ranks, such as the 5*5 of minishogi,
+ *      which is the corner of the same grid that its mask keeps.
+ *      Every tile is in the low half of a Bitboard, so its moves are generated on a single long.
+ * <li> MAILBOX: Any other board of up to MAX_SIZE files and ranks, such as the 12*12 of chu shogi,
+ *      which does not fit the two longs of a Bitboard or the 9 bits of a line occupancy.
+ *      It is kept as a piece code per tile, numbered y*files + x, and its attacks are found by
+ *      walking each piece's steps and slides from PieceRules.
+ * </ul>
+ * The two grid layouts share the attack tables, line occupancies and square numbers of Bitboard,
+ * and as no piece leaves the board and comes back, the MoveGenerator only has to keep
+ * the moves and drops of a smaller board inside its mask.
+ */
+public final class BoardGeometry {
+    /** The largest number of files or ranks a board may have,
+     * so that a square number fits the 8 bits PackedMove gives it.
+     */
+    public static final int MAX_SIZE = 16;
+
+    /** The most squares a board may have, and one more than the greatest square number. */
+    public static final int MAX_SQUARES = MAX_SIZE*MAX_SIZE;
+
+    /** The layout of the standard 9*9 board, the whole grid of a Bitboard. */
+    public static final int WHOLE_GRID = 0;
+
+    /** The layout of a board that fits the low half of a Bitboard. */
+    public static final int LOW_HALF = 1;
+
+    /** The layout of a board that does not fit a Bitboard, kept as a piece code per tile. */
+    public static final int MAILBOX = 2;
+
+    /** The standard 9*9 board, with a promotion zone of 3 ranks. */
+    public static final BoardGeometry STANDARD = new BoardGeometry("Shogi", 9, 9, PieceRules.PROMOTION_RANKS, Perft.START);
+
+    /** The 5*5 board of minishogi, with a promotion zone of 1 rank. */
+    public static final BoardGeometry MINISHOGI = new BoardGeometry("Minishogi", 5, 5, 1, "rbsgk/4p/5/P4/KGSBR b - 1");
+
+    /** The 12*12 board of chu shogi, with a promotion zone of 4 ranks.
+     * Chu shogi's own pieces are not part of this game, and are loaded as custom pieces where
+     * PieceRules can describe them, so the board has no starting position.
+     */
+    public static final BoardGeometry CHU_SHOGI = new BoardGeometry("Chu shogi", 12, 12, 4, null);
+
+    /** The boards a position's size is matched against, as by forSize. */
+    private static final BoardGeometry[] KNOWN = {STANDARD, MINISHOGI, CHU_SHOGI};
+
+    /** The name of the variant played on this board. */
+    private final String name;
+
+    /** The number of files, across the x-values 0 up. */
+    private final int files;
+
+    /** The number of ranks, across the y-values 0 up. */
+    private final int ranks;
+
+    /** The number of ranks at each far end of the board a piece may promote in. */
+    private final int promotionRanks;
+
+    /** The SFEN string of the starting position, or null if the board has none. */
+    private final String start;
+
+    /** The layout of the board: WHOLE_GRID, LOW_HALF or MAILBOX. */
+    private final int layout;
+
+    /** The difference between the square numbers of a tile and the one below it:
+     * 9 on the grid of a Bitboard, and the number of files in a mailbox.
+     */
+    private final int stride;
+
+    /** The low half of the set of tiles on the board, or 0 in a mailbox. */
+    private final long maskLow;
+
+    /** The high half of the set of tiles on the board, or 0 in a mailbox. */
+    private final long maskHigh;
+
+    /** Constructs a board of a given size.
+     * @param   name        The name of the variant played on the board.
+     * @param   files       The number of files, from 1 to MAX_SIZE.
+     * @param   ranks       The number of ranks, from 1 to MAX_SIZE.
+     * @param   promotionRanks
+     *                      The depth of the promotion zone, from 0 to the number of ranks.
+     * @param   start       The SFEN string of the starting position, or null if there is none.
+     * @throws  IllegalArgumentException
+     *                      If the board is larger than MAX_SIZE*MAX_SIZE,
+     *                      or its promotion zone does not fit the board.
+     */
+    public BoardGeometry (String name, int files, int ranks, int promotionRanks, String start) {
+        if (files < 1 || files > MAX_SIZE || ranks < 1 || ranks > MAX_SIZE) {
+            throw new IllegalArgumentException("A board must be from 1*1 to " + MAX_SIZE + "*" + MAX_SIZE + ", not " + files + "*" + ranks);
+        } else if (promotionRanks < 0 || promotionRanks > ranks) {
+            throw new IllegalArgumentException("A promotion zone must be from 0 to " + ranks + " ranks, not " + promotionRanks);
+        }
+        this.name = name;
+        this.files = files;
+        this.ranks = ranks;
+        this.promotionRanks = promotionRanks;
+        this.start = start;
+        if (files == 9 && ranks == 9) {
+            this.layout = WHOLE_GRID;
+        } else if (files <= 9 && ranks*9 <= Bitboard.LOW_SQUARES) {
+            this.layout = LOW_HALF;
+        } else {
+            this.layout = MAILBOX;
+        }
+        this.stride = this.layout == MAILBOX ? files : 9;
+        long low = 0L;
+        long high = 0L;
+        for (int y = 0; y < ranks && this.layout != MAILBOX; y++) {
+            for (int x = 0; x < files; x++) {
+                low |= Bitboard.low(Bitboard.square(x, y));
+                high |= Bitboard.high(Bitboard.square(x, y));
+            }
+        }
+        this.maskLow = low;
+        this.maskHigh = high;
+    }
+
+    /** Returns the known board of a given size.
+     * @param   files       The number of files.
+     * @param   ranks       The number of ranks.
+     * @return              The board, or null if no known variant is played on that size.
+     */
+    public static BoardGeometry forSize (int files, int ranks) {
+        for (BoardGeometry geometry : KNOWN) {
+            if (geometry.files == files && geometry.ranks == ranks) {
+                return geometry;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the name of the variant played on this board.
+     * @return              The name, such as "Minishogi".
+     */
+    public String getName () {
+        return this.name;
+    }
+
+    /** Returns the number of files of this board.
+     * @return              The number of x-values.
+     */
+    public int getFiles () {
+        return this.files;
+    }
+
+    /** Returns the number of ranks of this board.
+     * @return              The number of y-values.
+     */
+    public int getRanks () {
+        return this.ranks;
+    }
+
+    /** Returns the depth of the promotion zone.
+     * @return              The number of ranks at each far end of the board a piece may promote in.
+     */
+    public int getPromotionRanks () {
+        return this.promotionRanks;
+    }
+
+    /** Returns the starting position of this board.
+     * @return              Its SFEN string, or null if the board has none.
+     */
+    public String getStart () {
+        return this.start;
+    }
+
+    /** Returns how this board is laid out, which decides the path its moves are generated on.
+     * @return              WHOLE_GRID, LOW_HALF or MAILBOX.
+     */
+    public int getLayout () {
+        return this.layout;
+    }
+
+    /** Returns the number of square numbers of this board,
+     * which is the length of an array indexed by square.
+     * @return              Bitboard.SQUARES on the grid of a Bitboard, even for a smaller board,
+     *                      or the number of tiles in a mailbox.
+     */
+    public int getSquares () {
+        return this.layout == MAILBOX ? this.files*this.ranks : Bitboard.SQUARES;
+    }
+
+    /** Returns the square number of a tile on this board.
+     * On the grid of a Bitboard, this is Bitboard.square,
+     * which the move generation of the grid layouts uses directly.
+     * @param   x           The x-value of the tile.
+     * @param   y           The y-value of the tile.
+     * @return              The square number of the tile.
+     */
+    public int square (int x, int y) {
+        return y*this.stride + x;
+    }
+
+    /** Returns the x-value of a square on this board.
+     * @param   square      The square number.
+     * @return              The x-value of the square.
+     */
+    public int x (int square) {
+        return square % this.stride;
+    }
+
+    /** Returns the y-value of a square on this board.
+     * @param   square      The square number.
+     * @return              The y-value of the square.
+     */
+    public int y (int square) {
+        return square / this.stride;
+    }
+
+    /** Writes a square in shogi notation, such as "7f".
+     * The tiles of the grid of a Bitboard are named as in Tile, from file 9 and rank i at (0, 0),
+     * so the corner minishogi is played on is files 9 to 5 and ranks e to i.
+     * A mailbox names its own tiles, from file 1 and rank a at its top right,
+     * such as "12l" for the bottom left tile of chu shogi.
+     * @param   square      The square number.
+     * @return              The file and rank of the square.
+     */
+    public String getNotation (int square) {
+        if (this.layout != MAILBOX) {
+            return new Tile(Bitboard.x(square), Bitboard.y(square)).getCode(Tile.SHOGI_NOTATION);
+        }
+        return "" + (this.files - this.x(square)) + (char) ('a' + this.ranks - 1 - this.y(square));
+    }
+
+    /** Returns the low half of the set of tiles on this board.
+     * @return              The low half of the mask.
+     */
+    public long getMaskLow () {
+        return this.maskLow;
+    }
+
+    /** Returns the high half of the set of tiles on this board.
+     * @return              The high half of the mask.
+     */
+    public long getMaskHigh () {
+        return this.maskHigh;
+    }
+
+    /** Returns whether a tile is on this board.
+     * @param   x           The x-value of the tile.
+     * @param   y           The y-value of the tile.
+     * @return              Whether the tile is inside the board.
+     */
+    public boolean contains (int x, int y) {
+        return x >= 0 && x < this.files && y >= 0 && y < this.ranks;
+    }
+
+    /** Returns how many ranks a tile is from the far end of this board for a given allegiance.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   y           The y-value of the tile.
+     * @return              0 for the last rank, up to one less than the number of ranks for the first.
+     */
+    public int ranksFromEnd (int allegiance, int y) {
+        return allegiance == 1 ? this.ranks - 1 - y : y;
+    }
+
+    /** Returns the name and size of this board.
+     * @return              Such as "Minishogi (5*5)".
+     */
+    @Override
+    public String toString () {
+        return this.name + " (" + this.files + "*" + this.ranks + ")";
+    }
+}
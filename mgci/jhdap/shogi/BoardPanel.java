@@ -8,13 +8,16 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
 /** The JPanel for the shogi board. Handles all of the drawing and sound.
  * Updates based on invocations of its moveMouse (Point), pressMouse (int, Point),
@@ -101,6 +104,11 @@ public class BoardPanel extends JPanel
 	 */
 	public boolean takeTurns = true;
 
+	/** The allegiance the computer plays. 1 indicates the bottom player,
+	 * -1 the top player, and 0 that both players are human.
+	 */
+	public int computerPlayer = 0;
+
 	/** If true, the cursor is currently holding a piece. 
 	 */
 	private boolean pieceIsSelected = false;	
@@ -186,6 +194,21 @@ public class BoardPanel extends JPanel
 	 */
 	protected GameState state = new GameState ();
 
+	/** The search that chooses the computer player's moves.
+	 * Its depth and time limits set the computer player's strength.
+	 */
+	protected Search search = new Search ();
+
+	/** The background task searching for the computer player's move,
+	 * or null if the computer player is not thinking.
+	 */
+	private SwingWorker<Integer, Void> thinker = null;
+
+	/** How long stopComputerTurn waits for the search to return
+	 * before asking it to stop again, in milliseconds.
+	 */
+	private static final long STOP_WAIT = 10;
+
 
 	/** Creates a new BoardPanel. 
 	 * 
@@ -235,9 +258,11 @@ public class BoardPanel extends JPanel
 	 */
 	protected void drawBoard (Graphics g)
 	{
-		for (int i = 0; i < 9; i++)
+		int files = state.getGeometry ().getFiles ();
+		int ranks = state.getGeometry ().getRanks ();
+		for (int i = 0; i < files; i++)
 		{
-			for (int j = 0; j < 9; j++)
+			for (int j = 0; j < ranks; j++)
 			{	
 				Piece piece = state.getPieceAt(i, j);
 				Point point = getBoardLocationOnPanel (i, j);
@@ -266,21 +291,29 @@ public class BoardPanel extends JPanel
 		if (showBoardLabels)
 		{
 			Point point;
-			String file, rank;
+			String file, rank, notation;
+			BoardGeometry geometry = state.getGeometry ();
+			int files = geometry.getFiles ();
+			int ranks = geometry.getRanks ();
 			g.setColor(new Color (128, 128, 128));
 
-			for (int i = 0; i < 9; i++)
+			// the labels are those of the board's own notation, which a large board numbers from its top right
+			for (int i = 0; i < ranks; i++)
 			{
 				// Rank (aka Row)
-				rank = "" + (char)('i' - i);
+				notation = geometry.getNotation (geometry.square (0, i));
+				rank = notation.substring (notation.length () - 1);
 				point = getBoardLocationOnPanel (0, i);
 				point.translate(-12, 25);				
 				g.drawString (rank, point.x, point.y);
-
+			}
+			for (int i = 0; i < files; i++)
+			{
 				// File (aka Column)
-				file = "" + (9 - i);
+				notation = geometry.getNotation (geometry.square (i, 0));
+				file = notation.substring (0, notation.length () - 1);
 
-				point = getBoardLocationOnPanel (i, 8);
+				point = getBoardLocationOnPanel (i, ranks - 1);
 				point.translate (18, -5);		
 				g.drawString (file, point.x, point.y);	
 
@@ -355,7 +388,7 @@ public class BoardPanel extends JPanel
 
 				// Pawns on the drop table take up twice as much space
 				int width = p instanceof Pawn ? dropTableSize.width : dropTableSize.width / 2;
-				drawHighlightedTile (g, point, width, dropTableSize.height / 4);
+				drawHighlightedTile (g, point, width, dropTableSize.height / getDropTableRows ());
 			}
 		}
 	}
@@ -427,12 +460,64 @@ public class BoardPanel extends JPanel
 	{	
 		if (sq.equals(new Point (1,0))) // pawns take up 2x the space
 			sq.setLocation(0,0);
-		String name = dropTableToPiece.get(sq); // access (dropTable location -> piece) hashmap
 
-		return getDropTablePieceAt (table, name);		
+		Piece piece = null;
+		for (int type = PieceType.PAWN; type <= PieceRules.getLastType() && piece == null; type++)
+			if (sq.equals (getDropTableSlot (type)))
+				piece = state.getHandPiece (table, type);
+		return piece;		
+	}
+
+	/** Returns the position on a drop table that holds the pieces of the 
+	 * given type, with (0,0) being at the top left of the drop table.
+	 * The standard pieces are placed by the pieceToDropTable map. Each 
+	 * defined custom piece that can be held gets a position of its own 
+	 * in the rows below the Bishop and Rook, two to a row, in the order 
+	 * the pieces were defined. Returns null for pieces that are never held.
+	 * 
+	 * @param type		the type code of the piece
+	 * @return the position of the piece on the drop table ; null if it has none
+	 */
+	protected Point getDropTableSlot (int type)
+	{
+		if (type < PieceType.FIRST_CUSTOM)
+			return pieceToDropTable.get (PieceType.getName (type));
+		if (PieceRules.getDemotion (type) != type)
+			return null;
+
+		int slot = countCustomDropTableSlots (type);
+		return new Point (slot % 2, 4 + slot / 2);
+	}
+
+	/** Counts the custom piece types before the given type that can be 
+	 * held on a drop table, which are those that are not the promotion 
+	 * of another piece.
+	 * 
+	 * @param last		the type code to stop counting at
+	 * @return the number of custom drop table positions before that type
+	 */
+	private int countCustomDropTableSlots (int last)
+	{
+		int slots = 0;
+		for (int type = PieceType.FIRST_CUSTOM; type < last; type++)
+			if (PieceRules.getDemotion (type) == type)
+				slots++;
+		return slots;
+	}
+
+	/** Returns the number of rows the drop tables are divided into:
+	 * four for the standard pieces, and another for every two custom 
+	 * pieces that can be held. The drop tables keep their size, so
+	 * the rows get shorter as custom pieces are defined.
+	 * 
+	 * @return the number of rows on a drop table
+	 */
+	protected int getDropTableRows ()
+	{
+		return 4 + (countCustomDropTableSlots (PieceRules.getLastType () + 1) + 1) / 2;
 	}
 
-	/** Finds and returns the last piece on the indicated 
+	/** Finds and returns the piece on the indicated 
 	 * drop table that matches the given name. Returns null
 	 * if no match is found. (An allegiance of 1 indicates
 	 * the bottom table; -1 indicates the top table.)
@@ -443,14 +528,13 @@ public class BoardPanel extends JPanel
 	 */
 	protected Piece getDropTablePieceAt (int table, String name)
 	{
-		List<Piece> list = state.getCorrectDropTable (table);
-
 		Piece piece = null;
-		for (int i = list.size() - 1; i >= 0 && piece == null; i--)
+		for (int type = PieceType.PAWN; type <= PieceRules.getLastType() && piece == null; type++)
 		{		
-			if (name.equalsIgnoreCase (list.get (i).pieceName) ||
-					name.equalsIgnoreCase(list.get(i).doubleCharRepresentation[0].substring (0,1)))
-				piece = list.get(i);
+			Piece held = state.getHandPiece (table, type);
+			if (held != null && (name.equalsIgnoreCase (held.pieceName) ||
+					name.equalsIgnoreCase(held.doubleCharRepresentation[0].substring (0,1))))
+				piece = held;
 		}
 		return piece;		
 	}	
@@ -470,9 +554,9 @@ public class BoardPanel extends JPanel
 		{
 			boolean [][] moves = piece.generateMoves(state);
 
-			for (int i = 0; i < 9; i++)
+			for (int i = 0; i < state.getGeometry ().getRanks (); i++)
 			{
-				for (int j = 0; j < 9; j++)
+				for (int j = 0; j < state.getGeometry ().getFiles (); j++)
 				{
 					if (moves [j][i])
 					{
@@ -535,40 +619,35 @@ public class BoardPanel extends JPanel
 	 * <li> Gold Generals at (1,2)
 	 * <li> Bishops at (0,3)
 	 * <li> Rooks at (1,3)
+	 * <li> Custom pieces two to a row from (0,4), as getDropTableSlot places them
 	 * </ul>
+	 * Pieces are drawn smaller when custom pieces add rows to the table.
 	 *  
 	 * @param g				the Graphics context in which to paint
 	 * @param allegiance	the allegiance of the drop table 
 	 */	
 	protected void drawDropTablePieces (Graphics g, int allegiance)
 	{
-		List<Piece> pieces = state.getCorrectDropTable (allegiance);
-		int[][] pieceCounter = 
-			{
-				{0},
-				{0,0},
-				{0,0},
-				{0,0}				
-			};		
-
-		for (int i = 0; i < pieces.size(); i++)
+		for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++)
 		{
-			Point point = pieceToDropTable.get (pieces.get(i).pieceName);
+			Piece piece = state.getHandPiece (allegiance, type);
+			if (piece == null)
+				continue;
 
-			if (point != null) // if a matching location was found for the piece
-			{
-				pieceCounter [point.y][point.x]++;			
+			Point point = getDropTableSlot (type);
+			double scale = 4.0 / getDropTableRows ();
 
-				if (!(pieceIsSelected && pieces.get(i).equals(selectedPiece)))
-				{
-					Point location = getDropTableLocationOnPanel (allegiance, point);	
-					location.x += pieceCounter [point.y][point.x] * dropTableSize.width / 15;
-					drawPiece (g, pieces.get(i), location);	
-				}
+			// the drop table only holds a count, so the selected piece is one fewer to draw
+			int count = state.getHandCount (allegiance, type);
+			if (pieceIsSelected && piece.equals(selectedPiece))
+				count--;
+
+			for (int i = 1; i <= count; i++)
+			{
+				Point location = getDropTableLocationOnPanel (allegiance, point);	
+				location.x += i * dropTableSize.width / 15;
+				drawPiece (g, piece, location, scale);	
 			}
-			else			
-				if (log)
-					c.logError ("Warning: Can't draw king in drop table.");			
 		}
 	}
 
@@ -594,10 +673,28 @@ public class BoardPanel extends JPanel
 	 */
 	protected void drawPiece (Graphics g, Piece p, Point point)
 	{	
-		BufferedImage img = getImageHash (p.getClass().getSimpleName() + p.allegiance);
-		int x = point.x + pieceOffset.x;
-		int y = point.y + pieceOffset.y;
-		g.drawImage (img, x, y, pieceSize.width, pieceSize.height, null);
+		drawPiece (g, p, point, 1);
+	}
+
+	/** Draws the given shogi piece at the indicated location, scaled by 
+	 * the given factor. The pieceOffset is scaled along with the piece, 
+	 * so that a smaller piece stays centered on a smaller tile.
+	 * 
+	 * @param g 		the Graphics context in which to paint
+	 * @param p 		the piece
+	 * @param point 	the x,y coordinates at which to draw
+	 * @param scale		the size of the piece relative to pieceSize
+	 */
+	protected void drawPiece (Graphics g, Piece p, Point point, double scale)
+	{	
+		// images are kept by file name, and custom pieces are read the first time they are drawn
+		String id = p.imageNames[p.allegiance + 1];
+		if (!imageHash.containsKey (id))
+			imageHash.put (id, readImage (id));
+		BufferedImage img = getImageHash (id);
+		int x = point.x + (int) (pieceOffset.x * scale);
+		int y = point.y + (int) (pieceOffset.y * scale);
+		g.drawImage (img, x, y, (int) (pieceSize.width * scale), (int) (pieceSize.height * scale), null);
 	}
 
 	/** Converts the x,y coordinates of a point on the panel to the
@@ -616,7 +713,7 @@ public class BoardPanel extends JPanel
 		if (mouseIsOnBoard ())
 		{
 			int x = (location.x - boardOffset.x) / tileSize.width;
-			int y = 8 - ((location.y - boardOffset.y) / tileSize.height);
+			int y = state.getGeometry ().getRanks () - 1 - ((location.y - boardOffset.y) / tileSize.height);
 			sq = new Tile (x,y);
 		}
 		else if (mouseIsOnDropTable ())		
@@ -646,7 +743,7 @@ public class BoardPanel extends JPanel
 	protected Point getBoardLocationOnPanel (Tile sq)
 	{
 		int x = sq.x * tileSize.width + boardOffset.x;
-		int y = (8 - sq.y) * tileSize.height + boardOffset.y ;	
+		int y = (state.getGeometry ().getRanks () - 1 - sq.y) * tileSize.height + boardOffset.y ;	
 		return new Point (x,y);
 	}
 
@@ -662,7 +759,7 @@ public class BoardPanel extends JPanel
 		Point dropOffset = allegiance == 1 ? dropTableOffset1 : dropTableOffset2;			
 
 		int x = sq.x * dropTableSize.width / 2 + dropOffset.x;
-		int y = sq.y * dropTableSize.height / 4 + dropOffset.y;
+		int y = sq.y * dropTableSize.height / getDropTableRows () + dropOffset.y;
 
 		return new Point (x,y);
 	}
@@ -683,7 +780,7 @@ public class BoardPanel extends JPanel
 		{
 			Point dropOffset = allegiance == 1 ? dropTableOffset1 : dropTableOffset2;
 			int x = (location.x - dropOffset.x) / (dropTableSize.width / 2);
-			int y = (location.y - dropOffset.y) / (dropTableSize.height / 4);
+			int y = (location.y - dropOffset.y) * getDropTableRows () / dropTableSize.height;
 			sq = new Point (x,y);
 		}
 		return sq;
@@ -723,8 +820,8 @@ public class BoardPanel extends JPanel
 	{
 		boolean mouseIsOnBoard = false;		
 
-		if (boardOffset.x <= mouse.x && mouse.x < boardOffset.x + tileSize.width * 9)		
-			if (boardOffset.y <= mouse.y && mouse.y < boardOffset.y + tileSize.height * 9)			
+		if (boardOffset.x <= mouse.x && mouse.x < boardOffset.x + tileSize.width * state.getGeometry ().getFiles ())		
+			if (boardOffset.y <= mouse.y && mouse.y < boardOffset.y + tileSize.height * state.getGeometry ().getRanks ())			
 				mouseIsOnBoard = true;		
 
 		return mouseIsOnBoard;
@@ -805,6 +902,8 @@ public class BoardPanel extends JPanel
 	{		
 		Point location = click [1];
 
+		if (thinker != null)
+			return;
 		if (mouseIsOnBoard ())
 		{
 			Tile tile = getLocationOnBoard (location);			
@@ -857,12 +956,43 @@ public class BoardPanel extends JPanel
 	}
 
 	/** Moves the indicated piece to the indicated square on the board
-	 * if it is a valid move.
+	 * if it is a valid move, asking the player whether to promote it.
 	 * 
 	 * @param piece 	the piece to be moved
 	 * @param sq  		the file,rank coordinates of the new square 
 	 */
 	public boolean move (Piece piece, Tile sq)
+	{
+		return move (piece, sq, null);
+	}
+
+	/** Makes a packed move, such as the computer player's,
+	 * in the same way as a move made with the mouse.
+	 * 
+	 * @param packed	the packed move, as given by Search.findMove
+	 */
+	public boolean move (int packed)
+	{
+		BoardGeometry geometry = state.getGeometry ();
+		int to = PackedMove.getTo (packed);
+		Piece piece;
+		if (PackedMove.isDrop (packed))
+			piece = state.getHandPiece (turn, PackedMove.getDropType (packed));
+		else
+			piece = state.getPieceAt (geometry.x (PackedMove.getFrom (packed)), geometry.y (PackedMove.getFrom (packed)));
+		return move (piece, new Tile (geometry.x (to), geometry.y (to)), PackedMove.isPromotion (packed));
+	}
+
+	/** Moves the indicated piece to the indicated square on the board
+	 * if it is a valid move. Starts the computer player's turn afterwards, 
+	 * if it is the computer's turn to move.
+	 * 
+	 * @param piece 	the piece to be moved
+	 * @param sq  		the file,rank coordinates of the new square 
+	 * @param promotion	whether to promote the piece, if it may; 
+	 * 					null to ask the player
+	 */
+	protected boolean move (Piece piece, Tile sq, Boolean promotion)
 	{	
 		Move move = null;		
 		boolean successful = pieceIsSelected = false;
@@ -889,16 +1019,19 @@ public class BoardPanel extends JPanel
 						lastMoved = sq;
 					piece.move(state, sq.x, sq.y);
 
-					if (promote (piece))
+					if (promote (piece, promotion))
 						move.promote();
 				}
 				successful = true;	
 				turn *= -1;
+				state.setSideToMove (turn);
 				s.switchTurn ();
 				s.addMove(move);
 
 				if (state.isKingCheckmated(-piece.allegiance))									
 					gui.putWinner(piece.allegiance);				
+				else
+					playComputerTurn ();
 			}
 			else if (proMode)
 				gui.putWinner(-piece.allegiance);				
@@ -911,15 +1044,21 @@ public class BoardPanel extends JPanel
 	/** Promotes the given piece, if doing so is a valid move.
 	 * 
 	 * @param piece		the piece to be promoted
+	 * @param promotion	whether to promote the piece, if it may but does not 
+	 * 					have to; null to ask the player
 	 */
-	protected boolean promote (Piece piece)
+	protected boolean promote (Piece piece, Boolean promotion)
 	{
 		boolean promoted = false;
 		repaint ();		
 		if (piece.isPromotable())
 		{
 			int result = JOptionPane.YES_OPTION;			 
-			if (!piece.mustPromoteIfMoved (state, piece.x, piece.y))
+			if (piece.mustPromoteIfMoved (state, piece.x, piece.y))
+				result = JOptionPane.YES_OPTION;
+			else if (promotion != null)
+				result = promotion ? JOptionPane.YES_OPTION : JOptionPane.NO_OPTION;
+			else
 				result = JOptionPane.showConfirmDialog(this, "Promote piece?", "", JOptionPane.YES_NO_OPTION);
 			if (result == JOptionPane.YES_OPTION)
 			{
@@ -934,6 +1073,91 @@ public class BoardPanel extends JPanel
 		return promoted;
 	}
 
+	/** Starts the computer player's search for its move, if it is the
+	 * computer's turn and the game is not over. The search runs on a 
+	 * background thread, so the board stays responsive while the computer 
+	 * thinks, and its move is made on the event dispatch thread once found.
+	 */
+	public void playComputerTurn ()
+	{
+		if (computerPlayer != turn || winner != 0 || thinker != null)
+			return;
+
+		final GameState position = new GameState (state);
+		position.setSideToMove (turn);
+		thinker = new SwingWorker<Integer, Void> ()
+		{
+			@Override
+			protected Integer doInBackground ()
+			{
+				return search.findMove (position);
+			}
+
+			@Override
+			protected void done ()
+			{
+				if (thinker != this)
+					return;
+				thinker = null;
+				try
+				{
+					int packed = get ();
+					if (log)
+						c.logComputerMove (packed, search);
+					if (packed != 0)
+						move (packed);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread ().interrupt ();
+				}
+				catch (ExecutionException e)
+				{
+					if (log)
+						c.logError ("The computer player failed: " + e.getCause ());
+				}
+			}
+		};
+		thinker.execute ();
+	}
+
+	/** Stops the computer player's search, if it is thinking,
+	 * without making its move. Waits for the search to return, so that
+	 * the next one does not start while it is still running on the same Search.
+	 * The search is asked to stop again every STOP_WAIT milliseconds,
+	 * in case its background thread had not yet started it when first asked.
+	 */
+	public void stopComputerTurn ()
+	{
+		if (thinker == null)
+			return;
+		SwingWorker<Integer, Void> stopped = thinker;
+		thinker = null;
+		boolean interrupted = false;
+		while (! stopped.isDone ())
+		{
+			search.stop ();
+			try
+			{
+				stopped.get (STOP_WAIT, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+			catch (ExecutionException e)
+			{
+				// the search failed, and so has returned
+			}
+			catch (TimeoutException e)
+			{
+				// still running, so asked again
+			}
+		}
+		if (interrupted)
+			Thread.currentThread ().interrupt ();
+	}
+
 
 	/** Gets the boardOffset field. 
 	 * 
@@ -1042,13 +1266,16 @@ public class BoardPanel extends JPanel
 	 * the top drop table meets the top edge of the board, the
 	 * bottom drop table meets the bottom edge of the board, and 
 	 * both drop tables meet the right edge of the board. 
+	 * On a board too short for both, such as minishogi's, the bottom 
+	 * drop table goes below the top one instead.
 	 */
 	protected void recalculateDropTableOffsets ()
 	{
 		if (boardOffset != null && tileSize != null && dropTableSize != null)
 		{
-			int x = boardOffset.x + 9 * tileSize.width;
-			int y = boardOffset.y + 9 * tileSize.height - dropTableSize.height;
+			int x = boardOffset.x + state.getGeometry ().getFiles () * tileSize.width;
+			int y = Math.max (boardOffset.y + state.getGeometry ().getRanks () * tileSize.height - dropTableSize.height,
+					boardOffset.y + dropTableSize.height);
 			dropTableOffset1 = new Point (x, y);
 			dropTableOffset2 = new Point (x, boardOffset.y);
 		}
@@ -1073,19 +1300,64 @@ public class BoardPanel extends JPanel
 				c.logError("Attempted to recalculate pieceOffset with null tileSize.");		
 	}
 
+	/** Replaces the game on the board with another, which may be on a 
+	 * board of another size. The board is drawn with as many files and 
+	 * ranks as the new game's BoardGeometry has, and the drop tables are 
+	 * moved to meet its edges. A board of more than 9 files or ranks is 
+	 * drawn with smaller tiles and pieces, as getBoardScale gives.
+	 * 
+	 * @param state		the new game
+	 */
+	protected void setState (GameState state)
+	{
+		double scale = getBoardScale (state.getGeometry ()) / getBoardScale (this.state.getGeometry ());
+		this.state = state;
+		scaleBoard (scale);
+		recalculateDropTableOffsets ();
+		repaint ();
+	}
+
+	/** Returns the size tiles and pieces are drawn at on a board, 
+	 * relative to their size on the standard board, so that a board 
+	 * of more than 9 files or ranks fits in the same space.
+	 * 
+	 * @param geometry	the board
+	 * @return 			1 for a board of up to 9*9, and less for a larger one
+	 */
+	private static double getBoardScale (BoardGeometry geometry)
+	{
+		return Math.min (1.0, 9.0 / Math.max (geometry.getFiles (), geometry.getRanks ()));
+	}
+
+	/** Scales the tileSize and pieceSize fields by the given factor.
+	 * 
+	 * @param scale		the factor, which does nothing if it is 1
+	 */
+	private void scaleBoard (double scale)
+	{
+		if (scale != 1)
+		{
+			setTileSize ((int) Math.round (tileSize.width * scale), (int) Math.round (tileSize.height * scale));
+			setPieceSize ((int) Math.round (pieceSize.width * scale), (int) Math.round (pieceSize.height * scale));
+		}
+	}
+
 	/** Resets the board to its default configuration.
 	 */
 	protected void reset ()
 	{	
+		stopComputerTurn ();
 		snap.play();
-		state = new GameState ();
-		state.defaultBoardConfigure();	
+		GameState start = new GameState ();
+		start.defaultBoardConfigure();	
+		setState (start);
 		lastMoved = null;	
 		winner = 0;
 		turn = 1;
 		repaint ();
 		if (log)
 			c.logReset();
+		playComputerTurn ();
 	}	
 
 	/** Loads all of the images from the indicated
@@ -1128,7 +1400,7 @@ public class BoardPanel extends JPanel
 			for (int j = 0; j < 3; j++)
 			{
 				pieceImg = readImage (pieces[i].imageNames[j]);
-				id = pieces[i].getClass().getSimpleName() + (j - 1);
+				id = pieces[i].imageNames[j];
 				imageHash.put(id, pieceImg);
 			}
 		}
@@ -1159,6 +1431,7 @@ public class BoardPanel extends JPanel
 		{
 			setPieceSize (pieceImg.getWidth(), pieceImg.getHeight());
 			setTileSize (tileImg.getWidth(), tileImg.getHeight());
+			scaleBoard (getBoardScale (state.getGeometry ()));
 			setDropTableSize (dropImg.getWidth(), dropImg.getHeight());
 
 			int x = tileImg.getWidth() * 5 / 8;
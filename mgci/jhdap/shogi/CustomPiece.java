@@ -0,0 +1,44 @@
+package mgci.jhdap.shogi;
+
+/** A Class representing a custom piece, read from a file by PieceLoader.
+ * Its name, looks and rules all come from the tables of its type code,
+ * so one class serves every custom piece, promoted or not.
+ * A custom piece that does not promote is simply never promotable.
+ */
+public class CustomPiece extends PromotablePiece {
+    /** Constructs a custom piece at a given x and y-value,
+     * with the given type and allegiance.
+     * @param   type        The type code of this piece, which must have been defined.
+     * @param   x           The x-value at which this piece is located.
+     * @param   y           The y-value at which this piece is located.
+     * @param   allegiance  The allegiance of this piece.
+     */
+    public CustomPiece (int type, int x, int y, int allegiance) {
+        super(x, y, allegiance);
+        this.setType(type);
+    }
+
+    /** Returns the Piece this piece promotes to.
+     * @return              A piece of its promoted type, with the same allegiance and location,
+     *                      or this piece if it cannot promote here.
+     */
+    protected Piece promote () {
+        if (this.isPromotable()) {
+            return Piece.create(PieceRules.getPromotion(this.type), this.x, this.y, this.allegiance);
+        } else {
+            return this;
+        }
+    }
+
+    /** Returns the Piece this piece demotes to.
+     * @return              A piece of the type it promoted from,
+     *                      or this piece if it is not a promoted piece.
+     */
+    @Override
+    protected Piece demote () {
+        if (PieceRules.getDemotion(this.type) == this.type) {
+            return this;
+        }
+        return Piece.create(PieceRules.getDemotion(this.type), this.x, this.y, this.allegiance);
+    }
+}
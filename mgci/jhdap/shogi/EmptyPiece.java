@@ -13,9 +13,7 @@ public class EmptyPiece extends Piece {
      */
     public EmptyPiece (int x, int y) {
         super(x, y, 0);
-        this.pieceName = "Empty Tile";
-        this.doubleCharRepresentation = new String[]{". ",". ", ". "};
-        this.imageNames = new String[]{"dEmpty.png", "nEmpty.png", "uEmpty.png"};
+        this.setType(PieceType.EMPTY);
     }
 
     /** Returns whether or not this EmptyPiece can move to a given tile.
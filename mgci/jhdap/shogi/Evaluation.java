@@ -0,0 +1,206 @@
+package mgci.jhdap.shogi;
+
+/** A Class that scores positions for the Search, by the material of each player.
+ * Every piece on the board and in a drop table is worth a fixed amount, in hundredths of a pawn or so,
+ * and a piece in hand is worth a little more than on the board, as it can be dropped anywhere.
+ * Pieces are counted from the bitboards of the GameState, so scoring a position allocates nothing.
+ * <br><br>
+ * Custom pieces have no agreed value, and are given one from how many tiles they reach
+ * from the middle of an empty board, once, when PieceRules.define sets their rules.
+ * Mercenaries belong to neither player, and are only counted once they are captured.
+ */
+public final class Evaluation {
+    /** The value of each piece type on the board, indexed by type code.
+     * 0 for the King, which is never captured, and for custom types not yet defined.
+     */
+    private static final int[] VALUES = new int[PieceType.COUNT];
+
+    /** The value of each piece type in a drop table, indexed by type code.
+     */
+    private static final int[] HAND_VALUES = new int[PieceType.COUNT];
+
+    /** The value of a piece for each tile it reaches, up to the reach of a Gold General.
+     */
+    private static final int VALUE_PER_TILE = 90;
+
+    /** The value of a piece for each tile it reaches beyond the reach of a Gold General.
+     */
+    private static final int VALUE_PER_FAR_TILE = 30;
+
+    /** The reach of a Gold General, past which tiles are worth less.
+     */
+    private static final int GOLD_REACH = 6;
+
+    /** The most tiles of a slide that count towards a custom piece's reach,
+     * as the far end of a long slide is usually blocked.
+     */
+    private static final int SLIDE_REACH = 4;
+
+    /** The positions of the exchange suite, which checks GameState.getExchangeValue
+     * for the player to move, on the tile given by EXCHANGE_SQUARES:
+     * a Silver General capturing out of the promotion zone, which may not promote there,
+     * a recapture out of the zone, a capture into the zone, which promotes,
+     * a Rook behind a Lance on the same file, which joins in once the Lance has captured,
+     * a promoted Rook, which is worth its value on the board and a Rook's in hand,
+     * and a King that may not capture a defended Pawn.
+     */
+    private static final String[] EXCHANGE_POSITIONS = {
+        "4k4/9/4S4/3p5/9/9/9/9/4K4 b - 1",
+        "4k4/9/3pS4/3G5/9/9/9/9/4K4 w - 1",
+        "4k4/9/3p5/4S4/9/9/9/9/4K4 b - 1",
+        "8k/4g4/4p4/9/9/4L4/9/4R4/K8 b - 1",
+        "4k4/9/9/4+r4/4P4/9/9/9/4K4 b - 1",
+        "4k4/9/9/9/9/3s5/4p4/4K4/9 b - 1",
+    };
+
+    /** The tile of each exchange suite position, as given by Bitboard.square.
+     */
+    private static final int[] EXCHANGE_SQUARES = {
+        Bitboard.square(3, 5), // 6d
+        Bitboard.square(3, 5), // 6d
+        Bitboard.square(3, 6), // 6c
+        Bitboard.square(4, 6), // 5c
+        Bitboard.square(4, 5), // 5d
+        Bitboard.square(4, 2), // 5g
+    };
+
+    /** The exchange value of each exchange suite position, worked out by hand from the values below.
+     */
+    private static final int[] EXCHANGE_VALUES = {
+        190,
+        950,
+        235,
+        415,
+        2495,
+        0,
+    };
+
+    static {
+        setValue(PieceType.PAWN, 90, 100);
+        setValue(PieceType.LANCE, 315, 350);
+        setValue(PieceType.KNIGHT, 405, 450);
+        setValue(PieceType.SILVER_GENERAL, 495, 550);
+        setValue(PieceType.GOLD_GENERAL, 540, 600);
+        setValue(PieceType.BISHOP, 855, 950);
+        setValue(PieceType.ROOK, 990, 1100);
+        setValue(PieceType.PROMOTED_PAWN, 540, 0);
+        setValue(PieceType.PROMOTED_LANCE, 540, 0);
+        setValue(PieceType.PROMOTED_KNIGHT, 540, 0);
+        setValue(PieceType.PROMOTED_SILVER_GENERAL, 540, 0);
+        setValue(PieceType.PROMOTED_BISHOP, 945, 0);
+        setValue(PieceType.PROMOTED_ROOK, 1395, 0);
+    }
+
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private Evaluation () {
+    }
+
+    /** Sets the values of a piece type.
+     * @param   type        The type code of the piece.
+     * @param   value       Its value on the board.
+     * @param   handValue   Its value in a drop table.
+     */
+    private static void setValue (int type, int value, int handValue) {
+        HAND_VALUES[type] = handValue;
+        VALUES[type] = value;
+    }
+
+    /** Values a custom piece type from its rules, as PieceRules.define sets them.
+     * Each custom type is defined once, so its values are set once, before any search scores it.
+     * @param   type        The custom type code, from PieceType.FIRST_CUSTOM up.
+     */
+    static void define (int type) {
+        int value = estimateValue(type);
+        setValue(type, value, value + value/8);
+    }
+
+    /** Returns the value of a piece type on the board.
+     * @param   type        The type code of the piece.
+     * @return              Its value, or 0 for the King or an empty square.
+     */
+    public static int getValue (int type) {
+        return VALUES[type];
+    }
+
+    /** Returns the value of a piece type in a drop table.
+     * @param   type        The type code of the piece, which is not a promoted type.
+     * @return              Its value.
+     */
+    public static int getHandValue (int type) {
+        return HAND_VALUES[type];
+    }
+
+    /** Values a custom piece type by how many tiles it reaches.
+     * Each step counts once, and each slide up to SLIDE_REACH tiles,
+     * with sideways and diagonal slides counted for both sides.
+     * @param   type        The type code of the piece.
+     * @return              Its value, at least that of a Pawn.
+     */
+    private static int estimateValue (int type) {
+        int reach = PieceRules.getSteps(type).length / 2;
+        for (int direction = 0; direction < PieceRules.DIRECTIONS; direction++) {
+            int tiles = Math.min(PieceRules.getSlide(type, direction), SLIDE_REACH);
+            reach += PieceRules.getDirectionOffsets(direction)[0] == 0 ? tiles : 2*tiles;
+        }
+        if (reach <= GOLD_REACH) {
+            return Math.max(reach, 1) * VALUE_PER_TILE;
+        }
+        return GOLD_REACH*VALUE_PER_TILE + (reach - GOLD_REACH)*VALUE_PER_FAR_TILE;
+    }
+
+    /** Scores a position for the player whose turn it is.
+     * @param   state       The position.
+     * @return              The value of that player's pieces, on the board and in hand,
+     *                      less the value of the other player's.
+     */
+    public static int evaluate (GameState state) {
+        int score = 0;
+        int lastType = PieceRules.getLastType();
+        for (int type = PieceType.PAWN; type <= lastType; type++) {
+            if (type == PieceType.KING) {
+                continue;
+            }
+            int onBoard = state.getPieceCount(1, type) - state.getPieceCount(-1, type);
+            int inHand = state.getHandCount(1, type) - state.getHandCount(-1, type);
+            if (onBoard != 0) {
+                score += onBoard * getValue(type);
+            }
+            if (inHand != 0) {
+                score += inHand * getHandValue(type);
+            }
+        }
+        return score * state.getSideToMove();
+    }
+
+    /** Returns the number of positions in the exchange suite.
+     * @return              The number of exchange suite positions.
+     */
+    public static int getExchangeSuiteSize () {
+        return EXCHANGE_POSITIONS.length;
+    }
+
+    /** Returns the SFEN string of an exchange suite position.
+     * @param   index       The number of the exchange suite position.
+     * @return              The SFEN string, with the player to capture first to move.
+     */
+    public static String getExchangeSuitePosition (int index) {
+        return EXCHANGE_POSITIONS[index];
+    }
+
+    /** Returns the tile of an exchange suite position that the exchange is on.
+     * @param   index       The number of the exchange suite position.
+     * @return              The square, as given by Bitboard.square.
+     */
+    public static int getExchangeSuiteSquare (int index) {
+        return EXCHANGE_SQUARES[index];
+    }
+
+    /** Returns the known exchange value of an exchange suite position.
+     * @param   index       The number of the exchange suite position.
+     * @return              What the player to move wins, in the units of evaluate.
+     */
+    public static int getExchangeSuiteValue (int index) {
+        return EXCHANGE_VALUES[index];
+    }
+}
@@ -1,115 +1,622 @@
 package mgci.jhdap.shogi;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /** A Class representing the state of the game at any given moment.
  * Stores the board and the contents of the two drop tables.
  * Can be considered the table the game is being played on.
+ * <br><br>
+ * The board is held as one byte per square, the piece code of PieceType.code,
+ * and the drop tables as a count per type.
+ * Piece objects are only made when they are asked for, by getPieceAt or getHandPiece,
+ * so a position can be stored in around a hundred bytes with pack.
+ * Smaller boards, such as minishogi's, use the corner of the same 9*9 grid given by their BoardGeometry.
+ * A board too large for that grid, such as chu shogi's 12*12, is laid out as a mailbox:
+ * it has only its piece codes, numbered by its BoardGeometry, and its bitboards and line occupancies stay empty,
+ * as attacks on it are found by Mailbox instead.
+ * <br><br>
+ * Mercenaries (allegiance 0) sit on the board beside the pieces of the two players,
+ * with bitboards of their own. They never move or attack, but block sliders
+ * and may be taken by either player, joining the drop table of whoever takes them.
+ * There is no drop table of mercenaries.
  * @author                  Dmitry Andreevich Paramonov
  * @author                  Jiayin Huang
  */
 public class GameState {
+    /** The size of the board and the depth of its promotion zone.
+     * Every board but a mailbox is held on the 9*9 grid, and tiles off a smaller board stay empty.
+     */
+    private BoardGeometry geometry;
+
     /** The board at the time represented by this GameState.
-     * A list of lists, where each list represents a row of pieces.
-     * Stores all non-filled tiles with EmptyPieces.
+     * The piece code of each square, indexed by the square numbers of the BoardGeometry,
+     * as given by PieceType.code, or 0 for an empty square.
+     * A piece code is also the index of that piece's bitboard.
+     */
+    private byte[] codes;
+
+    /** The low halves of the bitboards of each allegiance and piece type,
+     * indexed by PieceType.index(allegiance, type).
+     */
+    private long[] piecesLow;
+
+    /** The high halves of the bitboards of each allegiance and piece type,
+     * indexed by PieceType.index(allegiance, type).
+     */
+    private long[] piecesHigh;
+
+    /** The low halves of the tiles occupied by each allegiance,
+     * indexed by allegiance+1: the top player, the mercenaries and the bottom player.
+     */
+    private long[] occupiedLow;
+
+    /** The high halves of the tiles occupied by each allegiance,
+     * indexed by allegiance+1.
+     */
+    private long[] occupiedHigh;
+
+    /** The low half of the tiles occupied by any piece, of either player or a mercenary.
+     * Kept with the others, so that move generation tests it instead of joining all three.
+     */
+    private long allOccupiedLow;
+
+    /** The high half of the tiles occupied by any piece.
+     */
+    private long allOccupiedHigh;
+
+    /** The square of each allegiance's King, indexed by allegiance+1,
+     * or -1 if that allegiance has no King on the board.
+     */
+    private int[] kingSquares;
+
+    /** The number of pieces of each allegiance and type on the board,
+     * indexed by PieceType.index(allegiance, type).
+     * Kept for every layout, as a mailbox has no bitboards to count.
+     */
+    private int[] pieceCounts;
+
+    /** The occupied tiles of each rank, indexed by y-value,
+     * with one bit per x-value.
+     * These line occupancies are what the sliding attacks in Attacks are looked up by.
+     */
+    private int[] rankOccupancy;
+
+    /** The occupied tiles of each file, indexed by x-value,
+     * with one bit per y-value.
+     */
+    private int[] fileOccupancy;
+
+    /** The occupied tiles of each diagonal running along increasing x and y,
+     * indexed by x-y+8, with one bit per x-value.
+     */
+    private int[] diagonalOccupancy;
+
+    /** The occupied tiles of each diagonal running along increasing x and decreasing y,
+     * indexed by x+y, with one bit per x-value.
+     */
+    private int[] antiDiagonalOccupancy;
+
+    /** The number of pieces of each type in each drop table,
+     * indexed by PieceType.index(allegiance, type).
+     * This is all a drop table holds: 
+     * pieces in hand are identical apart from their type,
+     * so only how many there are of each type is kept.
+     */
+    private int[] handCounts;
+
+    /** The Piece shown for each type in each drop table,
+     * indexed by PieceType.index(allegiance, type), or null if not created yet.
+     * Made when first asked for, and kept until it is dropped,
+     * so that the same Piece can be selected and dragged out of a drop table.
+     */
+    private Piece[] handPieces;
+
+    /** The allegiance of the player whose turn it is. Either 1 or -1.
+     */
+    private int sideToMove;
+
+    /** The Zobrist key of this GameState.
+     * Updated every time a square, a drop table count or the side to move changes.
+     */
+    private long key;
+
+    /** The EmptyPiece of each tile, indexed by x and y, shared by every GameState.
+     * Returned by getPieceAt for an empty square, rather than a new one each time.
+     */
+    private static final Piece[][] EMPTY_PIECES = new Piece[BoardGeometry.MAX_SIZE][BoardGeometry.MAX_SIZE];
+
+    static {
+        for (int x = 0; x < BoardGeometry.MAX_SIZE; x++) {
+            for (int y = 0; y < BoardGeometry.MAX_SIZE; y++) {
+                EMPTY_PIECES[x][y] = new EmptyPiece(x, y);
+            }
+        }
+    }
+
+    /** A MoveList for the move lookups of a single Piece,
+     * such as Piece.isValidMove, so that they do not create one on every call.
+     * Only used within a single call, and never by the MoveGenerator itself.
+     */
+    private MoveList moveBuffer;
+
+    /** The gain of each capture of the exchange worked out by getExchangeValue,
+     * for the player making it, if the other player does not capture back.
+     */
+    private int[] exchangeGains;
+
+    /** The low half of the pieces that have already captured in the exchange
+     * worked out by getExchangeValue, which are left off the board while it is worked out.
+     */
+    private long exchangeRemovedLow;
+
+    /** The high half of the pieces that have already captured in the exchange.
      */
-    private List<List<Piece>> board;
+    private long exchangeRemovedHigh;
 
-    /** Player 1's (White/Bottom) drop table.
-     * Stores the pieces captured by player 1.
+    /** The pieces that have already captured in the exchange on a mailbox, indexed by square,
+     * or null on the grid of a Bitboard.
      */
-    private List<Piece> dropTable1;
+    private boolean[] exchangeRemoved;
 
-    /** Player 2's (Black/Top) drop table.
-     * Stores the pieces captured by player 2.
+    /** The occupancy of the rank through the square of the exchange,
+     * without the pieces that have already captured, so that the sliders behind them attack it.
      */
-    private List<Piece> dropTable2;
+    private int exchangeRank;
+
+    /** The occupancy of the file through the square of the exchange, without the pieces that have captured.
+     */
+    private int exchangeFile;
+
+    /** The occupancy of the diagonal of increasing x and y through the square of the exchange.
+     */
+    private int exchangeDiagonal;
+
+    /** The occupancy of the other diagonal through the square of the exchange.
+     */
+    private int exchangeAntiDiagonal;
+
+    /** The number of moves made with makeMove that have not been unmade yet.
+     */
+    private int undoSize;
+
+    /** The packed move of each record on the undo stack.
+     */
+    private int[] undoMoves;
+
+    /** The piece code captured by each record on the undo stack, or 0.
+     */
+    private byte[] undoCaptured;
+
+    /** The side to move before each record on the undo stack was made.
+     */
+    private int[] undoSides;
+
+    /** The Zobrist key before each record on the undo stack was made.
+     */
+    private long[] undoKeys;
+
+    /** The length of the array made by pack, when no custom piece is in either drop table
+     * and the board is on the grid of a Bitboard:
+     * a piece code for each square, a count for each type of each drop table,
+     * and the side to move.
+     * A mailbox stores its own number of squares in place of Bitboard.SQUARES.
+     */
+    public static final int PACKED_SIZE = Bitboard.SQUARES + 2*PieceType.GOLD_GENERAL + 1;
 
     /** Constructs a new, empty game state. 
      * Constructs a game state with a 9*9 board, 
-     * filled with EmptyPieces, 
+     * with no pieces on it, 
      * and with empty drop tables.
      */
     public GameState () {
-        this.board = new ArrayList<List<Piece>>(9);
-        for (int i = 0; i < 9; i++) {
-            this.board.add(i, new ArrayList<Piece>(9));
+        this(BoardGeometry.STANDARD);
+    }
+
+    /** Constructs a new, empty game state on a board of a given size,
+     * with no pieces on it, and with empty drop tables.
+     * @param   geometry    The board.
+     */
+    public GameState (BoardGeometry geometry) {
+        this.setGeometry(geometry);
+        this.piecesLow = new long[3*PieceType.COUNT];
+        this.piecesHigh = new long[3*PieceType.COUNT];
+        this.occupiedLow = new long[3];
+        this.occupiedHigh = new long[3];
+        this.kingSquares = new int[]{-1, -1, -1};
+        this.pieceCounts = new int[3*PieceType.COUNT];
+        this.rankOccupancy = new int[9];
+        this.fileOccupancy = new int[9];
+        this.diagonalOccupancy = new int[17];
+        this.antiDiagonalOccupancy = new int[17];
+        this.handCounts = new int[3*PieceType.COUNT];
+        this.handPieces = new Piece[3*PieceType.COUNT];
+        this.sideToMove = 1;
+        this.key = 0L;
+        this.moveBuffer = new MoveList();
+        this.undoSize = 0;
+        this.growUndoStack(64);
+    }
+
+    /** Constructs a copy of another game state.
+     * Moves made on one do not affect the other.
+     * Its undo stack starts empty, so moves made on the original before copying
+     * cannot be unmade on the copy.
+     * @param   state       The game state to copy.
+     */
+    public GameState (GameState state) {
+        this(state.geometry);
+        for (int i = 0; i < this.codes.length; i++) {
+            this.setCode(i, state.codes[i]);
         }
-        this.dropTable1 = new ArrayList<Piece>(0);
-        this.dropTable2 = new ArrayList<Piece>(0);
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                this.board.get(i).add(new EmptyPiece(i, j));
+        for (int i = 0; i < this.handCounts.length; i++) {
+            this.changeHandCount(i, state.handCounts[i]);
+        }
+        this.setSideToMove(state.sideToMove);
+    }
+
+    /** Constructs a game state on the standard board from a position stored with pack.
+     * @param   packed      The array made by pack.
+     * @throws  IllegalArgumentException
+     *                      If the array is shorter than PACKED_SIZE, 
+     *                      or does not end in whole pairs of custom drop table counts.
+     */
+    public GameState (byte[] packed) {
+        this(BoardGeometry.STANDARD, packed);
+    }
+
+    /** Constructs a game state from a position stored with pack.
+     * The board's size is not stored, so it is given again.
+     * @param   geometry    The board the position was on.
+     * @param   packed      The array made by pack.
+     * @throws  IllegalArgumentException
+     *                      If the array is shorter than the packed size of the board, 
+     *                      or does not end in whole pairs of custom drop table counts.
+     */
+    public GameState (BoardGeometry geometry, byte[] packed) {
+        this(geometry);
+        int size = packedSize(geometry);
+        if (packed.length < size || (packed.length - size) % 2 != 0) {
+            throw new IllegalArgumentException("A packed position is " + size + " bytes and pairs of bytes, not " + packed.length);
+        }
+        for (int i = 0; i < this.codes.length; i++) {
+            this.setCode(i, packed[i]);
+        }
+        int n = this.codes.length;
+        for (int allegiance = 1; allegiance >= -1; allegiance -= 2) {
+            for (int type = PieceType.PAWN; type <= PieceType.GOLD_GENERAL; type++) {
+                this.changeHandCount(PieceType.index(allegiance, type), packed[n++]);
             }
         }
+        this.setSideToMove(packed[n]);
+        for (n = size; n < packed.length; n += 2) {
+            this.changeHandCount(packed[n], packed[n+1]);
+        }
+    }
+
+    /** Returns the length of the array made by pack on a given board,
+     * when no custom piece is in either drop table.
+     * @param   geometry    The board.
+     * @return              PACKED_SIZE on the grid of a Bitboard,
+     *                      or the same with the number of squares of a mailbox.
+     */
+    private static int packedSize (BoardGeometry geometry) {
+        return PACKED_SIZE - Bitboard.SQUARES + geometry.getSquares();
+    }
+
+    /** Stores the position in a byte array of PACKED_SIZE bytes,
+     * or the number of squares more on a mailbox,
+     * for keeping a great many positions in memory.
+     * Each custom piece type in a drop table adds two more bytes, 
+     * its piece code and its count.
+     * Only the position is stored, not the undo stack.
+     * @return              The packed position.
+     * @see                 #GameState(byte[])
+     */
+    public byte[] pack () {
+        int size = packedSize(this.geometry);
+        for (int allegiance = 1; allegiance >= -1; allegiance -= 2) {
+            for (int type = PieceType.FIRST_CUSTOM; type <= PieceRules.getLastType(); type++) {
+                size += this.getHandCount(allegiance, type) == 0 ? 0 : 2;
+            }
+        }
+        byte[] packed = Arrays.copyOf(this.codes, size);
+        int n = this.codes.length;
+        for (int allegiance = 1; allegiance >= -1; allegiance -= 2) {
+            for (int type = PieceType.PAWN; type <= PieceType.GOLD_GENERAL; type++) {
+                packed[n++] = (byte) this.getHandCount(allegiance, type);
+            }
+        }
+        packed[n++] = (byte) this.sideToMove;
+        for (int allegiance = 1; allegiance >= -1; allegiance -= 2) {
+            for (int type = PieceType.FIRST_CUSTOM; type <= PieceRules.getLastType(); type++) {
+                if (this.getHandCount(allegiance, type) != 0) {
+                    packed[n++] = (byte) PieceType.index(allegiance, type);
+                    packed[n++] = (byte) this.getHandCount(allegiance, type);
+                }
+            }
+        }
+        return packed;
     }
 
     /** Returns the board at a given point in time.
+     * The lists are a copy, built on every call out of new Pieces,
+     * so changing them has no effect on this GameState.
      * @return              The List&lt;List&lt;Piece&gt;&gt; 
-     * that represents the game board.
+     * that represents the game board, one list per row.
      */
     public List<List<Piece>> getBoard () {
-        return this.board;
+        List<List<Piece>> rows = new ArrayList<List<Piece>>(this.geometry.getRanks());
+        for (int i = 0; i < this.geometry.getRanks(); i++) {
+            List<Piece> row = new ArrayList<Piece>(this.geometry.getFiles());
+            for (int j = 0; j < this.geometry.getFiles(); j++) {
+                row.add(this.getPieceAt(j, i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /** Returns the size of the board and the depth of its promotion zone.
+     * @return              The board's geometry.
+     */
+    public BoardGeometry getGeometry () {
+        return this.geometry;
+    }
+
+    /** Sets the board, while it is empty,
+     * and makes the arrays indexed by square the size of its square numbers.
+     * @param   geometry    The board.
+     */
+    private void setGeometry (BoardGeometry geometry) {
+        this.geometry = geometry;
+        if (this.codes == null || this.codes.length != geometry.getSquares()) {
+            this.codes = new byte[geometry.getSquares()];
+            this.exchangeGains = new int[geometry.getSquares()];
+            this.exchangeRemoved = geometry.getLayout() == BoardGeometry.MAILBOX ? new boolean[geometry.getSquares()] : null;
+        }
+    }
+
+    /** Returns the low half of the bitboard of a given allegiance and piece type.
+     * @param   allegiance  The allegiance of the pieces. Either 1 or -1.
+     * @param   type        The type code of the pieces.
+     * @return              The low half of the set of tiles holding such pieces.
+     */
+    public long getPiecesLow (int allegiance, int type) {
+        return this.piecesLow[PieceType.index(allegiance, type)];
+    }
+
+    /** Returns the high half of the bitboard of a given allegiance and piece type.
+     * @param   allegiance  The allegiance of the pieces. Either 1 or -1.
+     * @param   type        The type code of the pieces.
+     * @return              The high half of the set of tiles holding such pieces.
+     */
+    public long getPiecesHigh (int allegiance, int type) {
+        return this.piecesHigh[PieceType.index(allegiance, type)];
+    }
+
+    /** Returns the low half of the set of tiles occupied by a given allegiance.
+     * @param   allegiance  The allegiance of the pieces. Either 1, 0 or -1.
+     * @return              The low half of the set of tiles holding such pieces.
+     */
+    public long getOccupiedLow (int allegiance) {
+        return this.occupiedLow[allegiance+1];
+    }
+
+    /** Returns the high half of the set of tiles occupied by a given allegiance.
+     * @param   allegiance  The allegiance of the pieces. Either 1, 0 or -1.
+     * @return              The high half of the set of tiles holding such pieces.
+     */
+    public long getOccupiedHigh (int allegiance) {
+        return this.occupiedHigh[allegiance+1];
+    }
+
+    /** Returns the low half of the set of tiles occupied by any piece,
+     * whatever its allegiance.
+     * @return              The low half of the set of occupied tiles.
+     */
+    public long getAllOccupiedLow () {
+        return this.allOccupiedLow;
+    }
+
+    /** Returns the high half of the set of tiles occupied by any piece,
+     * whatever its allegiance.
+     * @return              The high half of the set of occupied tiles.
+     */
+    public long getAllOccupiedHigh () {
+        return this.allOccupiedHigh;
+    }
+
+    /** Returns the square of the King of a given allegiance.
+     * @param   allegiance  The allegiance of the King. Either 1 or -1.
+     * @return              The square of the King, as given by BoardGeometry.square,
+     *                      or -1 if there is no such King on the board.
+     */
+    public int getKingSquare (int allegiance) {
+        return this.kingSquares[allegiance+1];
+    }
+
+    /** Returns the number of pieces of a given allegiance and type on the board.
+     * @param   allegiance  The allegiance of the pieces. Either 1, 0 or -1.
+     * @param   type        The type code of the pieces.
+     * @return              How many such pieces are on the board.
+     */
+    public int getPieceCount (int allegiance, int type) {
+        return this.pieceCounts[PieceType.index(allegiance, type)];
+    }
+
+    /** Returns the occupied tiles of a rank.
+     * @param   y           The y-value of the rank.
+     * @return              A set of x-values, one bit for each occupied tile.
+     */
+    public int getRankOccupancy (int y) {
+        return this.rankOccupancy[y];
+    }
+
+    /** Returns the occupied tiles of a file.
+     * @param   x           The x-value of the file.
+     * @return              A set of y-values, one bit for each occupied tile.
+     */
+    public int getFileOccupancy (int x) {
+        return this.fileOccupancy[x];
+    }
+
+    /** Returns the occupied tiles of a diagonal running along increasing x and y.
+     * @param   diagonal    The diagonal, numbered x-y+8.
+     * @return              A set of x-values, one bit for each occupied tile.
+     */
+    public int getDiagonalOccupancy (int diagonal) {
+        return this.diagonalOccupancy[diagonal];
+    }
+
+    /** Returns the occupied tiles of a diagonal running along increasing x and decreasing y.
+     * @param   antiDiagonal The diagonal, numbered x+y.
+     * @return              A set of x-values, one bit for each occupied tile.
+     */
+    public int getAntiDiagonalOccupancy (int antiDiagonal) {
+        return this.antiDiagonalOccupancy[antiDiagonal];
+    }
+
+    /** Returns the type code of the piece on a square.
+     * @param   square      The square number, as given by BoardGeometry.square.
+     * @return              The type code of the piece, or PieceType.EMPTY.
+     */
+    public int getTypeAt (int square) {
+        return PieceType.typeOf(this.codes[square]);
+    }
+
+    /** Returns the allegiance of the piece on a square.
+     * Mercenaries and empty squares both give 0, 
+     * so getTypeAt tells them apart where it matters.
+     * @param   square      The square number, as given by BoardGeometry.square.
+     * @return              The allegiance of the piece, or 0 for a mercenary or an empty square.
+     */
+    public int getAllegianceAt (int square) {
+        return PieceType.allegianceOf(this.codes[square]);
+    }
+
+    /** Returns the number of pieces of a given type in a player's drop table.
+     * @param   allegiance  The allegiance of the drop table. Either 1 or -1.
+     * @param   type        The type code of the pieces.
+     * @return              How many such pieces are in the drop table.
+     */
+    public int getHandCount (int allegiance, int type) {
+        return this.handCounts[PieceType.index(allegiance, type)];
+    }
+
+    /** Returns the allegiance of the player whose turn it is.
+     * @return              Either 1 or -1.
+     */
+    public int getSideToMove () {
+        return this.sideToMove;
+    }
+
+    /** Sets the allegiance of the player whose turn it is.
+     * @param   allegiance  Either 1 or -1.
+     */
+    public void setSideToMove (int allegiance) {
+        if (allegiance != this.sideToMove) {
+            this.key ^= Zobrist.SIDE;
+            this.sideToMove = allegiance;
+        }
+    }
+
+    /** Returns the 64-bit Zobrist key of this GameState.
+     * Two equal GameStates always have the same key.
+     * The key is kept up to date as the game is played,
+     * so this takes constant time.
+     * @return              The key of the current position.
+     */
+    public long getKey () {
+        return this.key;
+    }
+
+    /** Changes the count of a piece type in a drop table,
+     * and updates the key to match.
+     * @param   code        The bitboard index of the piece type.
+     * @param   change      The amount the count changes by, which may be any number of pieces
+     *                      as long as the new count is from 0 to Zobrist.MAX_HAND_COUNT.
+     */
+    private void changeHandCount (int code, int change) {
+        this.key ^= Zobrist.HANDS[code][this.handCounts[code]];
+        this.handCounts[code] += change;
+        this.key ^= Zobrist.HANDS[code][this.handCounts[code]];
     }
 
     /** Return the drop table of player 1 at a given point in time.
      * @return              The List&lt;Piece&gt;
      * that represents the first player's drop table.
+     * @see                 #getCorrectDropTable(int)
      */
     public List<Piece> getDropTable1 () {
-        return this.dropTable1;
+        return this.getCorrectDropTable(1);
     }
 
-    /** Return the drop table of player 1 at a given point in time.
+    /** Return the drop table of player 2 at a given point in time.
      * @return              The List&lt;Piece&gt;
-     * that represents the first player's drop table.
+     * that represents the second player's drop table.
+     * @see                 #getCorrectDropTable(int)
      */
     public List<Piece> getDropTable2 () {
-        return this.dropTable2;
+        return this.getCorrectDropTable(-1);
     }
 
     /** Returns the drop table of a given player.
+     * The list is built from the drop table's counts on every call, 
+     * in type order, and holds each type's hand Piece once for every piece of that type.
+     * Changing it has no effect on this GameState.
      * @param allegiance    The allegiance of the player
      *                      whose drop table we are looking for.
      *                      Either 1 or -1.
      * @return              The List&lt;Piece&gt;
-     * that represents the given player's drop table.
+     * that represents the given player's drop table,
+     * or null for any other allegiance, mercenaries included.
      */
     public List<Piece> getCorrectDropTable(int allegiance) {
-        if (allegiance == 1) {
-            return this.dropTable1;
-        } else if (allegiance == -1) {
-            return this.dropTable2;
-        } else {
+        if (allegiance != 1 && allegiance != -1) {
             return null;
         }
+        List<Piece> table = new ArrayList<Piece>();
+        for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++) {
+            Piece piece = this.getHandPiece(allegiance, type);
+            for (int i = this.getHandCount(allegiance, type); i > 0; i--) {
+                table.add(piece);
+            }
+        }
+        return table;
     }
-    
-    /** Adds a piece to the drop table of a given player.
-     * Appends a Piece to the List that represents 
-     * the drop table with the given allegiance.
-     * @param   allegiance  The drop table to be added to. Either 1 or -1.
-     * @param   piece       The piece to be added to the drop table.
+
+    /** Returns the Piece standing for a given type in a given drop table.
+     * The same Piece is returned until it is dropped,
+     * so it can be selected and dragged like a piece on the board.
+     * @param   allegiance  The allegiance of the drop table. Either 1 or -1.
+     * @param   type        The type code of the piece.
+     * @return              The hand Piece, at (-1, -1),
+     *                      or null if the drop table holds no piece of that type.
      */
-    protected void addPieceToDropTable (int allegiance, Piece piece) {
-    	piece.setAllegiance(allegiance);
-        piece = piece.demote();
-        piece.setPosition(-1, -1);
-        switch (allegiance) {
-            case 1:     dropTable1.add(piece); break;
-            case -1:    dropTable2.add(piece); break;
+    public Piece getHandPiece (int allegiance, int type) {
+        int code = PieceType.index(allegiance, type);
+        if (this.handCounts[code] == 0) {
+            return null;
+        }
+        if (this.handPieces[code] == null) {
+            this.handPieces[code] = Piece.create(type, -1, -1, allegiance);
+            this.handPieces[code].setGeometry(this.geometry);
         }
+        return this.handPieces[code];
     }
-    
-    /** Restores a piece to its position on its drop table
-     * after a simulation dropping.
+
+    /** Adds a piece to the drop table of a given player.
+     * The piece is demoted, and the count of its type goes up by one.
+     * The piece's own allegiance does not matter, 
+     * so a captured mercenary becomes the capturer's to drop.
+     * The Piece object itself is not kept.
      * @param   allegiance  The drop table to be added to. Either 1 or -1.
      * @param   piece       The piece to be added to the drop table.
      */
-    protected void mockAddPieceToDropTable (int allegiance, Piece piece) {
-    	piece.setAllegiance(allegiance);        
-        piece.setPosition(-1, -1);     
+    protected void addPieceToDropTable (int allegiance, Piece piece) {
+        this.changeHandCount(PieceType.index(allegiance, PieceRules.getDemotion(piece.getType())), 1);
     }
     
     /** Drops a piece from the drop table onto the board.
@@ -118,80 +625,148 @@ public class GameState {
      * @param allegiance    The allegiance of the drop table we're dropping from.
      * @param x             The x-value at which we're dropping the piece.
      * @param y             The y-value at which we're dropping the piece.
-     * @param piece         The piece we're dropping.
+     * @param piece         The piece we're dropping. 
+     *                      Normally the hand Piece of its type.
      */
     protected void dropPieceFromTable (int allegiance, int x, int y, Piece piece) {
+        int code = PieceType.index(allegiance, piece.getType());
+        if (this.handCounts[code] > 0) {
+            if (this.handPieces[code] == piece) {
+                this.handPieces[code] = null;
+            }
+            this.changeHandCount(code, -1);
+        }
         this.setPieceAt(x, y, piece);
         piece.setPosition(x, y);
-        this.getCorrectDropTable(allegiance).remove(piece);
-        
-    }
-    
-    /** Simulates the dropping of a piece from the drop table onto the board.
-     * Places the piece on the board.
-     * @param allegiance    The allegiance of the drop table we're dropping from.
-     * @param x             The x-value at which we're dropping the piece.
-     * @param y             The y-value at which we're dropping the piece.
-     * @param piece         The piece we're dropping.
-     */
-    protected void mockDropPieceFromTable (int allegiance, int x, int y, Piece piece) {
-        this.setPieceAt(x, y, piece);
-        piece.setPosition(x, y);                
-    }
-    
-    /** Drops a piece from the drop table onto the board.
-     * Removes the piece from the drop table, 
-     * and places it on the board.
-     * @param allegiance    The allegiance of the drop table we're dropping from.
-     * @param x             The x-value at which we're dropping the piece.
-     * @param y             The y-value at which we're dropping the piece.
-     * @param pieceNumberInDropTable         
-     *                      The index of the piece we're dropping in the drop table.
-     */
-    protected void dropPieceFromTable (int allegiance, int x, int y, int pieceNumberInDropTable) {
-        this.setPieceAt(x, y, this.getCorrectDropTable(allegiance).get(pieceNumberInDropTable));
-        this.getCorrectDropTable(allegiance).get(pieceNumberInDropTable).setPosition(x, y);
-        this.getCorrectDropTable(allegiance).remove(pieceNumberInDropTable);
-    }
-    
-    /** Simulates the dropping of a piece from the drop table onto the board.
-     * Places the piece on the board.
-     * @param allegiance    The allegiance of the drop table we're dropping from.
-     * @param x             The x-value at which we're dropping the piece.
-     * @param y             The y-value at which we're dropping the piece.
-     * @param pieceNumberInDropTable         
-     *                      The index of the piece we're dropping in the drop table.
-     */
-    protected void mockDropPieceFromTable (int allegiance, int x, int y, int pieceNumberInDropTable) {
-        this.setPieceAt(x, y, this.getCorrectDropTable(allegiance).get(pieceNumberInDropTable));
-        this.getCorrectDropTable(allegiance).get(pieceNumberInDropTable).setPosition(x, y);        
     }
     
     /** Obtains the Piece at a point on the board.
      * Returns the Piece at the given (x, y) value pair, on the board.
+     * The Piece is made from the square's piece code on every call,
+     * so changing it has no effect on the board until it is placed back with setPieceAt.
+     * Pieces are equal when they are of the same type and allegiance on the same tile.
      * @param   x           The x-value at which we're looking for a Piece.
      * @param   y           The y-value at which we're looking for a Piece.
-     * @return              The Piece at the given x and y values.
+     * @return              The Piece at the given x and y values,
+     *                      or the tile's shared EmptyPiece.
      */
     public Piece getPieceAt (int x, int y) {
-        return board.get(y).get(x);
+        int code = this.codes[this.geometry.square(x, y)];
+        if (code == 0) {
+            return EMPTY_PIECES[x][y];
+        }
+        Piece piece = Piece.create(PieceType.typeOf(code), x, y, PieceType.allegianceOf(code));
+        piece.setGeometry(this.geometry);
+        return piece;
     }
 
     /** Places a Piece on a given tile of the board.
+     * Only the Piece's type and allegiance are kept, not the Piece itself.
      * @param   x           The x-value at which we're placing the Piece.
      * @param   y           The y-value at which we're placing the Piece.
      * @param piece         The Piece to place on the board.
      */
     protected void setPieceAt (int x, int y, Piece piece) {
-        board.get(y).set(x, piece);
+        this.setCode(this.geometry.square(x, y), PieceType.code(piece.getAllegiance(), piece.getType()));
+    }
+
+    /** Clears a tile of the board.
+     * @param   x           The x-value of the tile to clear.
+     * @param   y           The y-value of the tile to clear.
+     */
+    protected void removePieceAt (int x, int y) {
+        this.setCode(this.geometry.square(x, y), 0);
+    }
+
+    /** Sets the piece code of a square,
+     * updating the bitboards, the piece counts and the key to match.
+     * @param   square      The square number, as given by BoardGeometry.square.
+     * @param   code        The new piece code, or 0 to clear the square.
+     */
+    private void setCode (int square, int code) {
+        int old = this.codes[square];
+        boolean mailbox = this.geometry.getLayout() == BoardGeometry.MAILBOX;
+        if (old != 0) {
+            this.codes[square] = 0;
+            this.pieceCounts[old]--;
+            this.key ^= Zobrist.PIECES[old][square];
+            if (!mailbox) {
+                this.toggleBitboards(old, square);
+            } else if (old % PieceType.COUNT == PieceType.KING) {
+                this.kingSquares[old / PieceType.COUNT] = this.findKing(old);
+            }
+        }
+        if (code != 0) {
+            this.codes[square] = (byte) code;
+            this.pieceCounts[code]++;
+            this.key ^= Zobrist.PIECES[code][square];
+            if (!mailbox) {
+                this.toggleBitboards(code, square);
+            } else if (code % PieceType.COUNT == PieceType.KING) {
+                this.kingSquares[code / PieceType.COUNT] = this.findKing(code);
+            }
+        }
+    }
+
+    /** Finds a King on a mailbox, which has no bitboard to find it by.
+     * Like Bitboard.first, it gives the lowest square if there is more than one.
+     * @param   code        The piece code of the King.
+     * @return              The square of the King, or -1 if there is none on the board.
+     */
+    private int findKing (int code) {
+        if (this.pieceCounts[code] == 0) {
+            return -1;
+        }
+        int square = 0;
+        while (this.codes[square] != code) {
+            square++;
+        }
+        return square;
+    }
+
+    /** Adds or removes a square from the bitboards of a given piece,
+     * and from the occupancies of the lines through it.
+     * @param   code        The bitboard index of the piece.
+     * @param   square      The square being added or removed.
+     */
+    private void toggleBitboards (int code, int square) {
+        long low = Bitboard.low(square);
+        long high = Bitboard.high(square);
+        this.piecesLow[code] ^= low;
+        this.piecesHigh[code] ^= high;
+        this.occupiedLow[code / PieceType.COUNT] ^= low;
+        this.occupiedHigh[code / PieceType.COUNT] ^= high;
+        this.allOccupiedLow ^= low;
+        this.allOccupiedHigh ^= high;
+        int x = Bitboard.x(square);
+        int y = Bitboard.y(square);
+        this.rankOccupancy[y] ^= 1 << x;
+        this.fileOccupancy[x] ^= 1 << y;
+        this.diagonalOccupancy[x-y+8] ^= 1 << x;
+        this.antiDiagonalOccupancy[x+y] ^= 1 << x;
+        if (code % PieceType.COUNT == PieceType.KING) {
+            int king = Bitboard.first(this.piecesLow[code], this.piecesHigh[code]);
+            this.kingSquares[code / PieceType.COUNT] = king;
+        }
     }
     
+    /** Returns the MoveList kept for the move lookups of a single Piece.
+     * It is emptied first, and is only valid until the next call.
+     * @return              The empty MoveList.
+     */
+    MoveList getMoveBuffer () {
+        this.moveBuffer.clear();
+        return this.moveBuffer;
+    }
+
     /** Promotes the piece at a given x and y value.
      * @param x             The x-value of the piece that is being promoted.
      * @param y             The y-value of the piece that is being promoted.
      */
     protected void promotePieceAt (int x, int y) {
-        this.setPieceAt(x, y, this.getPieceAt(x, y).promote());
+        int square = this.geometry.square(x, y);
+        int code = this.codes[square];
+        this.setCode(square, code - PieceType.typeOf(code) + PieceRules.getPromotion(PieceType.typeOf(code)));
     }
 
     /** Checks whether a tile is being attacked by any Piece of a given allegiance.
@@ -202,14 +777,277 @@ public class GameState {
      * @return              Whether or not the given tile is bing attacked by any Piece of the given allegiance.
      */
     public boolean isAttacked(int x, int y, int attackingAllegiance) {
-        boolean isAttacked = false;
-        for (int i = 0; !isAttacked && i < 9; i++) {
-            for (int j = 0; !isAttacked && j < 9; j++) {
-                isAttacked = this.getPieceAt(i, j).getAllegiance() == attackingAllegiance 
-                          && this.getPieceAt(i, j).isUncheckedNonDropMove(this, x, y);
+        /* Looks outwards from the tile rather than at every attacking piece.
+         * A tile holding one of the attacker's own pieces is never attacked.
+         */
+        int target = this.geometry.square(x, y);
+        if (this.codes[target] != 0 && this.getAllegianceAt(target) == attackingAllegiance) {
+            return false;
+        } else if (this.geometry.getLayout() == BoardGeometry.MAILBOX) {
+            return Mailbox.isAttacked(this, target, attackingAllegiance);
+        }
+        return (this.getAttackers(target, attackingAllegiance, 0) 
+              | this.getAttackers(target, attackingAllegiance, 1)) != 0;
+    }
+
+    /** Returns the low half of the set of pieces of a given allegiance 
+     * that attack a given square.
+     * Whatever is on the square itself is not taken into account.
+     * A mailbox has no bitboards, so on one this is always empty.
+     * @param   square      The attacked square, as given by Bitboard.square.
+     * @param   attackingAllegiance
+     *                      The allegiance of the attacking pieces. Either 1 or -1.
+     * @return              The low half of the squares of the attacking pieces.
+     */
+    public long getAttackersLow (int square, int attackingAllegiance) {
+        return this.getAttackers(square, attackingAllegiance, 0);
+    }
+
+    /** Returns the high half of the set of pieces of a given allegiance 
+     * that attack a given square.
+     * @param   square      The attacked square, as given by Bitboard.square.
+     * @param   attackingAllegiance
+     *                      The allegiance of the attacking pieces. Either 1 or -1.
+     * @return              The high half of the squares of the attacking pieces.
+     */
+    public long getAttackersHigh (int square, int attackingAllegiance) {
+        return this.getAttackers(square, attackingAllegiance, 1);
+    }
+
+    /** Finds one half of the pieces of a given allegiance that attack a given square.
+     * A piece on one square attacks another exactly when a piece of the same type, 
+     * but the opposite allegiance, on the other square attacks the first.
+     * So the attacks of each type are taken from the attacked square,
+     * with the allegiance reversed, and intersected with that type's bitboard.
+     * Types with no pieces on the board are skipped without a lookup.
+     * @param   square      The attacked square.
+     * @param   attackingAllegiance
+     *                      The allegiance of the attacking pieces.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of the squares of the attacking pieces.
+     */
+    private long getAttackers (int square, int attackingAllegiance, int half) {
+        long[] pieces = half == 0 ? this.piecesLow : this.piecesHigh;
+        int base = PieceType.index(attackingAllegiance, PieceType.EMPTY);
+        int reverse = -attackingAllegiance;
+        long attackers = 0L;
+        for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++) {
+            long candidates = pieces[base+type];
+            if (candidates != 0) {
+                long reach = Attacks.steps(reverse, type, square, half);
+                if (PieceRules.isSlider(type)) {
+                    reach |= Attacks.slides(this, reverse, type, square, half);
+                }
+                attackers |= reach & candidates;
+            }
+        }
+        return attackers;
+    }
+
+    /** Works out what a player wins by capturing a piece, if both players then go on capturing on its tile
+     * (static exchange evaluation).
+     * Each capture is made with the least valuable piece attacking the tile,
+     * including any slider uncovered behind a piece that has already captured,
+     * and either player may stop capturing whenever going on would lose more.
+     * A captured piece is worth its value on the board, as counted by Evaluation,
+     * as well as the value of the piece it is demoted to in the capturer's drop table, as addPieceToDropTable adds it.
+     * A capturing piece promotes whenever it captures inside the promotion zone,
+     * the only promotion the MoveGenerator offers, and a King only captures a piece nothing defends.
+     * Pins, checks and drops are not looked at, so the result is an estimate.
+     * @param   square      The tile, as given by BoardGeometry.square.
+     * @param   attackingAllegiance
+     *                      The allegiance of the player to capture first.
+     * @return              The material the player wins, in the units of Evaluation,
+     *                      or 0 if the player does better not to capture,
+     *                      or the tile does not hold a piece the player can capture.
+     */
+    public int getExchangeValue (int square, int attackingAllegiance) {
+        int code = this.codes[square];
+        if (code == 0 || PieceType.allegianceOf(code) == attackingAllegiance) {
+            return 0;
+        }
+        this.startExchange(square);
+        int from = this.findLeastValuableAttacker(square, attackingAllegiance);
+        if (from == -1) {
+            return 0;
+        }
+        int type = this.getTypeAt(from);
+        boolean promote = PieceRules.canPromote(this.geometry, type, attackingAllegiance, this.geometry.y(square));
+        return Math.max(0, this.exchange(square, attackingAllegiance, from, type, promote));
+    }
+
+    /** Works out what a move of the player to move wins or loses on the tile it goes to,
+     * if both players then go on capturing there, as the other getExchangeValue does.
+     * The move itself is always made, so a move that leaves its piece where it can be won
+     * scores less than 0, and so does a drop, whose piece is worth less on the board than in hand.
+     * @param   move        The packed move, which is legal in this state.
+     * @return              The material the move wins, less what it loses,
+     *                      in the units of Evaluation.
+     */
+    public int getExchangeValue (int move) {
+        int to = PackedMove.getTo(move);
+        this.startExchange(to);
+        if (PackedMove.isDrop(move)) {
+            return this.exchange(to, this.sideToMove, -1, PackedMove.getDropType(move), false);
+        }
+        int from = PackedMove.getFrom(move);
+        return this.exchange(to, this.sideToMove, from, this.getTypeAt(from), PackedMove.isPromotion(move));
+    }
+
+    /** Works out an exchange of captures on a tile, from its first move on.
+     * Each gain is what a capture wins for the player making it, less the gain of the capture before,
+     * and the gains are then resolved from the last capture back,
+     * each player taking whichever is better of stopping or capturing.
+     * @param   square      The tile, as given by BoardGeometry.square.
+     * @param   allegiance  The allegiance of the player making the first move.
+     * @param   from        The square of the piece making the first move, or -1 for a drop.
+     * @param   type        The type code of that piece.
+     * @param   promote     Whether it promotes.
+     * @return              The material the first move wins, less what it loses.
+     */
+    private int exchange (int square, int allegiance, int from, int type, boolean promote) {
+        int[] gains = this.exchangeGains;
+        int y = this.geometry.y(square);
+        int onSquare = this.codes[square];
+        int side = allegiance;
+        int captures = 0;
+        while (true) {
+            int gain;
+            if (from == -1) {
+                gain = Evaluation.getValue(type) - Evaluation.getHandValue(type);
+            } else {
+                this.removeFromExchange(square, from);
+                if (type == PieceType.KING && this.findLeastValuableAttacker(square, -side) != -1) {
+                    break;
+                }
+                gain = captureValue(onSquare);
+            }
+            if (promote) {
+                gain += Evaluation.getValue(PieceRules.getPromotion(type)) - Evaluation.getValue(type);
+                type = PieceRules.getPromotion(type);
+            }
+            gains[captures] = captures == 0 ? gain : gain - gains[captures-1];
+            captures++;
+            onSquare = PieceType.code(side, type);
+            side = -side;
+            from = this.findLeastValuableAttacker(square, side);
+            if (from == -1) {
+                break;
+            }
+            type = this.getTypeAt(from);
+            promote = PieceRules.canPromote(this.geometry, type, side, y);
+        }
+        for (int i = captures - 1; i > 0; i--) {
+            gains[i-1] = Math.min(gains[i-1], -gains[i]);
+        }
+        return captures == 0 ? 0 : gains[0];
+    }
+
+    /** Returns what a player wins by capturing a piece:
+     * its value on the board, which the other player loses,
+     * and the value of its demoted type in the capturer's drop table.
+     * A mercenary belongs to neither player, so only its value in hand counts.
+     * @param   code        The piece code of the captured piece, or 0 for an empty tile.
+     * @return              The material the capture wins, or 0 for an empty tile.
+     */
+    private static int captureValue (int code) {
+        if (code == 0) {
+            return 0;
+        }
+        int type = PieceType.typeOf(code);
+        int value = Evaluation.getHandValue(PieceRules.getDemotion(type));
+        return PieceType.allegianceOf(code) == 0 ? value : value + Evaluation.getValue(type);
+    }
+
+    /** Starts an exchange on a tile, with every piece still on the board.
+     * @param   square      The tile, as given by BoardGeometry.square.
+     */
+    private void startExchange (int square) {
+        if (this.exchangeRemoved != null) {
+            Arrays.fill(this.exchangeRemoved, false);
+            return;
+        }
+        int x = Bitboard.x(square);
+        int y = Bitboard.y(square);
+        this.exchangeRemovedLow = 0L;
+        this.exchangeRemovedHigh = 0L;
+        this.exchangeRank = this.rankOccupancy[y];
+        this.exchangeFile = this.fileOccupancy[x];
+        this.exchangeDiagonal = this.diagonalOccupancy[x-y+8];
+        this.exchangeAntiDiagonal = this.antiDiagonalOccupancy[x+y];
+    }
+
+    /** Leaves a piece that has captured in an exchange off the board for the rest of it.
+     * Only the lines through the tile of the exchange are looked up, so only those are changed.
+     * @param   square      The tile of the exchange.
+     * @param   from        The square the piece captured from.
+     */
+    private void removeFromExchange (int square, int from) {
+        if (this.exchangeRemoved != null) {
+            this.exchangeRemoved[from] = true;
+            return;
+        }
+        int x = Bitboard.x(from);
+        int y = Bitboard.y(from);
+        int targetX = Bitboard.x(square);
+        int targetY = Bitboard.y(square);
+        this.exchangeRemovedLow |= Bitboard.low(from);
+        this.exchangeRemovedHigh |= Bitboard.high(from);
+        if (y == targetY) {
+            this.exchangeRank &= ~(1 << x);
+        }
+        if (x == targetX) {
+            this.exchangeFile &= ~(1 << y);
+        }
+        if (x - y == targetX - targetY) {
+            this.exchangeDiagonal &= ~(1 << x);
+        }
+        if (x + y == targetX + targetY) {
+            this.exchangeAntiDiagonal &= ~(1 << x);
+        }
+    }
+
+    /** Finds the least valuable piece of a given allegiance that attacks the tile of an exchange,
+     * out of the pieces that have not captured yet. A King counts as the most valuable.
+     * As in getAttackers, the attacks of each type are looked up from the tile itself.
+     * @param   square      The tile of the exchange.
+     * @param   allegiance  The allegiance of the attacking pieces. Either 1 or -1.
+     * @return              The square of the piece, or -1 if none attacks the tile.
+     */
+    private int findLeastValuableAttacker (int square, int allegiance) {
+        if (this.exchangeRemoved != null) {
+            return Mailbox.findLeastValuableAttacker(this, square, allegiance, this.exchangeRemoved);
+        }
+        int base = PieceType.index(allegiance, PieceType.EMPTY);
+        int reverse = -allegiance;
+        int attacker = -1;
+        int least = Integer.MAX_VALUE;
+        for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++) {
+            long candidatesLow = this.piecesLow[base+type] & ~this.exchangeRemovedLow;
+            long candidatesHigh = this.piecesHigh[base+type] & ~this.exchangeRemovedHigh;
+            if ((candidatesLow | candidatesHigh) == 0) {
+                continue;
+            }
+            int value = type == PieceType.KING ? Integer.MAX_VALUE : Evaluation.getValue(type);
+            if (attacker != -1 && value >= least) {
+                continue;
+            }
+            long reachLow = Attacks.steps(reverse, type, square, 0);
+            long reachHigh = Attacks.steps(reverse, type, square, 1);
+            if (PieceRules.isSlider(type)) {
+                reachLow |= Attacks.slidesOnLines(reverse, type, square, 0, this.exchangeRank, this.exchangeFile,
+                                                  this.exchangeDiagonal, this.exchangeAntiDiagonal);
+                reachHigh |= Attacks.slidesOnLines(reverse, type, square, 1, this.exchangeRank, this.exchangeFile,
+                                                   this.exchangeDiagonal, this.exchangeAntiDiagonal);
+            }
+            reachLow &= candidatesLow;
+            reachHigh &= candidatesHigh;
+            if ((reachLow | reachHigh) != 0) {
+                attacker = Bitboard.first(reachLow, reachHigh);
+                least = value;
             }
         }
-        return isAttacked;
+        return attacker;
     }
     
     /** Returns whether a King of a given allegiance is being attacked.
@@ -218,51 +1056,34 @@ public class GameState {
      * @return              Whether the King of defendingAllegiance is under check.
      */
     public boolean isKingInCheck(int defendingAllegiance) {
-        boolean tested = false;
-        for (int i = 0; !tested && i < 9; i++) {
-            for (int j = 0; !tested && j < 9; j++) {
-                if (this.getPieceAt(i, j).getCheckmatable() 
-                 && this.getPieceAt(i, j).getAllegiance() == defendingAllegiance) {
-                    tested = this.isAttacked(i, j, -defendingAllegiance);
-                }
-            }
+        /* Kings are the only checkmatable pieces,
+         * so only the tracked King square is tested.
+         */
+        int king = this.kingSquares[defendingAllegiance+1];
+        if (king == -1) {
+            return false;
+        }
+        switch (this.geometry.getLayout()) {
+            case BoardGeometry.LOW_HALF:
+                return this.getAttackers(king, -defendingAllegiance, 0) != 0;
+            case BoardGeometry.MAILBOX:
+                return Mailbox.isAttacked(this, king, -defendingAllegiance);
+            default:
+                return (this.getAttackers(king, -defendingAllegiance, 0) 
+                      | this.getAttackers(king, -defendingAllegiance, 1)) != 0;
         }
-        return tested;
     }
     
     /** Returns whether a King of a given allegiance is in checkmate.
-     * The allegiance which we are checking for checkmate.
+     * Only looks for a single legal evasion, rather than for all of them.
+     * @param defendingAllegiance
+     *                      The allegiance which we are checking for checkmate.
      * @return              Whether the King of defendingAllegiance is in checkmate.
+     * @see                 MoveGenerator#hasAnyLegalMove(GameState, int)
      */
     public boolean isKingCheckmated(int defendingAllegiance) {
-        boolean check = this.isKingInCheck(defendingAllegiance);
-        if (check) {
-            for (List<Piece> row: board) {            	
-                for (Piece piece: row) {                	
-                    if (piece.getAllegiance() == defendingAllegiance) {
-                        boolean[][] moves = piece.generateMoves(this);
-                        for (int i = 0; i < 9; i++) {
-                            for (int j = 0; j < 9; j++) {
-                                if (moves[i][j]) {
-                                    return false;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            for (Piece piece: this.getCorrectDropTable(defendingAllegiance)) {
-                boolean[][] moves = piece.generateMoves(this);
-                for (int i = 0; i < 9; i++) {
-                    for (int j = 0; j < 9; j++) {
-                        if (moves[i][j]) {
-                            return false;
-                        }
-                    }
-                }
-            }
-        }
-        return check;
+        return this.isKingInCheck(defendingAllegiance) 
+            && !MoveGenerator.hasAnyLegalMove(this, defendingAllegiance);
     }
     
     /** Returns whether a move by a given Piece would put the King of that allegiance in check. 
@@ -272,12 +1093,10 @@ public class GameState {
      * @return              Whether the given move would cause check for the moving Piece.
      */
     public boolean willKingBeInCheckAfterMove(int x, int y, Piece movingPiece) {
-        Piece temp = this.getPieceAt(x, y);
-        this.setPieceAt(x, y, movingPiece);
-        this.setPieceAt(movingPiece.x, movingPiece.y, new EmptyPiece(movingPiece.x, movingPiece.y));
-        boolean tested = this.isKingInCheck(movingPiece.getAllegiance());
-        this.setPieceAt(movingPiece.x, movingPiece.y, movingPiece);
-        this.setPieceAt(x, y, temp);
+        int allegiance = movingPiece.getAllegiance();
+        this.makeMove(PackedMove.create(this.geometry.square(movingPiece.x, movingPiece.y), this.geometry.square(x, y), false), allegiance);
+        boolean tested = this.isKingInCheck(allegiance);
+        this.unmakeMove();
         return tested;
     }
     
@@ -286,21 +1105,161 @@ public class GameState {
      * @param y             The y-value of the tile to which we're dropping the piece.
      * @param droppingAllegiance
      *                      The allegiance that is dropping the Piece.
-     * @param numberOfPieceToDrop
-     *                      The number of the piece in the drop table.
+     * @param type          The type code of the piece to drop.
      * @return              Whether this drop would put the friendly king in check.
      */
-    public boolean willKingBeInCheckAfterDrop(int x, int y, int droppingAllegiance, int numberOfPieceToDrop) {
-        this.mockDropPieceFromTable(droppingAllegiance, x, y, numberOfPieceToDrop);
+    public boolean willKingBeInCheckAfterDrop(int x, int y, int droppingAllegiance, int type) {
+        this.makeMove(PackedMove.createDrop(type, this.geometry.square(x, y)), droppingAllegiance);
         boolean tested = this.isKingInCheck(droppingAllegiance);
-        this.mockAddPieceToDropTable(droppingAllegiance, this.getPieceAt(x, y));
-        this.setPieceAt(x, y, new EmptyPiece(x, y));
+        this.unmakeMove();
         return tested;
     }
 
-    /** Sets this board to be the default starting configuration of Shogi.
+    /** Makes a move for the player whose turn it is,
+     * and pushes a record of it onto the undo stack.
+     * The move is not checked for legality.
+     * A captured piece, mercenaries included, is demoted and added to the mover's drop table,
+     * as it would be in a real game.
+     * @param   move        The packed move to make.
+     */
+    public void makeMove (int move) {
+        this.makeMove(move, this.sideToMove);
+    }
+
+    /** Makes a move for a given allegiance,
+     * and pushes a record of it onto the undo stack.
+     * The move is not checked for legality.
+     * After the move, it is the other allegiance's turn.
+     * @param   move        The packed move to make.
+     * @param   allegiance  The allegiance making the move. Either 1 or -1.
+     */
+    protected void makeMove (int move, int allegiance) {
+        if (this.undoSize == this.undoMoves.length) {
+            this.growUndoStack(2*this.undoMoves.length);
+        }
+        int n = this.undoSize++;
+        int to = PackedMove.getTo(move);
+        this.undoMoves[n] = move;
+        this.undoSides[n] = this.sideToMove;
+        this.undoKeys[n] = this.key;
+        if (PackedMove.isDrop(move)) {
+            int code = PieceType.index(allegiance, PackedMove.getDropType(move));
+            this.changeHandCount(code, -1);
+            this.setCode(to, code);
+            this.undoCaptured[n] = 0;
+        } else {
+            int from = PackedMove.getFrom(move);
+            int code = this.codes[from];
+            int captured = this.codes[to];
+            this.undoCaptured[n] = (byte) captured;
+            if (captured != 0) {
+                this.changeHandCount(PieceType.index(allegiance, PieceRules.getDemotion(PieceType.typeOf(captured))), 1);
+            }
+            this.setCode(from, 0);
+            if (PackedMove.isPromotion(move)) {
+                code += PieceRules.getPromotion(PieceType.typeOf(code)) - PieceType.typeOf(code);
+            }
+            this.setCode(to, code);
+        }
+        this.setSideToMove(-allegiance);
+    }
+
+    /** Unmakes the last move made with makeMove,
+     * restoring the board, both drop tables and the side to move
+     * exactly as they were before it.
+     */
+    public void unmakeMove () {
+        int n = --this.undoSize;
+        int move = this.undoMoves[n];
+        int to = PackedMove.getTo(move);
+        int code = this.codes[to];
+        this.setCode(to, this.undoCaptured[n]);
+        if (PackedMove.isDrop(move)) {
+            this.handCounts[code]++;
+        } else {
+            int captured = this.undoCaptured[n];
+            if (captured != 0) {
+                int allegiance = PieceType.allegianceOf(code);
+                this.handCounts[PieceType.index(allegiance, PieceRules.getDemotion(PieceType.typeOf(captured)))]--;
+            }
+            if (PackedMove.isPromotion(move)) {
+                code -= PieceType.typeOf(code) - PieceRules.getDemotion(PieceType.typeOf(code));
+            }
+            this.setCode(PackedMove.getFrom(move), code);
+        }
+        this.sideToMove = this.undoSides[n];
+        this.key = this.undoKeys[n];
+    }
+
+    /** Returns the number of moves made with makeMove that have not been unmade.
+     * @return              The size of the undo stack.
+     */
+    public int getUndoSize () {
+        return this.undoSize;
+    }
+
+    /** Enlarges the undo stack, keeping the records already on it.
+     * Only called when the stack is full,
+     * so a search that has reached its deepest line never allocates again.
+     * @param   capacity    The new number of records the stack can hold.
+     */
+    private void growUndoStack (int capacity) {
+        if (this.undoMoves == null) {
+            this.undoMoves = new int[capacity];
+            this.undoCaptured = new byte[capacity];
+            this.undoSides = new int[capacity];
+            this.undoKeys = new long[capacity];
+        } else {
+            this.undoMoves = Arrays.copyOf(this.undoMoves, capacity);
+            this.undoCaptured = Arrays.copyOf(this.undoCaptured, capacity);
+            this.undoSides = Arrays.copyOf(this.undoSides, capacity);
+            this.undoKeys = Arrays.copyOf(this.undoKeys, capacity);
+        }
+    }
+
+    /** Returns whether this GameState represents the same position as another object.
+     * Two GameStates are equal when they are on the same board, every square holds the same type of piece
+     * with the same allegiance, both drop tables hold the same number of each type,
+     * and the same player is to move.
+     * @param   other       The object to compare with.
+     * @return              Whether the other object is an equal GameState.
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof GameState)) {
+            return false;
+        }
+        GameState state = (GameState) other;
+        return this.key == state.key
+            && this.geometry == state.geometry
+            && this.sideToMove == state.sideToMove
+            && Arrays.equals(this.codes, state.codes)
+            && Arrays.equals(this.handCounts, state.handCounts);
+    }
+
+    /** Returns a hash code for this GameState, taken from its Zobrist key.
+     * @return              The hash code of the current position.
+     */
+    @Override
+    public int hashCode () {
+        return (int) (this.key ^ (this.key >>> 32));
+    }
+
+    /** Sets this board to be the default starting configuration of Shogi,
+     * or the starting position of the variant played on a board of another size.
+     * @throws  IllegalStateException
+     *                      If the board is not the standard one, and has no starting position.
      */
     public void defaultBoardConfigure() {
+        if (this.geometry != BoardGeometry.STANDARD) {
+            if (this.geometry.getStart() == null) {
+                throw new IllegalStateException("No starting position for " + this.geometry);
+            }
+            this.sfenBoardConfigure(this.geometry.getStart());
+            return;
+        }
         /* Order is the standard Ohashi order of placing pieces.
          */
         this.setPieceAt(4, 0, new King(4, 0, 1));
@@ -330,4 +1289,206 @@ public class GameState {
             this.setPieceAt(8-i, 6, new Pawn(8-i, 6, -1));
         }
     }
+
+    /** Sets this board to the position described by an SFEN string,
+     * the position format of the Universal Shogi Interface.
+     * Anything already on the board or in the drop tables is replaced,
+     * but only once the whole string has been read: a string that is not valid leaves the board as it was.
+     * Upper case pieces, and "b" as the side to move, belong to the bottom player (1).
+     * A piece marked with a '~', before or after any '+', is a mercenary (0),
+     * which standard SFEN has no way of writing. A mercenary may not be a King.
+     * The move number at the end is optional, and ignored.
+     * A run of empty tiles may take more than one digit, as on a board of more than 9 files.
+     * <br><br>
+     * The board keeps its geometry if the position is of the same size,
+     * and otherwise takes the known geometry of the position's size, such as minishogi's.
+     * @param   sfen        The SFEN string, such as 
+     *                      "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL b - 1".
+     * @throws  IllegalArgumentException
+     *                      If the string is not a valid SFEN position,
+     *                      or is of a size no known variant is played on.
+     */
+    public void sfenBoardConfigure (String sfen) {
+        String[] fields = sfen.trim().split("\\s+");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("SFEN needs a board, a side to move and a drop table: " + sfen);
+        }
+        int[][] codes = new int[BoardGeometry.MAX_SIZE][BoardGeometry.MAX_SIZE];
+        int[] hand = new int[this.handCounts.length];
+        BoardGeometry geometry = this.geometry;
+
+        String[] ranks = fields[0].split("/");
+        if (ranks.length > BoardGeometry.MAX_SIZE) {
+            throw new IllegalArgumentException("SFEN board must have at most " + BoardGeometry.MAX_SIZE + " ranks: " + fields[0]);
+        }
+        int files = -1;
+        for (int i = 0; i < ranks.length; i++) {
+            int y = ranks.length - 1 - i;
+            int x = 0;
+            int empty = 0;
+            boolean promoted = false;
+            boolean mercenary = false;
+            for (char c : ranks[i].toCharArray()) {
+                if (c >= '0' && c <= '9') {
+                    // a board wider than 9 files may have a run of 10 or more empty tiles
+                    empty = 10*empty + c - '0';
+                    if (empty == 0 || x + empty > BoardGeometry.MAX_SIZE) {
+                        throw new IllegalArgumentException("Bad SFEN rank: " + ranks[i]);
+                    }
+                    continue;
+                }
+                x += empty;
+                empty = 0;
+                if (c == '+') {
+                    promoted = true;
+                } else if (c == '~') {
+                    mercenary = true;
+                } else {
+                    int type = PieceType.typeOfLetter(c);
+                    if (type <= 0 || x >= BoardGeometry.MAX_SIZE || promoted && PieceRules.getPromotion(type) == type
+                        || mercenary && type == PieceType.KING) {
+                        throw new IllegalArgumentException("Bad SFEN rank: " + ranks[i]);
+                    }
+                    if (promoted) {
+                        type = PieceRules.getPromotion(type);
+                    }
+                    int allegiance = mercenary ? 0 : Character.isUpperCase(c) ? 1 : -1;
+                    codes[x][y] = PieceType.code(allegiance, type);
+                    promoted = false;
+                    mercenary = false;
+                    x++;
+                }
+            }
+            x += empty;
+            if (files == -1) {
+                files = x;
+            }
+            if (x != files || x > BoardGeometry.MAX_SIZE) {
+                throw new IllegalArgumentException("SFEN rank must have " + files + " files: " + ranks[i]);
+            }
+        }
+        if (files != geometry.getFiles() || ranks.length != geometry.getRanks()) {
+            geometry = BoardGeometry.forSize(files, ranks.length);
+            if (geometry == null) {
+                throw new IllegalArgumentException("No variant is played on a " + files + "*" + ranks.length + " board: " + fields[0]);
+            }
+        }
+
+        int side;
+        if (fields[1].equals("b")) {
+            side = 1;
+        } else if (fields[1].equals("w")) {
+            side = -1;
+        } else {
+            throw new IllegalArgumentException("Bad SFEN side to move: " + fields[1]);
+        }
+
+        if (!fields[2].equals("-")) {
+            int count = 0;
+            for (char c : fields[2].toCharArray()) {
+                if (c >= '0' && c <= '9') {
+                    count = Math.min(10*count + c - '0', Zobrist.MAX_HAND_COUNT + 1);
+                } else {
+                    int type = PieceType.typeOfLetter(c);
+                    if (type <= 0 || type == PieceType.KING) {
+                        throw new IllegalArgumentException("Bad SFEN drop table: " + fields[2]);
+                    }
+                    int code = PieceType.index(Character.isUpperCase(c) ? 1 : -1, type);
+                    count = Math.max(count, 1);
+                    if (count > Zobrist.MAX_HAND_COUNT - hand[code]) {
+                        throw new IllegalArgumentException("Bad SFEN drop table: " + fields[2]);
+                    }
+                    hand[code] += count;
+                    count = 0;
+                }
+            }
+        }
+
+        // the whole string is valid, so the old position can be replaced
+        for (int i = 0; i < this.codes.length; i++) {
+            this.setCode(i, 0);
+        }
+        for (int i = 0; i < this.handCounts.length; i++) {
+            this.changeHandCount(i, -this.handCounts[i]);
+            this.handPieces[i] = null;
+        }
+        this.undoSize = 0;
+        this.setGeometry(geometry);
+        for (int x = 0; x < geometry.getFiles(); x++) {
+            for (int y = 0; y < geometry.getRanks(); y++) {
+                if (codes[x][y] != PieceType.EMPTY) {
+                    this.setCode(geometry.square(x, y), codes[x][y]);
+                }
+            }
+        }
+        for (int i = 0; i < hand.length; i++) {
+            this.changeHandCount(i, hand[i]);
+        }
+        this.setSideToMove(side);
+    }
+
+    /** Returns the SFEN string of the current position.
+     * The move number is always 1, as a GameState does not count moves.
+     * @return              The position as an SFEN string.
+     * @see                 #sfenBoardConfigure(String)
+     */
+    public String toSfen () {
+        StringBuilder sfen = new StringBuilder();
+        for (int y = this.geometry.getRanks() - 1; y >= 0; y--) {
+            int empty = 0;
+            for (int x = 0; x < this.geometry.getFiles(); x++) {
+                int code = this.codes[this.geometry.square(x, y)];
+                if (code == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sfen.append(empty);
+                    empty = 0;
+                }
+                int type = PieceType.typeOf(code);
+                int allegiance = PieceType.allegianceOf(code);
+                char letter = PieceType.getLetter(PieceRules.getDemotion(type));
+                if (allegiance == 0) {
+                    sfen.append('~');
+                }
+                if (PieceRules.getDemotion(type) != type) {
+                    sfen.append('+');
+                }
+                sfen.append(allegiance == -1 ? Character.toLowerCase(letter) : letter);
+            }
+            if (empty > 0) {
+                sfen.append(empty);
+            }
+            if (y > 0) {
+                sfen.append('/');
+            }
+        }
+        sfen.append(this.sideToMove == 1 ? " b " : " w ");
+
+        /* SFEN lists the drop tables from the most valuable piece down.
+         * Custom pieces have no place in that order, and come last.
+         */
+        int[] order = {PieceType.ROOK, PieceType.BISHOP, PieceType.GOLD_GENERAL, 
+                       PieceType.SILVER_GENERAL, PieceType.KNIGHT, PieceType.LANCE, PieceType.PAWN};
+        int types = order.length + Math.max(PieceRules.getLastType() - PieceType.FIRST_CUSTOM + 1, 0);
+        int length = sfen.length();
+        for (int allegiance = 1; allegiance >= -1; allegiance -= 2) {
+            for (int i = 0; i < types; i++) {
+                int type = i < order.length ? order[i] : PieceType.FIRST_CUSTOM + i - order.length;
+                int count = this.getHandCount(allegiance, type);
+                if (count > 1) {
+                    sfen.append(count);
+                }
+                if (count > 0) {
+                    char letter = PieceType.getLetter(type);
+                    sfen.append(allegiance == 1 ? letter : Character.toLowerCase(letter));
+                }
+            }
+        }
+        if (sfen.length() == length) {
+            sfen.append('-');
+        }
+        return sfen.append(" 1").toString();
+    }
 }
@@ -11,36 +11,9 @@ public class GoldGeneral extends UnpromotablePiece {
      */
     public GoldGeneral(int x, int y, int allegiance) {
         super(x, y, allegiance);
-        this.pieceName = "Gold General";
-        this.doubleCharRepresentation = new String[]{"g ","G#", "G "};
-        this.imageNames = new String[]{"dGold.png", "nGold.png", "uGold.png"};
+        this.setType(PieceType.GOLD_GENERAL);
     }
     
-    /** Returns whether a move can be undertaken by this GoldGeneral.
-     * @param   x           The x-value to which this piece is trying to move.
-     * @param   y           The y-value to which this piece is trying to move.
-     * @param   state       The state of the game before the piece is moved.
-     * @return              Whether this GoldGeneral can move to the given x and y values.
-     */
-    @Override
-    protected boolean isValidNonDropMove(GameState state, int x, int y) {
-        /* Checks if the target tile is in front 
-         * and in one of three horizontal directions, 
-         * at the side, or directly behind.
-         * Then verifies if the target tile is still in the board, 
-         * and whether the target tile could be moved into.
-         * */
-        return ((((y == this.y+this.allegiance) 
-                   && (x == this.x-1 || x == this.x || x == this.x+1)) 
-                  || ((y == this.y) 
-                   && (x == this.x-1 || x == this.x+1))
-                  || ((y == this.y-this.allegiance) 
-                   && (x == this.x))) 
-                  && !(y < 0 || y > 8)
-                  && !(x < 0 || x > 8)
-                   && (state.getPieceAt(x, y).getAllegiance() != this.allegiance));
-    }
-
     /** Returns the piece this gold general demotes to.
      * As gold generals are not a promoted piece, 
      * demoting them has no effect.
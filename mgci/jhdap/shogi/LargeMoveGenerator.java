@@ -0,0 +1,249 @@
+package mgci.jhdap.shogi;
+
+/** A Class that generates the legal moves and drops of a position
+ * on a board laid out as a mailbox, too large for a Bitboard, such as the 12*12 of chu shogi.
+ * Each piece's moves are found by walking its slides and steps from PieceRules across the tiles,
+ * rather than looked up in Attacks.
+ * <br><br>
+ * There are no bitboards to find checkers and pins by, so a move is only made on the board
+ * to test it when it might leave its King in check: when the King is in check or is the piece moving,
+ * or when the piece leaves a rank, file or diagonal of its King, the only way to uncover a slider.
+ * Any other move, and any drop while the King is not in check, is legal as far as check goes.
+ * <br><br>
+ * Only MoveGenerator calls this class, for a board whose layout is MAILBOX,
+ * and the drop rules and the adding of moves to a MoveList are shared with it.
+ */
+final class LargeMoveGenerator {
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private LargeMoveGenerator () {
+    }
+
+    /** Adds legal moves and drops of a given allegiance to a MoveList.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   only        The square of the only piece to move,
+     *                      MoveGenerator.ALL for every piece, or MoveGenerator.NONE for no piece.
+     * @param   dropType    The type code of the only piece to drop,
+     *                      MoveGenerator.ALL for every type, or MoveGenerator.NONE for no drops.
+     * @param   tiles       The tiles pieces on the board may move onto: MoveGenerator.ANY_TILE,
+     *                      OCCUPIED_TILES or EMPTY_TILES. Drops are not limited by it.
+     * @param   list        The list the moves are added to.
+     */
+    static void generate (GameState state, int allegiance, int only, int dropType, int tiles, MoveList list) {
+        generate(state, allegiance, only, dropType, tiles, list, state.isKingInCheck(allegiance));
+    }
+
+    /** Returns whether a given allegiance has at least one legal move or drop.
+     * Stops at the first one found instead of generating them all.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are looked for. Either 1 or -1.
+     * @return              Whether any legal move or drop exists.
+     */
+    static boolean hasAnyLegalMove (GameState state, int allegiance) {
+        return generate(state, allegiance, MoveGenerator.ALL, MoveGenerator.ALL, MoveGenerator.ANY_TILE,
+                        null, state.isKingInCheck(allegiance));
+    }
+
+    /** Adds legal moves and drops of a given allegiance to a MoveList,
+     * or only looks for the first one.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   only        The square of the only piece to move, ALL or NONE.
+     * @param   dropType    The type code of the only piece to drop, ALL or NONE.
+     * @param   tiles       The tiles pieces on the board may move onto.
+     * @param   list        The list the moves are added to, or null to stop at the first legal move.
+     * @param   inCheck     Whether the King of the allegiance is in check.
+     * @return              Whether a legal move was found and list is null.
+     */
+    private static boolean generate (GameState state, int allegiance, int only, int dropType, int tiles,
+                                     MoveList list, boolean inCheck) {
+        int squares = state.getGeometry().getSquares();
+        if (only != MoveGenerator.NONE) {
+            int first = only == MoveGenerator.ALL ? 0 : only;
+            int last = only == MoveGenerator.ALL ? squares - 1 : only;
+            for (int from = first; from <= last; from++) {
+                if (state.getAllegianceAt(from) == allegiance
+                 && addPieceMoves(state, allegiance, from, tiles, list, inCheck)) {
+                    return true;
+                }
+            }
+        }
+
+        if (dropType != MoveGenerator.NONE) {
+            int first = dropType == MoveGenerator.ALL ? PieceType.PAWN : dropType;
+            int last = dropType == MoveGenerator.ALL ? PieceRules.getLastType() : dropType;
+            for (int type = first; type <= last; type++) {
+                if (state.getHandCount(allegiance, type) == 0) {
+                    continue;
+                }
+                int files = MoveGenerator.filesHolding(state, allegiance, type);
+                for (int to = 0; to < squares; to++) {
+                    if (state.getTypeAt(to) != PieceType.EMPTY
+                     || !MoveGenerator.isLegalDrop(state, allegiance, type, to, files)) {
+                        continue;
+                    }
+                    int move = PackedMove.createDrop(type, to);
+                    if (inCheck && leavesKingInCheck(state, allegiance, move)) {
+                        continue;
+                    } else if (list == null) {
+                        return true;
+                    }
+                    list.add(move);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Adds the legal moves of one piece to a MoveList, or only looks for the first one.
+     * Its slides are walked first, and then its steps, skipping any tile a slide has already reached.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   from        The square of the piece.
+     * @param   tiles       The tiles it may move onto.
+     * @param   list        The list the moves are added to, or null to stop at the first legal move.
+     * @param   inCheck     Whether the King of the allegiance is in check.
+     * @return              Whether a legal move was found and list is null.
+     */
+    private static boolean addPieceMoves (GameState state, int allegiance, int from, int tiles,
+                                          MoveList list, boolean inCheck) {
+        BoardGeometry geometry = state.getGeometry();
+        int type = state.getTypeAt(from);
+        int x = geometry.x(from);
+        int y = geometry.y(from);
+        int king = state.getKingSquare(allegiance);
+        boolean safe = king == -1 || !inCheck && from != king && !isOnLine(geometry, from, king);
+
+        for (int direction = 0; direction < PieceRules.DIRECTIONS; direction++) {
+            int range = PieceRules.getSlide(type, direction);
+            int[] offsets = PieceRules.getDirectionOffsets(direction);
+            for (int mirror = 1; range > 0 && mirror >= -1; mirror -= 2) {
+                if (mirror == -1 && offsets[0] == 0) {
+                    break;
+                }
+                int dx = offsets[0]*mirror;
+                int dy = offsets[1]*allegiance;
+                for (int i = 1; i <= range && geometry.contains(x + i*dx, y + i*dy); i++) {
+                    int to = geometry.square(x + i*dx, y + i*dy);
+                    if (tryMove(state, allegiance, from, to, type, tiles, list, safe)) {
+                        return true;
+                    } else if (state.getTypeAt(to) != PieceType.EMPTY) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        int[] steps = PieceRules.getSteps(type);
+        for (int i = 0; i < steps.length; i += 2) {
+            int toX = x + steps[i];
+            int toY = y + steps[i+1]*allegiance;
+            if (!geometry.contains(toX, toY)) {
+                continue;
+            }
+            int to = geometry.square(toX, toY);
+            if (!Mailbox.canSlide(state, allegiance, type, from, to)
+             && tryMove(state, allegiance, from, to, type, tiles, list, safe)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds a move of a piece onto a tile it reaches, if that tile is one asked for and the move is legal.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the piece.
+     * @param   from        The square of the piece.
+     * @param   to          The square it reaches.
+     * @param   type        The type code of the piece.
+     * @param   tiles       The tiles it may move onto.
+     * @param   list        The list the move is added to, or null to add nothing.
+     * @param   safe        Whether the move is known not to leave the King in check.
+     * @return              Whether the move is legal and list is null.
+     */
+    private static boolean tryMove (GameState state, int allegiance, int from, int to, int type, int tiles,
+                                    MoveList list, boolean safe) {
+        int captured = state.getTypeAt(to);
+        if (captured != PieceType.EMPTY && state.getAllegianceAt(to) == allegiance
+         || tiles == MoveGenerator.OCCUPIED_TILES && captured == PieceType.EMPTY
+         || tiles == MoveGenerator.EMPTY_TILES && captured != PieceType.EMPTY) {
+            return false;
+        } else if (!safe && leavesKingInCheck(state, allegiance, PackedMove.create(from, to, false))) {
+            return false;
+        } else if (list == null) {
+            return true;
+        }
+        MoveGenerator.addBoardMove(state.getGeometry(), from, to, type, captured, allegiance, list);
+        return false;
+    }
+
+    /** Returns whether two squares share a rank, a file or a diagonal,
+     * so that a slider could attack one through the other.
+     * @param   geometry    The board.
+     * @param   from        The first square.
+     * @param   to          The second square.
+     * @return              Whether the squares are on a line.
+     */
+    private static boolean isOnLine (BoardGeometry geometry, int from, int to) {
+        int dx = geometry.x(to) - geometry.x(from);
+        int dy = geometry.y(to) - geometry.y(from);
+        return dx == 0 || dy == 0 || Math.abs(dx) == Math.abs(dy);
+    }
+
+    /** Returns whether a move leaves the mover's King in check,
+     * by making it on the board and unmaking it again.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance making the move.
+     * @param   move        The packed move.
+     * @return              Whether the King is in check after the move.
+     */
+    private static boolean leavesKingInCheck (GameState state, int allegiance, int move) {
+        state.makeMove(move, allegiance);
+        boolean check = state.isKingInCheck(allegiance);
+        state.unmakeMove();
+        return check;
+    }
+
+    /** Marks the files that already hold a player's piece of a type,
+     * as MoveGenerator.filesHolding does, by looking at every tile.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the pieces.
+     * @param   type        The type code of the piece to drop.
+     * @return              A mask with bit x set for every such file x.
+     */
+    static int filesHolding (GameState state, int allegiance, int type) {
+        if (state.getPieceCount(allegiance, type) == 0) {
+            return 0;
+        }
+        BoardGeometry geometry = state.getGeometry();
+        int files = 0;
+        for (int square = geometry.getSquares() - 1; square >= 0; square--) {
+            if (state.getTypeAt(square) == type && state.getAllegianceAt(square) == allegiance) {
+                files |= 1 << geometry.x(square);
+            }
+        }
+        return files;
+    }
+
+    /** Returns whether dropping a piece on a given square would checkmate the enemy King.
+     * A drop that does not give check never does, and one that does
+     * is made on the board to look for a legal reply.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the player dropping the piece.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The empty square the piece is dropped on.
+     * @return              Whether the drop would checkmate.
+     */
+    static boolean isDropMate (GameState state, int allegiance, int type, int to) {
+        int defender = -allegiance;
+        int king = state.getKingSquare(defender);
+        if (king == -1 || !Mailbox.attacks(state, allegiance, type, to, king, null)) {
+            return false;
+        }
+        state.makeMove(PackedMove.createDrop(type, to), allegiance);
+        boolean mate = !hasAnyLegalMove(state, defender);
+        state.unmakeMove();
+        return mate;
+    }
+}
@@ -0,0 +1,167 @@
+package mgci.jhdap.shogi;
+
+/** A Class of helpers for the attacks of pieces on a board laid out as a mailbox,
+ * which is too large for the tables of Attacks, such as the 12*12 of chu shogi.
+ * Such a board is only a piece code per tile, so instead of looking an attack up,
+ * it is worked out from the piece's steps and slides in PieceRules,
+ * and instead of intersecting bitboards, the attackers of a tile are found
+ * by asking every piece on the board whether it reaches the tile.
+ * This is much slower than the bitboards, but it is only used for boards they cannot hold.
+ * <br><br>
+ * Squares are numbered as by the BoardGeometry of the GameState.
+ * Mercenaries are only ever blockers, as they have no attacks of their own.
+ */
+final class Mailbox {
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private Mailbox () {
+    }
+
+    /** Returns the slide direction that leads from one tile to another, for a piece with an allegiance of 1.
+     * @param   dx          The difference in x-values.
+     * @param   dy          The difference in y-values, already turned round for a piece with an allegiance of -1.
+     * @return              One of PieceRules' slide directions,
+     *                      or -1 if the tiles do not share a rank, file or diagonal.
+     */
+    private static int direction (int dx, int dy) {
+        if (dx == 0) {
+            return dy > 0 ? PieceRules.FORWARD : dy < 0 ? PieceRules.BACK : -1;
+        } else if (dy == 0) {
+            return PieceRules.SIDEWAYS;
+        } else if (Math.abs(dx) == Math.abs(dy)) {
+            return dy > 0 ? PieceRules.FORWARD_DIAGONAL : PieceRules.BACK_DIAGONAL;
+        }
+        return -1;
+    }
+
+    /** Returns whether a piece can step from one square to another,
+     * ignoring what is on either square.
+     * @param   geometry    The board.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The target square.
+     * @return              Whether the target is one of the piece's steps.
+     */
+    static boolean canStep (BoardGeometry geometry, int allegiance, int type, int from, int to) {
+        int dx = geometry.x(to) - geometry.x(from);
+        int dy = (geometry.y(to) - geometry.y(from))*allegiance;
+        int[] steps = PieceRules.getSteps(type);
+        for (int i = 0; i < steps.length; i += 2) {
+            if (steps[i] == dx && steps[i+1] == dy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether a sliding piece reaches one square from another,
+     * without being blocked on the way.
+     * @param   state       The state of the game, for the tiles on the way.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The target square.
+     * @return              Whether the target is one of the piece's slides.
+     */
+    static boolean canSlide (GameState state, int allegiance, int type, int from, int to) {
+        return canSlide(state, allegiance, type, from, to, null);
+    }
+
+    /** Returns whether a sliding piece reaches one square from another,
+     * as if some pieces were not on the board.
+     * @param   state       The state of the game, for the tiles on the way.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The target square.
+     * @param   removed     Whether each square is to be taken as empty, indexed by square, or null for none.
+     * @return              Whether the target is one of the piece's slides.
+     */
+    static boolean canSlide (GameState state, int allegiance, int type, int from, int to, boolean[] removed) {
+        if (!PieceRules.isSlider(type)) {
+            return false;
+        }
+        BoardGeometry geometry = state.getGeometry();
+        int x = geometry.x(from);
+        int y = geometry.y(from);
+        int dx = geometry.x(to) - x;
+        int dy = geometry.y(to) - y;
+        int direction = direction(dx, dy*allegiance);
+        int distance = Math.max(Math.abs(dx), Math.abs(dy));
+        if (direction == -1 || distance > PieceRules.getSlide(type, direction)) {
+            return false;
+        }
+        dx = Integer.signum(dx);
+        dy = Integer.signum(dy);
+        for (int i = 1; i < distance; i++) {
+            int square = geometry.square(x + i*dx, y + i*dy);
+            if (state.getTypeAt(square) != PieceType.EMPTY && (removed == null || !removed[square])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether a piece attacks a square, by a step or by a slide.
+     * @param   state       The state of the game.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   type        The type code of the piece.
+     * @param   from        The square the piece is on.
+     * @param   to          The attacked square.
+     * @param   removed     Whether each square is to be taken as empty, indexed by square, or null for none.
+     * @return              Whether the piece attacks the square.
+     */
+    static boolean attacks (GameState state, int allegiance, int type, int from, int to, boolean[] removed) {
+        return canStep(state.getGeometry(), allegiance, type, from, to)
+            || canSlide(state, allegiance, type, from, to, removed);
+    }
+
+    /** Returns whether any piece of a given allegiance attacks a square.
+     * Whatever is on the square itself is not taken into account.
+     * @param   state       The state of the game.
+     * @param   square      The attacked square.
+     * @param   attackingAllegiance
+     *                      The allegiance of the attacking pieces. Either 1 or -1.
+     * @return              Whether the square is attacked.
+     */
+    static boolean isAttacked (GameState state, int square, int attackingAllegiance) {
+        for (int from = state.getGeometry().getSquares() - 1; from >= 0; from--) {
+            if (from != square && state.getAllegianceAt(from) == attackingAllegiance
+             && attacks(state, attackingAllegiance, state.getTypeAt(from), from, square, null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Finds the least valuable piece of a given allegiance that attacks a square,
+     * out of the pieces that have not captured on it yet, as GameState.getExchangeValue needs.
+     * A King counts as the most valuable. Of pieces of equal value, the one of the lowest type is taken,
+     * and of those the one on the lowest square, as the bitboards of the grid would find them.
+     * @param   state       The state of the game.
+     * @param   square      The attacked square.
+     * @param   allegiance  The allegiance of the attacking pieces. Either 1 or -1.
+     * @param   removed     Whether each square holds a piece that has already captured, indexed by square.
+     * @return              The square of the piece, or -1 if none attacks the square.
+     */
+    static int findLeastValuableAttacker (GameState state, int square, int allegiance, boolean[] removed) {
+        int attacker = -1;
+        int least = Integer.MAX_VALUE;
+        int leastType = 0;
+        for (int from = 0; from < state.getGeometry().getSquares(); from++) {
+            if (from == square || removed[from] || state.getAllegianceAt(from) != allegiance) {
+                continue;
+            }
+            int type = state.getTypeAt(from);
+            int value = type == PieceType.KING ? Integer.MAX_VALUE : Evaluation.getValue(type);
+            if ((attacker == -1 || value < least || value == least && type < leastType)
+             && attacks(state, allegiance, type, from, square, removed)) {
+                attacker = from;
+                least = value;
+                leastType = type;
+            }
+        }
+        return attacker;
+    }
+}
@@ -0,0 +1,716 @@
+package mgci.jhdap.shogi;
+
+/** A Class that generates the legal moves and drops of a position as packed moves.
+ * Rather than asking every piece whether it can reach every one of the 81 tiles,
+ * the generator takes each piece's step and slide attacks from Attacks,
+ * and its promotion and drop rules from PieceRules.
+ * <br><br>
+ * The pieces checking the King and the pieces pinned to it are found once per position,
+ * so every move can be judged without making it on the board:
+ * <ul>
+ * <li> The King may not step onto an attacked tile,
+ *      or onto the tile behind it on the line of a sliding checker.
+ * <li> When in check, every other move must capture the checker
+ *      or land between it and the King. In double check only the King may move.
+ * <li> A pinned piece may only move between its King and the slider pinning it, or take the slider.
+ * </ul>
+ * The one exception is a drop that may not give mate, such as a pawn dropped in front of the enemy King,
+ * which is made on the board to see whether it mates (uchifuzume).
+ * Mercenaries take part only as occupied tiles: they block slides and may be taken by either player,
+ * but have no moves or attacks of their own.
+ * <br><br>
+ * This class generates the moves of the standard 9*9 board, which is the whole grid of a Bitboard,
+ * on both halves of the bitboards.
+ * Any other board is passed on by its BoardGeometry's layout, behind the same methods:
+ * a board that fits the low half of a Bitboard, such as minishogi's, to SmallMoveGenerator,
+ * which does the same on a single long, kept to the tiles of the board,
+ * and a mailbox too large for a Bitboard, such as chu shogi's, to LargeMoveGenerator.
+ * Moves are written into a MoveList, which can be reused between calls.
+ * They may also be generated in three parts, captures, quiet moves and drops,
+ * for a search that often needs only the first.
+ */
+public final class MoveGenerator {
+    /** Passed instead of a square or a type to generate for every piece. */
+    static final int ALL = -1;
+
+    /** Passed instead of a square or a type to generate for no piece. */
+    static final int NONE = -2;
+
+    /** Passed to generate moves onto every tile. */
+    static final int ANY_TILE = 0;
+
+    /** Passed to generate only the moves that capture. */
+    static final int OCCUPIED_TILES = 1;
+
+    /** Passed to generate only the moves onto empty tiles. */
+    static final int EMPTY_TILES = 2;
+
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private MoveGenerator () {
+    }
+
+    /** Fills a MoveList with every legal move and drop of the player whose turn it is.
+     * @param   state       The current state of the game.
+     * @param   list        The list to fill. Anything already in it is removed.
+     */
+    public static void generateLegalMoves (GameState state, MoveList list) {
+        generateLegalMoves(state, state.getSideToMove(), list);
+    }
+
+    /** Fills a MoveList with every legal move and drop of a given allegiance.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   list        The list to fill. Anything already in it is removed.
+     */
+    public static void generateLegalMoves (GameState state, int allegiance, MoveList list) {
+        list.clear();
+        generate(state, allegiance, ALL, ALL, ANY_TILE, list);
+    }
+
+    /** Fills a MoveList with the legal moves of the player whose turn it is
+     * that capture a piece, mercenaries included.
+     * With generateQuietMoves and generateDrops, this generates every legal move once,
+     * so that a search can generate the moves it is likeliest to need first, and the rest only if it needs them.
+     * @param   state       The current state of the game.
+     * @param   list        The list to fill. Anything already in it is removed.
+     */
+    public static void generateCaptures (GameState state, MoveList list) {
+        list.clear();
+        generate(state, state.getSideToMove(), ALL, NONE, OCCUPIED_TILES, list);
+    }
+
+    /** Fills a MoveList with the legal moves of the player whose turn it is
+     * that move a piece onto an empty tile.
+     * @param   state       The current state of the game.
+     * @param   list        The list to fill. Anything already in it is removed.
+     */
+    public static void generateQuietMoves (GameState state, MoveList list) {
+        list.clear();
+        generate(state, state.getSideToMove(), ALL, NONE, EMPTY_TILES, list);
+    }
+
+    /** Fills a MoveList with the legal drops of the player whose turn it is.
+     * @param   state       The current state of the game.
+     * @param   list        The list to fill. Anything already in it is removed.
+     */
+    public static void generateDrops (GameState state, MoveList list) {
+        list.clear();
+        generate(state, state.getSideToMove(), NONE, ALL, ANY_TILE, list);
+    }
+
+    /** Adds every legal move of the piece on a given square to a MoveList.
+     * Adds nothing for a mercenary, which never moves.
+     * @param   state       The current state of the game.
+     * @param   from        The square of the piece being moved.
+     * @param   list        The list the moves are added to.
+     */
+    public static void addPieceMoves (GameState state, int from, MoveList list) {
+        int allegiance = state.getAllegianceAt(from);
+        if (allegiance != 0) {
+            generate(state, allegiance, from, NONE, ANY_TILE, list);
+        }
+    }
+
+    /** Adds every legal drop of a given piece type to a MoveList.
+     * Adds nothing if the drop table holds no piece of that type.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the drop table. Either 1 or -1.
+     * @param   type        The type code of the dropped piece.
+     * @param   list        The list the drops are added to.
+     */
+    public static void addDrops (GameState state, int allegiance, int type, MoveList list) {
+        generate(state, allegiance, NONE, type, ANY_TILE, list);
+    }
+
+    /** Adds legal moves and drops of a given allegiance to a MoveList,
+     * on the path of the board's layout.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   only        The square of the only piece to move,
+     *                      ALL for every piece, or NONE for no piece.
+     * @param   dropType    The type code of the only piece to drop,
+     *                      ALL for every type, or NONE for no drops.
+     * @param   tiles       The tiles pieces on the board may move onto:
+     *                      ANY_TILE, OCCUPIED_TILES or EMPTY_TILES. Drops are not limited by it.
+     * @param   list        The list the moves are added to.
+     */
+    private static void generate (GameState state, int allegiance, int only, int dropType, int tiles, MoveList list) {
+        switch (state.getGeometry().getLayout()) {
+            case BoardGeometry.LOW_HALF:
+                long occupied = state.getAllOccupiedLow();
+                long board = tiles == OCCUPIED_TILES ? occupied : tiles == EMPTY_TILES ? ~occupied : Bitboard.ALL_LOW;
+                SmallMoveGenerator.generate(state, allegiance, only, dropType, board, list);
+                break;
+            case BoardGeometry.MAILBOX:
+                LargeMoveGenerator.generate(state, allegiance, only, dropType, tiles, list);
+                break;
+            default:
+                long occupiedLow = state.getAllOccupiedLow();
+                long occupiedHigh = state.getAllOccupiedHigh();
+                if (tiles == OCCUPIED_TILES) {
+                    generateOnGrid(state, allegiance, only, dropType, occupiedLow, occupiedHigh, list);
+                } else if (tiles == EMPTY_TILES) {
+                    generateOnGrid(state, allegiance, only, dropType, ~occupiedLow, ~occupiedHigh, list);
+                } else {
+                    generateOnGrid(state, allegiance, only, dropType, Bitboard.ALL_LOW, Bitboard.ALL_HIGH, list);
+                }
+        }
+    }
+
+    /** Returns whether a given allegiance has at least one legal move or drop.
+     * Stops at the first one found instead of generating them all.
+     * When in check, evasions are tried in the order most likely to succeed:
+     * King steps, then captures of the checker, then interpositions, then drops.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are looked for. Either 1 or -1.
+     * @return              Whether any legal move or drop exists.
+     */
+    public static boolean hasAnyLegalMove (GameState state, int allegiance) {
+        int layout = state.getGeometry().getLayout();
+        if (layout == BoardGeometry.LOW_HALF) {
+            return SmallMoveGenerator.hasAnyLegalMove(state, allegiance);
+        } else if (layout == BoardGeometry.MAILBOX) {
+            return LargeMoveGenerator.hasAnyLegalMove(state, allegiance);
+        }
+        int enemy = -allegiance;
+        int king = state.getKingSquare(allegiance);
+        long ownLow = state.getOccupiedLow(allegiance);
+        long ownHigh = state.getOccupiedHigh(allegiance);
+        long occupiedLow = state.getAllOccupiedLow();
+        long occupiedHigh = state.getAllOccupiedHigh();
+        long openLow = ~ownLow;
+        long openHigh = ~ownHigh;
+        long targetLow = Bitboard.ALL_LOW;
+        long targetHigh = Bitboard.ALL_HIGH;
+
+        if (king != -1) {
+            long checkersLow = state.getAttackersLow(king, enemy);
+            long checkersHigh = state.getAttackersHigh(king, enemy);
+            int checks = Bitboard.count(checkersLow, checkersHigh);
+            long shadowLow = 0L;
+            long shadowHigh = 0L;
+            for (long low = checkersLow, high = checkersHigh; (low | high) != 0; ) {
+                int checker = Bitboard.first(low, high);
+                if (low != 0) {
+                    low &= low - 1;
+                } else {
+                    high &= high - 1;
+                }
+                int type = state.getTypeAt(checker);
+                if (PieceRules.isSlider(type) && Attacks.canSlide(state, enemy, type, checker, king)) {
+                    shadowLow |= Attacks.lineThrough(checker, king, 0) & Attacks.emptyBoardSlides(enemy, type, checker, 0);
+                    shadowHigh |= Attacks.lineThrough(checker, king, 1) & Attacks.emptyBoardSlides(enemy, type, checker, 1);
+                }
+            }
+
+            long low = Attacks.steps(allegiance, PieceType.KING, king, 0) & openLow & ~shadowLow;
+            long high = Attacks.steps(allegiance, PieceType.KING, king, 1) & openHigh & ~shadowHigh;
+            while ((low | high) != 0) {
+                int to = Bitboard.first(low, high);
+                if (low != 0) {
+                    low &= low - 1;
+                } else {
+                    high &= high - 1;
+                }
+                if ((state.getAttackersLow(to, enemy) | state.getAttackersHigh(to, enemy)) == 0) {
+                    return true;
+                }
+            }
+
+            if (checks > 1) {
+                return false;
+            } else if (checks == 1) {
+                /* Every piece moves onto the tiles it attacks,
+                 * so the pieces that can take the checker or block its line
+                 * are the attackers of those tiles.
+                 */
+                int checker = Bitboard.first(checkersLow, checkersHigh);
+                if (canReach(state, allegiance, king, checker)) {
+                    return true;
+                }
+                targetLow = blocks(state, enemy, king, checker, 0);
+                targetHigh = blocks(state, enemy, king, checker, 1);
+                for (low = targetLow, high = targetHigh; (low | high) != 0; ) {
+                    int to = Bitboard.first(low, high);
+                    if (low != 0) {
+                        low &= low - 1;
+                    } else {
+                        high &= high - 1;
+                    }
+                    if (canReach(state, allegiance, king, to)) {
+                        return true;
+                    }
+                }
+            } else {
+                long piecesLow = ownLow & ~Bitboard.low(king);
+                long piecesHigh = ownHigh & ~Bitboard.high(king);
+                while ((piecesLow | piecesHigh) != 0) {
+                    int from = Bitboard.first(piecesLow, piecesHigh);
+                    if (piecesLow != 0) {
+                        piecesLow &= piecesLow - 1;
+                    } else {
+                        piecesHigh &= piecesHigh - 1;
+                    }
+                    int type = state.getTypeAt(from);
+                    low = Attacks.steps(allegiance, type, from, 0) & openLow;
+                    high = Attacks.steps(allegiance, type, from, 1) & openHigh;
+                    if (PieceRules.isSlider(type)) {
+                        low |= Attacks.slides(state, allegiance, type, from, 0) & openLow;
+                        high |= Attacks.slides(state, allegiance, type, from, 1) & openHigh;
+                    }
+                    int pinner = (low | high) != 0 ? pinner(state, allegiance, king, from) : -1;
+                    if (pinner != -1) {
+                        low &= Attacks.between(king, pinner, 0) | Bitboard.low(pinner);
+                        high &= Attacks.between(king, pinner, 1) | Bitboard.high(pinner);
+                    }
+                    if ((low | high) != 0) {
+                        return true;
+                    }
+                }
+            }
+        } else if ((ownLow | ownHigh) != 0) {
+            return true;
+        }
+
+        long emptyLow = ~occupiedLow & targetLow;
+        long emptyHigh = ~occupiedHigh & targetHigh;
+        for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++) {
+            if (state.getHandCount(allegiance, type) == 0) {
+                continue;
+            }
+            int files = filesHolding(state, allegiance, type);
+            for (long low = emptyLow, high = emptyHigh; (low | high) != 0; ) {
+                int to = Bitboard.first(low, high);
+                if (low != 0) {
+                    low &= low - 1;
+                } else {
+                    high &= high - 1;
+                }
+                if (isLegalDrop(state, allegiance, type, to, files)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether a piece other than the King can legally move onto a given tile,
+     * while that King is in check from a single checker.
+     * A pinned piece only can if the tile is on its pin, between the King and the pinning slider,
+     * which takes a custom piece checking with a jump along the line of the pin.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the moving piece.
+     * @param   king        The square of the King.
+     * @param   to          The tile to move onto.
+     * @return              Whether any such move exists.
+     */
+    private static boolean canReach (GameState state, int allegiance, int king, int to) {
+        long low = state.getAttackersLow(to, allegiance) & ~Bitboard.low(king);
+        long high = state.getAttackersHigh(to, allegiance) & ~Bitboard.high(king);
+        while ((low | high) != 0) {
+            int from = Bitboard.first(low, high);
+            if (low != 0) {
+                low &= low - 1;
+            } else {
+                high &= high - 1;
+            }
+            int pinner = pinner(state, allegiance, king, from);
+            if (pinner == -1 || to == pinner || Bitboard.contains(Attacks.between(king, pinner, 0), Attacks.between(king, pinner, 1), to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds legal moves and drops of a given allegiance on the whole grid of a Bitboard to a MoveList.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   only        The square of the only piece to move,
+     *                      ALL for every piece, or NONE for no piece.
+     * @param   dropType    The type code of the only piece to drop,
+     *                      ALL for every type, or NONE for no drops.
+     * @param   boardLow    The low half of the tiles pieces on the board may move onto,
+     *                      such as the occupied tiles for captures only. Drops are not limited by it.
+     * @param   boardHigh   The high half of those tiles.
+     * @param   list        The list the moves are added to.
+     */
+    private static void generateOnGrid (GameState state, int allegiance, int only, int dropType,
+                                        long boardLow, long boardHigh, MoveList list) {
+        int enemy = -allegiance;
+        int king = state.getKingSquare(allegiance);
+        BoardGeometry geometry = state.getGeometry();
+        long ownLow = state.getOccupiedLow(allegiance);
+        long ownHigh = state.getOccupiedHigh(allegiance);
+        long occupiedLow = state.getAllOccupiedLow();
+        long occupiedHigh = state.getAllOccupiedHigh();
+        /* The tiles any piece may move onto: those that do not hold one of its own pieces,
+         * out of those asked for. The attacks never leave the grid, so there is no mask to keep to.
+         */
+        long openLow = ~ownLow & boardLow;
+        long openHigh = ~ownHigh & boardHigh;
+
+        /* The tiles that moves other than the King's may end on.
+         * Every tile of the board, unless the King is in check.
+         */
+        long targetLow = Bitboard.ALL_LOW;
+        long targetHigh = Bitboard.ALL_HIGH;
+        /* The tiles behind the King on the lines of sliding checkers,
+         * as far as each checker's slide reaches.
+         * They are only attacked once the King steps out of the way,
+         * so the attacker lookups would miss them.
+         */
+        long shadowLow = 0L;
+        long shadowHigh = 0L;
+        long pinnedLow = 0L;
+        long pinnedHigh = 0L;
+
+        if (king != -1) {
+            long checkersLow = state.getAttackersLow(king, enemy);
+            long checkersHigh = state.getAttackersHigh(king, enemy);
+            int checks = Bitboard.count(checkersLow, checkersHigh);
+            if (checks > 1) {
+                targetLow = 0L;
+                targetHigh = 0L;
+            } else if (checks == 1) {
+                int checker = Bitboard.first(checkersLow, checkersHigh);
+                targetLow = checkersLow | blocks(state, enemy, king, checker, 0);
+                targetHigh = checkersHigh | blocks(state, enemy, king, checker, 1);
+            }
+            while ((checkersLow | checkersHigh) != 0) {
+                int checker = Bitboard.first(checkersLow, checkersHigh);
+                if (checkersLow != 0) {
+                    checkersLow &= checkersLow - 1;
+                } else {
+                    checkersHigh &= checkersHigh - 1;
+                }
+                int type = state.getTypeAt(checker);
+                if (PieceRules.isSlider(type) && Attacks.canSlide(state, enemy, type, checker, king)) {
+                    shadowLow |= Attacks.lineThrough(checker, king, 0) & Attacks.emptyBoardSlides(enemy, type, checker, 0);
+                    shadowHigh |= Attacks.lineThrough(checker, king, 1) & Attacks.emptyBoardSlides(enemy, type, checker, 1);
+                }
+            }
+
+            /* A piece is pinned if it is the only piece between the King
+             * and an enemy slider that would otherwise reach the King.
+             */
+            long snipersLow = enemySliders(state, allegiance, king, 0);
+            long snipersHigh = enemySliders(state, allegiance, king, 1);
+            while ((snipersLow | snipersHigh) != 0) {
+                int sniper = Bitboard.first(snipersLow, snipersHigh);
+                if (snipersLow != 0) {
+                    snipersLow &= snipersLow - 1;
+                } else {
+                    snipersHigh &= snipersHigh - 1;
+                }
+                long blockersLow = Attacks.between(king, sniper, 0) & occupiedLow;
+                long blockersHigh = Attacks.between(king, sniper, 1) & occupiedHigh;
+                if (Bitboard.count(blockersLow, blockersHigh) == 1
+                 && ((blockersLow & ownLow) | (blockersHigh & ownHigh)) != 0) {
+                    pinnedLow |= blockersLow;
+                    pinnedHigh |= blockersHigh;
+                }
+            }
+        }
+
+        if (only != NONE) {
+            long piecesLow = ownLow;
+            long piecesHigh = ownHigh;
+            if (only != ALL) {
+                piecesLow = Bitboard.low(only);
+                piecesHigh = Bitboard.high(only);
+            }
+            while ((piecesLow | piecesHigh) != 0) {
+                int from = Bitboard.first(piecesLow, piecesHigh);
+                if (piecesLow != 0) {
+                    piecesLow &= piecesLow - 1;
+                } else {
+                    piecesHigh &= piecesHigh - 1;
+                }
+                int type = state.getTypeAt(from);
+                long low = Attacks.steps(allegiance, type, from, 0) & openLow;
+                long high = Attacks.steps(allegiance, type, from, 1) & openHigh;
+                if (PieceRules.isSlider(type)) {
+                    low |= Attacks.slides(state, allegiance, type, from, 0) & openLow;
+                    high |= Attacks.slides(state, allegiance, type, from, 1) & openHigh;
+                }
+                if (from == king) {
+                    low &= ~shadowLow;
+                    high &= ~shadowHigh;
+                } else {
+                    low &= targetLow;
+                    high &= targetHigh;
+                    if (Bitboard.contains(pinnedLow, pinnedHigh, from)) {
+                        int pinner = pinner(state, allegiance, king, from);
+                        low &= Attacks.between(king, pinner, 0) | Bitboard.low(pinner);
+                        high &= Attacks.between(king, pinner, 1) | Bitboard.high(pinner);
+                    }
+                }
+                while ((low | high) != 0) {
+                    int to = Bitboard.first(low, high);
+                    if (low != 0) {
+                        low &= low - 1;
+                    } else {
+                        high &= high - 1;
+                    }
+                    if (from != king
+                     || (state.getAttackersLow(to, enemy) | state.getAttackersHigh(to, enemy)) == 0) {
+                        addBoardMove(geometry, from, to, type, state.getTypeAt(to), allegiance, list);
+                    }
+                }
+            }
+        }
+
+        if (dropType != NONE) {
+            int first = dropType == ALL ? PieceType.PAWN : dropType;
+            int last = dropType == ALL ? PieceRules.getLastType() : dropType;
+            long emptyLow = ~occupiedLow & targetLow;
+            long emptyHigh = ~occupiedHigh & targetHigh;
+            for (int type = first; type <= last; type++) {
+                if (state.getHandCount(allegiance, type) != 0) {
+                    addDrops(state, allegiance, type, emptyLow, emptyHigh, list);
+                }
+            }
+        }
+    }
+
+    /** Finds the tiles a piece may move onto to block a check.
+     * A check by a step can never be blocked, as steps jump,
+     * even a custom piece's step of several tiles along a line.
+     * Any other check is by a slide, and is blocked on any tile between the checker and the King.
+     * @param   state       The current state of the game.
+     * @param   enemy       The allegiance of the checker.
+     * @param   king        The square of the King in check.
+     * @param   checker     The square of the checker.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of the blocking tiles.
+     */
+    private static long blocks (GameState state, int enemy, int king, int checker, int half) {
+        if (Attacks.canStep(enemy, state.getTypeAt(checker), checker, king)) {
+            return 0L;
+        }
+        return Attacks.between(king, checker, half);
+    }
+
+    /** Finds the enemy sliders that would attack a King if nothing stood in their way.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the King.
+     * @param   king        The square of the King.
+     * @param   half        0 for the low half, 1 for the high half.
+     * @return              That half of the squares of such sliders.
+     */
+    private static long enemySliders (GameState state, int allegiance, int king, int half) {
+        int enemy = -allegiance;
+        long sliders = 0L;
+        /* A slider of the King's own allegiance on the King's square
+         * would slide towards exactly the enemy sliders of its type that can reach the King.
+         */
+        for (int type : PieceRules.getSliders()) {
+            long pieces = half == 0 ? state.getPiecesLow(enemy, type) : state.getPiecesHigh(enemy, type);
+            if (pieces != 0) {
+                sliders |= pieces & Attacks.emptyBoardSlides(allegiance, type, king, half);
+            }
+        }
+        return sliders;
+    }
+
+    /** Adds every legal drop of a given piece type onto a set of tiles to a MoveList.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the drop table.
+     * @param   type        The type code of the dropped piece.
+     * @param   emptyLow    The low half of the empty tiles the piece may be dropped on.
+     * @param   emptyHigh   The high half of those tiles.
+     * @param   list        The list the drops are added to.
+     */
+    private static void addDrops (GameState state, int allegiance, int type, long emptyLow, long emptyHigh, MoveList list) {
+        int files = filesHolding(state, allegiance, type);
+        while ((emptyLow | emptyHigh) != 0) {
+            int to = Bitboard.first(emptyLow, emptyHigh);
+            if (emptyLow != 0) {
+                emptyLow &= emptyLow - 1;
+            } else {
+                emptyHigh &= emptyHigh - 1;
+            }
+            if (isLegalDrop(state, allegiance, type, to, files)) {
+                list.add(PackedMove.createDrop(type, to));
+            }
+        }
+    }
+
+    /** Returns whether a piece may be dropped on a given empty tile
+     * that does not leave its King in check.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the drop table.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The square the piece is dropped on.
+     * @return              Whether the drop is legal.
+     */
+    static boolean isLegalDrop (GameState state, int allegiance, int type, int to) {
+        return isLegalDrop(state, allegiance, type, to, filesHolding(state, allegiance, type));
+    }
+
+    /** Returns whether a piece may be dropped on a given empty tile
+     * that does not leave its King in check,
+     * by checking each of the drop rules PieceRules gives its type.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the drop table.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The square the piece is dropped on.
+     * @param   files       The files the piece may not be dropped on, from filesHolding.
+     * @return              Whether the drop is legal.
+     */
+    static boolean isLegalDrop (GameState state, int allegiance, int type, int to, int files) {
+        BoardGeometry geometry = state.getGeometry();
+        return !PieceRules.mustPromote(geometry, type, allegiance, geometry.y(to))
+            && (files & 1 << geometry.x(to)) == 0
+            && !(PieceRules.hasDropRule(type, PieceRules.NO_DROP_MATE) && isDropMate(state, allegiance, type, to));
+    }
+
+    /** Marks the files that already hold a player's piece of a type
+     * that may only be dropped once per file, such as the pawn (nifu).
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the pieces.
+     * @param   type        The type code of the piece to drop.
+     * @return              A mask with bit x set for every such file x,
+     *                      or 0 if the type may be dropped on any file.
+     */
+    static int filesHolding (GameState state, int allegiance, int type) {
+        if (!PieceRules.hasDropRule(type, PieceRules.ONE_PER_FILE)) {
+            return 0;
+        } else if (state.getGeometry().getLayout() == BoardGeometry.MAILBOX) {
+            return LargeMoveGenerator.filesHolding(state, allegiance, type);
+        }
+        int files = 0;
+        long low = state.getPiecesLow(allegiance, type);
+        long high = state.getPiecesHigh(allegiance, type);
+        while ((low | high) != 0) {
+            files |= 1 << Bitboard.x(Bitboard.first(low, high));
+            if (low != 0) {
+                low &= low - 1;
+            } else {
+                high &= high - 1;
+            }
+        }
+        return files;
+    }
+
+    /** Returns whether dropping a piece on a given square would checkmate the enemy King,
+     * which the rules forbid for some pieces, such as the pawn (uchifuzume).
+     * A dropped piece that does not slide can only check by a single step or jump,
+     * and such a check can neither be blocked nor come with a second checker.
+     * So the King is mated unless it can step to a tile the dropper does not attack,
+     * which includes taking the piece, or another unpinned piece can take it.
+     * A check from a sliding piece might also be blocked,
+     * so for those every legal reply is looked for instead.
+     * The piece is placed on the board for the test, so that it blocks lines as it should,
+     * and taken off again before returning.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the player dropping the piece.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The empty square the piece is dropped on.
+     * @return              Whether the drop would checkmate.
+     */
+    public static boolean isDropMate (GameState state, int allegiance, int type, int to) {
+        int layout = state.getGeometry().getLayout();
+        if (layout == BoardGeometry.LOW_HALF) {
+            return SmallMoveGenerator.isDropMate(state, allegiance, type, to);
+        } else if (layout == BoardGeometry.MAILBOX) {
+            return LargeMoveGenerator.isDropMate(state, allegiance, type, to);
+        }
+        int defender = -allegiance;
+        int king = state.getKingSquare(defender);
+        boolean slider = PieceRules.isSlider(type);
+        if (king == -1 || !(Attacks.canStep(allegiance, type, to, king)
+                            || slider && Attacks.canSlide(state, allegiance, type, to, king))) {
+            return false;
+        }
+        state.makeMove(PackedMove.createDrop(type, to), allegiance);
+        if (slider) {
+            boolean mate = !hasAnyLegalMove(state, defender);
+            state.unmakeMove();
+            return mate;
+        }
+        boolean mate = true;
+
+        long low = Attacks.steps(defender, PieceType.KING, king, 0) & ~state.getOccupiedLow(defender);
+        long high = Attacks.steps(defender, PieceType.KING, king, 1) & ~state.getOccupiedHigh(defender);
+        while (mate && (low | high) != 0) {
+            int escape = Bitboard.first(low, high);
+            if (low != 0) {
+                low &= low - 1;
+            } else {
+                high &= high - 1;
+            }
+            mate = (state.getAttackersLow(escape, allegiance) | state.getAttackersHigh(escape, allegiance)) != 0;
+        }
+
+        low = state.getAttackersLow(to, defender) & ~Bitboard.low(king);
+        high = state.getAttackersHigh(to, defender) & ~Bitboard.high(king);
+        while (mate && (low | high) != 0) {
+            int capturer = Bitboard.first(low, high);
+            if (low != 0) {
+                low &= low - 1;
+            } else {
+                high &= high - 1;
+            }
+            mate = pinner(state, defender, king, capturer) != -1;
+        }
+
+        state.unmakeMove();
+        return mate;
+    }
+
+    /** Finds the enemy slider a piece is pinned to its King by,
+     * if it is the only piece standing between them.
+     * A pinned piece may only move between its King and that slider, or take the slider.
+     * Moving anywhere else along their line is not enough,
+     * as a custom piece may jump over the slider.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the piece and the King.
+     * @param   king        The square of the King.
+     * @param   square      The square of the piece.
+     * @return              The square of the pinning slider, or -1 if the piece is not pinned.
+     */
+    private static int pinner (GameState state, int allegiance, int king, int square) {
+        long occupiedLow = state.getAllOccupiedLow();
+        long occupiedHigh = state.getAllOccupiedHigh();
+        long snipersLow = enemySliders(state, allegiance, king, 0);
+        long snipersHigh = enemySliders(state, allegiance, king, 1);
+        while ((snipersLow | snipersHigh) != 0) {
+            int sniper = Bitboard.first(snipersLow, snipersHigh);
+            if (snipersLow != 0) {
+                snipersLow &= snipersLow - 1;
+            } else {
+                snipersHigh &= snipersHigh - 1;
+            }
+            if ((Attacks.between(king, sniper, 0) & occupiedLow) == Bitboard.low(square)
+             && (Attacks.between(king, sniper, 1) & occupiedHigh) == Bitboard.high(square)) {
+                return sniper;
+            }
+        }
+        return -1;
+    }
+
+    /** Adds a legal move from one square to another to a MoveList.
+     * A move that may promote is added twice, once with and once without promotion,
+     * and a move that must promote is only added with promotion.
+     * @param   geometry    The board the move is made on.
+     * @param   from        The square the piece moves from.
+     * @param   to          The square the piece moves to.
+     * @param   type        The type code of the moving piece.
+     * @param   captured    The type code of the piece on the target square, or 0.
+     * @param   allegiance  The allegiance of the moving piece.
+     * @param   list        The list the move is added to.
+     */
+    static void addBoardMove (BoardGeometry geometry, int from, int to, int type, int captured, int allegiance, MoveList list) {
+        int y = geometry.y(to);
+        if (PieceRules.canPromote(geometry, type, allegiance, y)) {
+            list.add(PackedMove.create(from, to, type, captured, true));
+            if (!PieceRules.mustPromote(geometry, type, allegiance, y)) {
+                list.add(PackedMove.create(from, to, type, captured, false));
+            }
+        } else {
+            list.add(PackedMove.create(from, to, type, captured, false));
+        }
+    }
+}
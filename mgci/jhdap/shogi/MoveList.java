@@ -0,0 +1,74 @@
+package mgci.jhdap.shogi;
+
+import java.util.Arrays;
+
+/** A Class holding a list of packed moves in a primitive array.
+ * A MoveList is meant to be created once and refilled many times,
+ * so that generating moves does not create any objects.
+ * <br><br>
+ * A list starts with room for CAPACITY moves, which no position of the standard pieces needs more of.
+ * Custom pieces in hand add up to 81 drops for each of their types, so a list grows when it is full,
+ * and keeps its larger array from then on.
+ */
+public class MoveList {
+    /** The number of moves a new list has room for.
+     * The most legal moves any position of the standard pieces is known to have is 593.
+     */
+    public static final int CAPACITY = 600;
+
+    /** The packed moves in this list.
+     * Only the first size entries are in use.
+     */
+    private int[] moves;
+
+    /** The number of moves in this list.
+     */
+    private int size;
+
+    /** Constructs a new, empty MoveList.
+     */
+    public MoveList () {
+        this.moves = new int[CAPACITY];
+        this.size = 0;
+    }
+
+    /** Adds a packed move to the end of this list,
+     * doubling its room first if it is full.
+     * @param   move        The packed move to add.
+     */
+    public void add (int move) {
+        if (this.size == this.moves.length) {
+            this.moves = Arrays.copyOf(this.moves, 2*this.moves.length);
+        }
+        this.moves[this.size++] = move;
+    }
+
+    /** Returns the packed move at a given position in this list.
+     * @param   index       The position of the move.
+     * @return              The packed move.
+     */
+    public int get (int index) {
+        return this.moves[index];
+    }
+
+    /** Replaces the packed move at a given position in this list.
+     * @param   index       The position of the move.
+     * @param   move        The packed move to put there.
+     */
+    public void set (int index, int move) {
+        this.moves[index] = move;
+    }
+
+    /** Returns the number of moves in this list.
+     * @return              The number of moves.
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /** Empties this list, so that it can be refilled.
+     */
+    public void clear () {
+        this.size = 0;
+    }
+}
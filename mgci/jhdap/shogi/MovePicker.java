@@ -0,0 +1,307 @@
+package mgci.jhdap.shogi;
+
+/** A Class that hands out the legal moves of a position one at a time, likeliest to be best first,
+ * generating each kind of move only once the moves before it have all been tried.
+ * The moves come in stages:
+ * <ol>
+ * <li> The move the TranspositionTable holds for the position, if it is legal here.
+ * <li> Captures, the most valuable victim first, and the least valuable attacker first among those.
+ * <li> The killer moves of the ply, quiet moves that cut the search off in a sibling position,
+ *      if they are legal here.
+ * <li> Quiet moves of pieces on the board, promotions first and then by their history.
+ * <li> Drops, by their history.
+ * </ol>
+ * A search that is cut off by an early move never generates the later stages,
+ * which saves the most at the last, as a player with pieces in hand has many drops.
+ * Within a stage, the best move left is found as it is asked for, instead of sorting the whole stage.
+ * <br><br>
+ * A picker is reused for every position searched at its ply, so it allocates nothing once made.
+ */
+public final class MovePicker {
+    /** The stage that tries the move from the TranspositionTable. */
+    private static final int HASH = 0;
+
+    /** The stage that generates and scores the captures. */
+    private static final int GENERATE_CAPTURES = 1;
+
+    /** The stage that tries the captures. */
+    private static final int CAPTURES = 2;
+
+    /** The stage that tries the killer moves. */
+    private static final int KILLERS = 3;
+
+    /** The stage that generates and scores the quiet moves. */
+    private static final int GENERATE_QUIETS = 4;
+
+    /** The stage that tries the quiet moves. */
+    private static final int QUIETS = 5;
+
+    /** The stage that generates and scores the drops. */
+    private static final int GENERATE_DROPS = 6;
+
+    /** The stage that tries the drops. */
+    private static final int DROPS = 7;
+
+    /** The stage after the last move. */
+    private static final int DONE = 8;
+
+    /** The ordering score of a quiet promotion, above that of any history. */
+    private static final int PROMOTION_SCORE = 1 << 27;
+
+    /** The moves of the current stage. */
+    private final MoveList moves = new MoveList();
+
+    /** The ordering scores of the moves of the current stage, indexed as the moves are.
+     * Grown with the list of moves, when custom pieces in hand give a stage more than MoveList.CAPACITY.
+     */
+    private int[] scores = new int[MoveList.CAPACITY];
+
+    /** A list for the moves of a single piece, to check that a move from elsewhere is legal. */
+    private final MoveList pieceMoves = new MoveList();
+
+    /** The killer moves of the ply, or 0. */
+    private final int[] killers = new int[2];
+
+    /** The position whose moves are picked. */
+    private GameState state;
+
+    /** The history of quiet moves, as kept by the Search, indexed by getHistoryRow and then by square. */
+    private int[][] history;
+
+    /** The move from the TranspositionTable, or 0. */
+    private int hashMove;
+
+    /** Whether only captures are picked. */
+    private boolean capturesOnly;
+
+    /** The current stage. */
+    private int stage;
+
+    /** The index of the next move or killer of the current stage. */
+    private int index;
+
+    /** Starts picking every legal move of a position.
+     * @param   state       The position. It may have moves made on it while picking,
+     *                      as long as they are unmade before the next move is asked for.
+     * @param   hashMove    The move the TranspositionTable holds for the position, or 0.
+     * @param   killer1     The first killer move of the ply, or 0.
+     * @param   killer2     The second killer move of the ply, or 0.
+     * @param   history     The history of quiet moves, indexed by getHistoryRow and then by square.
+     */
+    public void start (GameState state, int hashMove, int killer1, int killer2, int[][] history) {
+        this.state = state;
+        this.hashMove = hashMove;
+        this.killers[0] = killer1;
+        this.killers[1] = killer2 != killer1 ? killer2 : 0;
+        this.history = history;
+        this.capturesOnly = false;
+        this.stage = HASH;
+    }
+
+    /** Starts picking the legal captures of a position, and nothing else.
+     * @param   state       The position.
+     */
+    public void startCaptures (GameState state) {
+        this.state = state;
+        this.hashMove = 0;
+        this.capturesOnly = true;
+        this.stage = GENERATE_CAPTURES;
+    }
+
+    /** Returns the next move.
+     * @return              The packed move, with its piece and captured fields, or 0 if there are no more.
+     */
+    public int next () {
+        while (true) {
+            int move;
+            switch (this.stage) {
+            case HASH:
+                this.stage = GENERATE_CAPTURES;
+                if (this.hashMove != 0 && this.isLegal(this.hashMove)) {
+                    return this.hashMove;
+                }
+                break;
+            case GENERATE_CAPTURES:
+                MoveGenerator.generateCaptures(this.state, this.moves);
+                this.fitScores();
+                for (int i = 0; i < this.moves.size(); i++) {
+                    this.scores[i] = captureScore(this.moves.get(i));
+                }
+                this.index = 0;
+                this.stage = CAPTURES;
+                break;
+            case CAPTURES:
+                move = this.pick();
+                if (move == 0) {
+                    this.index = 0;
+                    this.stage = this.capturesOnly ? DONE : KILLERS;
+                } else if (move != this.hashMove) {
+                    return move;
+                }
+                break;
+            case KILLERS:
+                if (this.index == this.killers.length) {
+                    this.stage = GENERATE_QUIETS;
+                    break;
+                }
+                move = this.killers[this.index++];
+                if (move != 0 && move != this.hashMove && PackedMove.getCaptured(move) == 0 && this.isLegal(move)) {
+                    return move;
+                }
+                break;
+            case GENERATE_QUIETS:
+                MoveGenerator.generateQuietMoves(this.state, this.moves);
+                this.scoreQuiets();
+                this.stage = QUIETS;
+                break;
+            case QUIETS:
+                move = this.pick();
+                if (move == 0) {
+                    this.stage = GENERATE_DROPS;
+                } else if (!this.isTried(move)) {
+                    return move;
+                }
+                break;
+            case GENERATE_DROPS:
+                MoveGenerator.generateDrops(this.state, this.moves);
+                this.scoreQuiets();
+                this.stage = DROPS;
+                break;
+            case DROPS:
+                move = this.pick();
+                if (move == 0) {
+                    this.stage = DONE;
+                } else if (!this.isTried(move)) {
+                    return move;
+                }
+                break;
+            default:
+                return 0;
+            }
+        }
+    }
+
+    /** Returns the row of a history table for the piece a move moves or drops.
+     * @param   side        The allegiance of the player making the move.
+     * @param   move        The packed move, with its piece field.
+     * @return              The piece code of the piece, before any promotion.
+     */
+    static int getHistoryRow (int side, int move) {
+        int type = PackedMove.isDrop(move) ? PackedMove.getDropType(move) : PackedMove.getPiece(move);
+        return PieceType.code(side, type);
+    }
+
+    /** Scores a capture, by the values of the victim and the attacker,
+     * and of the promotion if the attacker promotes.
+     * @param   move        The packed move, with its piece and captured fields.
+     * @return              A higher score for a capture more likely to be good.
+     */
+    private static int captureScore (int move) {
+        int piece = PackedMove.getPiece(move);
+        int value = 16*Evaluation.getValue(PackedMove.getCaptured(move)) - Evaluation.getValue(piece)/16;
+        if (PackedMove.isPromotion(move)) {
+            value += Evaluation.getValue(PieceRules.getPromotion(piece)) - Evaluation.getValue(piece);
+        }
+        return value;
+    }
+
+    /** Scores the quiet moves or drops of the current stage by their history, promotions first,
+     * and starts the stage from its first move.
+     */
+    private void scoreQuiets () {
+        this.fitScores();
+        int side = this.state.getSideToMove();
+        for (int i = 0; i < this.moves.size(); i++) {
+            int move = this.moves.get(i);
+            this.scores[i] = this.history[getHistoryRow(side, move)][PackedMove.getTo(move)]
+                           + (PackedMove.isPromotion(move) ? PROMOTION_SCORE : 0);
+        }
+        this.index = 0;
+    }
+
+    /** Makes sure there is an ordering score for every move of the current stage.
+     */
+    private void fitScores () {
+        if (this.scores.length < this.moves.size()) {
+            this.scores = new int[this.moves.size()];
+        }
+    }
+
+    /** Takes the best move left in the current stage,
+     * by swapping the highest-scoring move left into the next place.
+     * @return              The packed move, or 0 if the stage has no more.
+     */
+    private int pick () {
+        int size = this.moves.size();
+        if (this.index == size) {
+            return 0;
+        }
+        int best = this.index;
+        for (int i = best + 1; i < size; i++) {
+            if (this.scores[i] > this.scores[best]) {
+                best = i;
+            }
+        }
+        int move = this.moves.get(best);
+        if (best != this.index) {
+            this.moves.set(best, this.moves.get(this.index));
+            this.scores[best] = this.scores[this.index];
+            this.moves.set(this.index, move);
+        }
+        this.index++;
+        return move;
+    }
+
+    /** Returns whether a generated move was already handed out by an earlier stage,
+     * as the move from the TranspositionTable or a killer.
+     * A generated move is legal, so if it is one of those, that stage handed it out.
+     * @param   move        The packed move.
+     * @return              Whether it has been handed out.
+     */
+    private boolean isTried (int move) {
+        return move == this.hashMove || move == this.killers[0] || move == this.killers[1];
+    }
+
+    /** Returns whether a move from elsewhere, the TranspositionTable or a sibling position,
+     * is legal in this position, with the same piece and captured fields it would be generated with.
+     * A move on the board is looked for among the moves of its piece,
+     * and a drop checked by its drop rules and by making it.
+     * @param   move        The packed move.
+     * @return              Whether the MoveGenerator would generate it here.
+     */
+    private boolean isLegal (int move) {
+        int side = this.state.getSideToMove();
+        int to = PackedMove.getTo(move);
+        BoardGeometry geometry = this.state.getGeometry();
+        /* A move from another position may have come from a board of another size,
+         * and its squares may not be on this one.
+         */
+        if (to >= geometry.getSquares() || !geometry.contains(geometry.x(to), geometry.y(to))) {
+            return false;
+        } else if (PackedMove.isDrop(move)) {
+            int type = PackedMove.getDropType(move);
+            if (this.state.getHandCount(side, type) == 0 || this.state.getTypeAt(to) != PieceType.EMPTY
+             || !MoveGenerator.isLegalDrop(this.state, side, type, to)) {
+                return false;
+            }
+            this.state.makeMove(move);
+            boolean legal = !this.state.isKingInCheck(side);
+            this.state.unmakeMove();
+            return legal;
+        }
+        int from = PackedMove.getFrom(move);
+        if (from >= geometry.getSquares()
+         || this.state.getAllegianceAt(from) != side || this.state.getTypeAt(from) != PackedMove.getPiece(move)
+         || this.state.getTypeAt(to) != PackedMove.getCaptured(move)) {
+            return false;
+        }
+        this.pieceMoves.clear();
+        MoveGenerator.addPieceMoves(this.state, from, this.pieceMoves);
+        for (int i = 0; i < this.pieceMoves.size(); i++) {
+            if (this.pieceMoves.get(i) == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
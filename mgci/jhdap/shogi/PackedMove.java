@@ -0,0 +1,151 @@
+package mgci.jhdap.shogi;
+
+/** A Class of helpers for moves packed into a single int.
+ * Packed moves are what GameState.makeMove takes,
+ * so that simulating a move does not need any objects.
+ * <br><br>
+ * The bits of a packed move are:
+ * <ul>
+ * <li> 0-7: The square the piece moves from,
+ *      or the type code of the dropped piece for a drop.
+ * <li> 8-15: The square the piece moves to.
+ * <li> 16: Set if the piece promotes.
+ * <li> 17: Set if the move is a drop.
+ * <li> 18-22: The type code of the moving or dropped piece, before any promotion.
+ * <li> 23-27: The type code of the captured piece, or 0 if nothing is captured.
+ * </ul>
+ * The piece and captured fields are filled in by the MoveGenerator.
+ * GameState.makeMove does not read them, 
+ * so moves packed without them can still be made.
+ * Squares are numbered as by the BoardGeometry of the move's board,
+ * which is as in Bitboard for every board but a mailbox, and take 8 bits for the largest of those.
+ */
+public final class PackedMove {
+    /** The flag set on moves that promote the moving piece. */
+    public static final int PROMOTE = 1 << 16;
+
+    /** The flag set on drops. */
+    public static final int DROP = 1 << 17;
+
+    /** The number of bits used by a packed move. */
+    public static final int BITS = 28;
+
+    /** This class only holds static helpers, and is never instantiated.
+     */
+    private PackedMove () {
+    }
+
+    /** Packs a move of a piece on the board.
+     * @param   from        The square the piece moves from.
+     * @param   to          The square the piece moves to.
+     * @param   promote     Whether the piece promotes after moving.
+     * @return              The packed move.
+     */
+    public static int create (int from, int to, boolean promote) {
+        return from | to << 8 | (promote ? PROMOTE : 0);
+    }
+
+    /** Packs a move of a piece on the board,
+     * including the moving and captured piece types.
+     * @param   from        The square the piece moves from.
+     * @param   to          The square the piece moves to.
+     * @param   piece       The type code of the moving piece.
+     * @param   captured    The type code of the captured piece, or 0.
+     * @param   promote     Whether the piece promotes after moving.
+     * @return              The packed move.
+     */
+    public static int create (int from, int to, int piece, int captured, boolean promote) {
+        return create(from, to, promote) | piece << 18 | captured << 23;
+    }
+
+    /** Packs a drop of a piece from a drop table.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The square the piece is dropped on.
+     * @return              The packed drop.
+     */
+    public static int createDrop (int type, int to) {
+        return type | to << 8 | DROP | type << 18;
+    }
+
+    /** Returns the square a packed move starts from.
+     * @param   move        The packed move.
+     * @return              The starting square. Meaningless for drops.
+     */
+    public static int getFrom (int move) {
+        return move & 0xFF;
+    }
+
+    /** Returns the square a packed move ends on.
+     * @param   move        The packed move.
+     * @return              The target square.
+     */
+    public static int getTo (int move) {
+        return move >>> 8 & 0xFF;
+    }
+
+    /** Returns the type code of the piece a packed drop places.
+     * @param   move        The packed drop.
+     * @return              The dropped type. Meaningless for board moves.
+     */
+    public static int getDropType (int move) {
+        return move & 0xFF;
+    }
+
+    /** Returns the type code of the piece a packed move moves or drops.
+     * @param   move        The packed move.
+     * @return              The type of the piece before any promotion,
+     *                      or 0 if the move was packed without it.
+     */
+    public static int getPiece (int move) {
+        return move >>> 18 & 0x1F;
+    }
+
+    /** Returns the type code of the piece a packed move captures.
+     * @param   move        The packed move.
+     * @return              The type of the captured piece, or 0.
+     */
+    public static int getCaptured (int move) {
+        return move >>> 23 & 0x1F;
+    }
+
+    /** Returns whether a packed move promotes the moving piece.
+     * @param   move        The packed move.
+     * @return              Whether the promotion flag is set.
+     */
+    public static boolean isPromotion (int move) {
+        return (move & PROMOTE) != 0;
+    }
+
+    /** Returns whether a packed move is a drop.
+     * @param   move        The packed move.
+     * @return              Whether the drop flag is set.
+     */
+    public static boolean isDrop (int move) {
+        return (move & DROP) != 0;
+    }
+
+    /** Writes a packed move in the notation of the Universal Shogi Interface,
+     * such as "7g7f", "8h2b+" or "P*5e".
+     * Files and ranks are the standard shogi ones, as in Tile,
+     * so the move must be on the grid of a Bitboard.
+     * @param   move        The packed move.
+     * @return              The move as a String.
+     */
+    public static String toString (int move) {
+        return toString(move, BoardGeometry.STANDARD);
+    }
+
+    /** Writes a packed move on a given board in the notation of the Universal Shogi Interface,
+     * with the tiles named as by BoardGeometry.getNotation, such as "12c12d" in chu shogi.
+     * @param   move        The packed move.
+     * @param   geometry    The board the move is made on.
+     * @return              The move as a String.
+     */
+    public static String toString (int move, BoardGeometry geometry) {
+        String to = geometry.getNotation(getTo(move));
+        if (isDrop(move)) {
+            return "" + PieceType.getLetter(getDropType(move)) + '*' + to;
+        }
+        return geometry.getNotation(getFrom(move)) + to + (isPromotion(move) ? "+" : "");
+    }
+}
@@ -11,67 +11,7 @@ public class Pawn extends PromotablePiece {
      */
     public Pawn(int x, int y, int allegiance) {
         super(x, y, allegiance);
-        this.pieceName = "Pawn";
-        this.doubleCharRepresentation = new String[]{"p ","P#", "P "};
-        this.imageNames = new String[]{"dPawn.png", "nPawn.png", "uPawn.png"};
-    }
-
-    /** Returns whether a move can be undertaken by this Pawn.
-     * @param   x           The x-value to which this piece is trying to move.
-     * @param   y           The y-value to which this piece is trying to move.
-     * @param   state       The state of the game before the piece is moved.
-     * @return              Whether this Pawn can move to the given x and y values.
-     */
-    protected boolean isValidNonDropMove (GameState state, int x, int y) {
-        /*
-         * Pieces with an allegiance of 1 move up the board, and up the ranks. 
-         * Pieces with an allegiance of -1 move down the board, and down the ranks.
-         * This method checks to see if the target tile is on the next rank,
-         * then checks to see if the target tile is on the same file as this Pawn.
-         * Afterwards, this method checks to see if the target rank is 
-         * within the range of permitted ranks,
-         * followed by verifying if the target tile doesn't contain friendly units.
-         */
-         return ((y == this.y + this.allegiance)
-         && (x == this.x)
-         && !((y < 0) || (y > 8))
-         && (state.getPieceAt(x, y)
-                  .getAllegiance() != this.allegiance));
-    }
-    
-    /** Returns whether a drop can be undertaken by this Pawn.
-     * @param   state       The current state of the game at the time of verification. 
-     * @param   x           The x-value to which this piece is trying to drop on.
-     * @param   y           The y-value to which this piece is trying to drop on.
-     * @return              Whether this Pawn can be dropped on the given x and y values.
-     */
-    protected boolean isValidDrop(GameState state, int x, int y) {
-        boolean nifu = true;
-        for (int i = 0; nifu && i < 9; i++) {
-            nifu = !(state.getPieceAt(x, i) instanceof Pawn
-                  && state.getPieceAt(x, i).getAllegiance() == this.getAllegiance()); 
-        }
-        Piece tempRep = state.getPieceAt(x, y);
-        state.mockDropPieceFromTable(this.allegiance, x, y, this);
-        boolean uchifuzume = !state.isKingCheckmated(-this.allegiance);
-        state.mockAddPieceToDropTable(this.allegiance, this);
-        state.setPieceAt(x, y, tempRep);
-        int space = -1;
-        for (int i = 0; i < state.getCorrectDropTable(this.getAllegiance()).size(); i++) {
-            if (state.getCorrectDropTable(this.getAllegiance()).get(i) == this) {
-                space = i;
-            }
-        }
-        return nifu
-            && uchifuzume
-            && state.getPieceAt(x, y) instanceof EmptyPiece
-            && y != 4+4*this.allegiance
-           && !state.willKingBeInCheckAfterDrop(x, y, this.getAllegiance(), space);
-    }
-
-    @Override
-    protected boolean mustPromoteIfMoved(GameState state, int x, int y) {
-        return y == 4+4*this.allegiance;
+        this.setType(PieceType.PAWN);
     }
     
     /** Returns the Piece this pawn promotes to.
@@ -0,0 +1,255 @@
+package mgci.jhdap.shogi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** A Class that counts the move paths of a given length from a position (perft).
+ * Every legal line of play is made and unmade on the board,
+ * so the counts check makeMove, unmakeMove and the MoveGenerator together.
+ * Any change to the move rules that is meant to keep them the same
+ * must keep every count in the suite the same.
+ * <br><br>
+ * Deep counts can be split across threads by their first move,
+ * each thread counting on its own copy of the GameState.
+ * Positions reached by more than one path are then only counted once,
+ * through a PerftTable that all the threads share.
+ * <br><br>
+ * The suite positions are SFEN strings, as read by GameState.sfenBoardConfigure.
+ */
+public final class Perft {
+    /** The SFEN string of the standard starting position.
+     */
+    public static final String START = "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL b - 1";
+
+    /** The positions of the regression suite:
+     * the starting position, the same with the top player to move,
+     * a middle game full of captures and promotions,
+     * a position with every piece type in hand and many drops,
+     * an opening with mercenaries in the way of both players,
+     * the starting position of minishogi, on a 5*5 board,
+     * and the standard pieces set out on the 12*12 board of chu shogi, which is laid out as a mailbox.
+     */
+    private static final String[] SUITE_POSITIONS = {
+        START,
+        "lnsgkgsnl/1r5b1/ppppppppp/9/9/9/PPPPPPPPP/1B5R1/LNSGKGSNL w - 1",
+        "l6nl/5+P1gk/2np1S3/p1p4Pp/3P2Sp1/1PPb2P1P/P5GS1/R8/LN4bKL w RGgsn5p 1",
+        "R8/2K1S1SSk/4B4/9/9/9/9/9/1L1L1L3 b RBGSNLP3g3n17p 1",
+        "lnsgkgsnl/1r5b1/pppp1pppp/2~P1~+B1~N2/4~G4/1~S3~L3/PPPP1PPPP/1B5R1/LNSGKGSNL b - 1",
+        BoardGeometry.MINISHOGI.getStart(),
+        "1lnsgkgsnl2/2r5b3/pppppppppppp/12/12/12/12/12/12/PPPPPPPPPPPP/3B5R2/2LNSGKGSNL1 b - 1",
+    };
+
+    /** The known move path counts of each suite position,
+     * indexed by position and then by depth minus one.
+     * <br><br>
+     * The published counts assume a piece may also promote when it leaves the promotion zone.
+     * This game only offers promotion when a piece moves into the zone,
+     * so its counts agree with the published ones up to depth 4 from the start,
+     * where no piece has had the time to leave the zone,
+     * and are lower once one can (19859785 at depth 5, against 19861490).
+     * The same goes for minishogi, whose zone is its last rank (532171 at depth 5, against 533203).
+     * The start position's count at depth 6 takes a while on one thread,
+     * and is meant to be checked with several.
+     * The other counts are this game's own.
+     */
+    private static final long[][] SUITE_COUNTS = {
+        {30L, 900L, 25470L, 719731L, 19859785L, 547467795L},
+        {30L, 900L, 25470L, 719731L},
+        {207L, 28286L, 4729121L},
+        {579L, 102973L},
+        {29L, 841L, 25364L, 726227L},
+        {14L, 181L, 2512L, 35401L, 532171L},
+        {34L, 1156L, 37806L, 1236202L},
+    };
+
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private Perft () {
+    }
+
+    /** Counts the move paths of a given length from a position.
+     * The position is the same afterwards.
+     * @param   state       The position to count from.
+     * @param   depth       The number of moves in each path.
+     * @return              The number of paths.
+     */
+    public static long perft (GameState state, int depth) {
+        if (depth <= 0) {
+            return 1L;
+        }
+        return perft(state, depth, newLists(depth), null);
+    }
+
+    /** Counts the move paths of a given length from a position, split by their first move.
+     * @param   state       The position to count from.
+     * @param   depth       The number of moves in each path. At least 1.
+     * @param   moves       Filled with the legal moves of the position.
+     * @param   counts      Filled with the number of paths starting with each of those moves.
+     *                      Must hold an entry for each legal move of the position.
+     * @return              The total number of paths.
+     */
+    public static long divide (GameState state, int depth, MoveList moves, long[] counts) {
+        MoveList[] lists = newLists(depth);
+        MoveGenerator.generateLegalMoves(state, moves);
+        long total = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(moves.get(i));
+            counts[i] = depth == 1 ? 1L : perft(state, depth - 1, lists, null);
+            state.unmakeMove();
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /** Counts the move paths of a given length from a position, split by their first move,
+     * with the first moves shared out between a number of threads.
+     * The position is the same afterwards.
+     * @param   state       The position to count from.
+     * @param   depth       The number of moves in each path. At least 1.
+     * @param   moves       Filled with the legal moves of the position.
+     * @param   counts      Filled with the number of paths starting with each of those moves.
+     *                      Must hold an entry for each legal move of the position.
+     * @param   threads     The number of threads to count with.
+     * @param   table       The table of counts shared by the threads, or null for none.
+     * @return              The total number of paths.
+     */
+    public static long divide (GameState state, int depth, MoveList moves, long[] counts, int threads, PerftTable table) {
+        MoveGenerator.generateLegalMoves(state, moves);
+        /* The copies are made here rather than in the tasks,
+         * as a GameState may not be read while it is being copied from another thread.
+         */
+        List<RootTask> tasks = new ArrayList<RootTask>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            tasks.add(new RootTask(new GameState(state), moves.get(i), depth - 1, table));
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        try {
+            for (RootTask task : tasks) {
+                pool.execute(task);
+            }
+            long total = 0L;
+            for (int i = 0; i < moves.size(); i++) {
+                counts[i] = tasks.get(i).join();
+                total += counts[i];
+            }
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Counts the move paths of a given length,
+     * using one preallocated MoveList per remaining depth.
+     * The last move of each path is counted rather than made.
+     * @param   state       The position to count from.
+     * @param   depth       The number of moves in each path. At least 1.
+     * @param   lists       The MoveList of each depth.
+     * @param   table       The table to look up and store counts of 2 or more moves in,
+     *                      or null for none.
+     * @return              The number of paths.
+     */
+    private static long perft (GameState state, int depth, MoveList[] lists, PerftTable table) {
+        MoveList list = lists[depth - 1];
+        if (depth > 1 && table != null) {
+            long count = table.get(state.getKey(), depth);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        MoveGenerator.generateLegalMoves(state, list);
+        if (depth == 1) {
+            return list.size();
+        }
+        long nodes = 0L;
+        for (int i = 0; i < list.size(); i++) {
+            state.makeMove(list.get(i));
+            nodes += perft(state, depth - 1, lists, table);
+            state.unmakeMove();
+        }
+        if (table != null) {
+            table.put(state.getKey(), depth, nodes);
+        }
+        return nodes;
+    }
+
+    /** A task counting the move paths that start with a given first move,
+     * on its own copy of the position.
+     */
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        /** The copy of the position before the first move. */
+        private final GameState state;
+
+        /** The packed first move. */
+        private final int move;
+
+        /** The number of moves left in each path after the first. */
+        private final int depth;
+
+        /** The shared table of counts, or null for none. */
+        private final PerftTable table;
+
+        RootTask (GameState state, int move, int depth, PerftTable table) {
+            this.state = state;
+            this.move = move;
+            this.depth = depth;
+            this.table = table;
+        }
+
+        @Override
+        protected Long compute () {
+            if (this.depth == 0) {
+                return 1L;
+            }
+            this.state.makeMove(this.move);
+            return perft(this.state, this.depth, newLists(this.depth), this.table);
+        }
+    }
+
+    /** Allocates the MoveLists for a count of a given depth.
+     * @param   depth       The number of moves in each path.
+     * @return              One empty MoveList per depth.
+     */
+    private static MoveList[] newLists (int depth) {
+        MoveList[] lists = new MoveList[Math.max(depth, 1)];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList();
+        }
+        return lists;
+    }
+
+    /** Returns the number of positions in the regression suite.
+     * @return              The number of suite positions.
+     */
+    public static int getSuiteSize () {
+        return SUITE_POSITIONS.length;
+    }
+
+    /** Returns the SFEN string of a suite position.
+     * @param   index       The number of the suite position.
+     * @return              The SFEN string.
+     */
+    public static String getSuitePosition (int index) {
+        return SUITE_POSITIONS[index];
+    }
+
+    /** Returns the deepest count known for a suite position.
+     * @param   index       The number of the suite position.
+     * @return              The greatest depth with a known count.
+     */
+    public static int getSuiteDepth (int index) {
+        return SUITE_COUNTS[index].length;
+    }
+
+    /** Returns the known count of a suite position at a given depth.
+     * @param   index       The number of the suite position.
+     * @param   depth       The number of moves in each path, from 1 to getSuiteDepth(index).
+     * @return              The number of paths.
+     */
+    public static long getSuiteCount (int index, int depth) {
+        return SUITE_COUNTS[index][depth - 1];
+    }
+}
@@ -0,0 +1,74 @@
+package mgci.jhdap.shogi;
+
+/** A Class holding a hash table of perft counts, shared by several threads without locks.
+ * Each entry is keyed by a position's Zobrist key and the depth it was counted to.
+ * <br><br>
+ * An entry is two longs: the data, and the key exclusive or'd with the data.
+ * Two threads writing the same entry at once may leave one's key with the other's data,
+ * but then the two halves no longer match, so the entry is simply not found.
+ * A count read back from the table is therefore always one that was stored for that key.
+ */
+public final class PerftTable {
+    /** The bits of the data that hold the depth. The rest hold the count. */
+    private static final int DEPTH_BITS = 8;
+
+    /** The entries, two longs each: the checked key and the data.
+     */
+    private final long[] entries;
+
+    /** The number of entries minus one. The number of entries is a power of two.
+     */
+    private final int mask;
+
+    /** The most entries a table can have, so that its array stays within bounds. */
+    private static final int MAX_ENTRIES = 1 << 29;
+
+    /** Constructs an empty table of about a given size.
+     * @param   megabytes   The most memory the table may take, in megabytes. At least 1.
+     */
+    public PerftTable (int megabytes) {
+        long bytes = (long) Math.max(megabytes, 1) << 20;
+        int size = (int) Long.highestOneBit(Math.min(bytes / 16, MAX_ENTRIES));
+        this.entries = new long[2*size];
+        this.mask = size - 1;
+    }
+
+    /** Looks up the count of a position at a given depth.
+     * @param   key         The Zobrist key of the position.
+     * @param   depth       The depth the position is counted to. Below 256.
+     * @return              The count, or -1 if the table does not hold it.
+     */
+    public long get (long key, int depth) {
+        int index = this.index(key, depth);
+        long data = this.entries[index + 1];
+        if ((this.entries[index] ^ data) == key && (data & (1 << DEPTH_BITS) - 1) == depth) {
+            return data >>> DEPTH_BITS;
+        }
+        return -1L;
+    }
+
+    /** Stores the count of a position at a given depth,
+     * replacing whatever the entry held before.
+     * @param   key         The Zobrist key of the position.
+     * @param   depth       The depth the position is counted to. Below 256.
+     * @param   count       The number of move paths. Below 2<sup>56</sup>.
+     */
+    public void put (long key, int depth, long count) {
+        int index = this.index(key, depth);
+        long data = count << DEPTH_BITS | depth;
+        this.entries[index] = key ^ data;
+        this.entries[index + 1] = data;
+    }
+
+    /** Finds the entry of a position at a given depth.
+     * The depth is mixed into the key, so that the counts of one position 
+     * at different depths do not keep replacing one another.
+     * @param   key         The Zobrist key of the position.
+     * @param   depth       The depth the position is counted to.
+     * @return              The index of the entry's first long.
+     */
+    private int index (long key, int depth) {
+        long hash = key ^ depth * 0x9E3779B97F4A7C15L;
+        return ((int) (hash ^ hash >>> 32) & this.mask) << 1;
+    }
+}
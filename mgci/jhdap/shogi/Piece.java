@@ -1,5 +1,7 @@
 package mgci.jhdap.shogi;
 
+import java.util.Arrays;
+
 /** A Class representing a piece in a game of shogi.
  * This class defines the basic requirements for a piece: 
  * <ul>
@@ -8,7 +10,9 @@ package mgci.jhdap.shogi;
  * <li> Is promoted.
  * <li> Is located on the board or on in the drop table.
  * </ul>
- * All pieces extend this class, and implement different rules of checking for valid moves and promotion.
+ * All pieces extend this class.
+ * How each type moves, promotes and drops is looked up in PieceRules,
+ * so a subclass only has to say which type it is and what it promotes to.
  * @author          Dmitry Andreevich Paramonov
  * @author          Jiayin Huang
  */
@@ -37,14 +41,21 @@ public abstract class Piece {
     protected int allegiance;
 
     /** Name of this piece.
-     * Implemented in each subclass individually.
+     * Set in each subclass through setType.
      * Used to find out the name of the piece and to differentiate them.
      */
     protected String pieceName;
 
+    /** This piece's type code.
+     * One of the constants in PieceType.
+     * Used by the GameState to find this piece's bitboard.
+     */
+    protected int type;
+
     /** This piece's 2 character representation.
      * Used for Text-based IO.
-     * Stored as an array with 1 value for each possible allegiance.
+     * Stored as an array with 1 value for each possible allegiance,
+     * shared by all pieces of the same type.
      */
     protected String[] doubleCharRepresentation;
     
@@ -56,9 +67,15 @@ public abstract class Piece {
     /** The path to the image representing this piece. 
      * Note that it will not reference any folders, 
      * for the possibility of alternate textures. 
+     * Shared by all pieces of the same type.
      */
     protected String[] imageNames;
 
+    /** The board this piece is on, which gives its promotion zone.
+     * The standard board, unless the piece was made by a GameState on another.
+     */
+    protected BoardGeometry geometry = BoardGeometry.STANDARD;
+
     /** Constructs a piece at a given x and y-value,
      * with the given allegiance.
      * @param   x           The x-value at which this piece is located.
@@ -71,22 +88,76 @@ public abstract class Piece {
         this.allegiance = allegiance;
         this.checkmatable = false;
     }
+
+    /** Sets this piece's type code,
+     * along with its name, characters and images, which are shared by every piece of the type.
+     * Called by each subclass's constructor.
+     * @param   type        The type code of this piece. One of the constants in PieceType.
+     */
+    protected void setType (int type) {
+        this.type = type;
+        this.pieceName = PieceType.getName(type);
+        this.doubleCharRepresentation = PieceType.getCharacters(type);
+        this.imageNames = PieceType.getImageNames(type);
+    }
+
+    /** Constructs a piece of a given type.
+     * Used where only a type code is known, such as when a piece is dropped from a drop table.
+     * @param   type        The type code of the piece. One of the constants in PieceType.
+     * @param   x           The x-value at which the piece is located.
+     * @param   y           The y-value at which the piece is located.
+     * @param   allegiance  The allegiance of the piece.
+     * @return              The new Piece, a CustomPiece for a custom type,
+     *                      or an EmptyPiece for an unknown type.
+     */
+    public static Piece create (int type, int x, int y, int allegiance) {
+        switch (type) {
+            case PieceType.PAWN:                    return new Pawn(x, y, allegiance);
+            case PieceType.LANCE:                   return new Lance(x, y, allegiance);
+            case PieceType.KNIGHT:                  return new Knight(x, y, allegiance);
+            case PieceType.SILVER_GENERAL:          return new SilverGeneral(x, y, allegiance);
+            case PieceType.BISHOP:                  return new Bishop(x, y, allegiance);
+            case PieceType.ROOK:                    return new Rook(x, y, allegiance);
+            case PieceType.GOLD_GENERAL:            return new GoldGeneral(x, y, allegiance);
+            case PieceType.KING:                    return new King(x, y, allegiance);
+            case PieceType.PROMOTED_PAWN:           return new PromotedPawn(x, y, allegiance);
+            case PieceType.PROMOTED_LANCE:          return new PromotedLance(x, y, allegiance);
+            case PieceType.PROMOTED_KNIGHT:         return new PromotedKnight(x, y, allegiance);
+            case PieceType.PROMOTED_SILVER_GENERAL: return new PromotedSilverGeneral(x, y, allegiance);
+            case PieceType.PROMOTED_BISHOP:         return new PromotedBishop(x, y, allegiance);
+            case PieceType.PROMOTED_ROOK:           return new PromotedRook(x, y, allegiance);
+            default:
+                if (PieceType.isDefined(type)) {
+                    return new CustomPiece(type, x, y, allegiance);
+                }
+                return new EmptyPiece(x, y);
+        }
+    }
     
     /** Generates all possible moves for this piece.
      * Used to see which tiles it can go to, 
      * and returns an array of all possible (x, y)-value pairs 
      * where this piece can move.
+     * The moves come from the MoveGenerator, 
+     * so only the tiles this piece can actually reach are tested.
      * @param   state       The current state of the game at the time of verification.
-     * @return              The possible locations where this piece can move.
+     * @return              The possible locations where this piece can move, 
+     *                      in an array the size of the board.
      */
     public boolean[][] generateMoves (GameState state) {
-        boolean[][] results = new boolean[9][9];
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                results[i][j] = this.isValidMove(state, i, j);
-            }
-        }
-        return results;
+        BoardGeometry geometry = state.getGeometry();
+        return this.generateMoves(state, new boolean[geometry.getFiles()][geometry.getRanks()]);
+    }
+
+    /** Generates all possible moves for this piece into a given array,
+     * which creates nothing when the array is reused.
+     * @param   state       The current state of the game at the time of verification.
+     * @param   results     An array at least the size of the board, which is cleared and then marked 
+     *                      with the locations where this piece can move.
+     * @return              The results array.
+     */
+    public boolean[][] generateMoves (GameState state, boolean[][] results) {
+        return toTiles(state.getGeometry(), this.findMoves(state), results);
     }
     
     /** Generates all possible drops for this piece.
@@ -94,73 +165,168 @@ public abstract class Piece {
      * and returns an array of all possible (x, y)-value pairs 
      * where this piece can drop.
      * @param   state       The current state of the game at the time of verification.
-     * @return              The possible locations where this piece can drop.
+     * @return              The possible locations where this piece can drop, 
+     *                      in an array the size of the board.
      */
     public boolean[][] generateDrops (GameState state) {
-        boolean[][] results = new boolean[9][9];
-        for (int i = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
-                results[i][j] = this.isValidDrop(state, i, j);
-            }
+        BoardGeometry geometry = state.getGeometry();
+        return this.generateDrops(state, new boolean[geometry.getFiles()][geometry.getRanks()]);
+    }
+
+    /** Generates all possible drops for this piece into a given array,
+     * which creates nothing when the array is reused.
+     * @param   state       The current state of the game at the time of verification.
+     * @param   results     An array at least the size of the board, which is cleared and then marked 
+     *                      with the locations where this piece can drop.
+     * @return              The results array.
+     */
+    public boolean[][] generateDrops (GameState state, boolean[][] results) {
+        MoveList moves = state.getMoveBuffer();
+        MoveGenerator.addDrops(state, this.allegiance, this.type, moves);
+        return toTiles(state.getGeometry(), moves, results);
+    }
+
+    /** Finds the legal moves of this piece,
+     * or its legal drops if it is in a drop table.
+     * @param   state       The current state of the game at the time of verification.
+     * @return              The GameState's move buffer, holding the moves.
+     */
+    private MoveList findMoves (GameState state) {
+        MoveList moves = state.getMoveBuffer();
+        if (this.x == -1 && this.y == -1) {
+            MoveGenerator.addDrops(state, this.allegiance, this.type, moves);
+        } else {
+            MoveGenerator.addPieceMoves(state, state.getGeometry().square(this.x, this.y), moves);
+        }
+        return moves;
+    }
+
+    /** Marks the target tiles of a list of packed moves.
+     * @param   geometry    The board the moves are made on.
+     * @param   moves       The packed moves.
+     * @param   results     An array at least the size of the board, which is cleared first.
+     * @return              The results array, where [x][y] is true 
+     *                      if any of the moves ends on (x, y).
+     */
+    private static boolean[][] toTiles (BoardGeometry geometry, MoveList moves, boolean[][] results) {
+        for (boolean[] column : results) {
+            Arrays.fill(column, false);
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            int to = PackedMove.getTo(moves.get(i));
+            results[geometry.x(to)][geometry.y(to)] = true;
         }
         return results;
     }
     
     /** Returns whether a move can be undertaken,
      * where move is either a move or a drop.
+     * The move is looked for among the legal moves from the MoveGenerator,
+     * which already accounts for check, pins and the drop rules.
      * @param   state       The current state of the game at the time of verification. 
      * @param   x           The x-value to which this piece is trying to move.
      * @param   y           The y-value to which this piece is trying to move.
      * @return              Whether this Piece can move to the given x and y values.
      */
     protected boolean isValidMove(GameState state, int x, int y) {
-        if (this.x == -1 && this.y == -1) {
-            int space = -1;
-            for (int i = 0; i < state.getCorrectDropTable(this.getAllegiance()).size(); i++) {
-                if (state.getCorrectDropTable(this.getAllegiance()).get(i) == this) {
-                    space = i;
-                }                
+        if (!state.getGeometry().contains(x, y)) {
+            return false;
+        }
+        MoveList moves = this.findMoves(state);
+        int target = state.getGeometry().square(x, y);
+        for (int i = 0; i < moves.size(); i++) {
+            if (PackedMove.getTo(moves.get(i)) == target) {
+                return true;
             }
-            return this.isValidDrop(state, x, y) && !state.willKingBeInCheckAfterDrop(x, y, this.getAllegiance(), space);
-        } else {
-            return this.isValidNonDropMove(state, x, y) && !state.willKingBeInCheckAfterMove(x, y, this);
         }
+        return false;
     }
     
     /** Returns whether a move can be undertaken by this Piece.
-     * Each piece has different rules, so this one is to be implemented individually.
+     * Pieces that need more than their steps and slides, such as the King, override this.
      * @param   state       The current state of the game at the time of verification. 
      * @param   x           The x-value to which this piece is trying to move.
      * @param   y           The y-value to which this piece is trying to move.
      * @return              Whether this Piece can move to the given x and y values.
      */
-    protected abstract boolean isValidNonDropMove (GameState state, int x, int y); 
+    protected boolean isValidNonDropMove (GameState state, int x, int y) {
+        return this.isUncheckedNonDropMove(state, x, y);
+    }
     
     /** Returns whether a move can be undertaken by this Piece without verifying for check.
      * Used in order to prevent King check feedback.
+     * The target must be one of this piece's steps or, if its type slides, one of its slides.
      * @param state         The current state of the game at the time of verification. 
      * @param   x           The x-value to which this piece is trying to move.
      * @param   y           The y-value to which this piece is trying to move.
      * @return              Whether this Piece can move to the given x and y values.
      */
     protected boolean isUncheckedNonDropMove(GameState state, int x, int y) {
-        return this.isValidNonDropMove(state, x, y);
+        return this.isValidStep(state, x, y)
+            || PieceRules.isSlider(this.type) && this.isValidSlide(state, x, y);
+    }
+    
+    /** Returns whether this Piece can step to a given tile,
+     * by looking the target up in this Piece's step attacks,
+     * or on a board too large for them, by matching it against its steps.
+     * Used by the pieces that only ever move a single step (or a knight's jump).
+     * Pieces in a drop table cannot step anywhere.
+     * @param   state       The current state of the game at the time of verification. 
+     * @param   x           The x-value to which this piece is trying to move.
+     * @param   y           The y-value to which this piece is trying to move.
+     * @return              Whether this Piece can step to the given x and y values.
+     */
+    protected boolean isValidStep(GameState state, int x, int y) {
+        BoardGeometry geometry = state.getGeometry();
+        if (this.x == -1 || !geometry.contains(x, y)) {
+            return false;
+        }
+        int from = geometry.square(this.x, this.y);
+        int to = geometry.square(x, y);
+        boolean step = geometry.getLayout() == BoardGeometry.MAILBOX
+                     ? Mailbox.canStep(geometry, this.allegiance, this.type, from, to)
+                     : Attacks.canStep(this.allegiance, this.type, from, to);
+        return step && state.getAllegianceAt(to) != this.allegiance;
+    }
+    
+    /** Returns whether this Piece can slide to a given tile,
+     * by looking the target up in this Piece's sliding attacks,
+     * or on a board too large for them, by walking the tiles on the way.
+     * The sliding attacks stop at the first occupied tile in each direction,
+     * so no tile on the way needs to be checked.
+     * Pieces in a drop table cannot slide anywhere.
+     * @param   state       The current state of the game at the time of verification. 
+     * @param   x           The x-value to which this piece is trying to move.
+     * @param   y           The y-value to which this piece is trying to move.
+     * @return              Whether this Piece can slide to the given x and y values.
+     */
+    protected boolean isValidSlide(GameState state, int x, int y) {
+        BoardGeometry geometry = state.getGeometry();
+        if (this.x == -1 || !geometry.contains(x, y)) {
+            return false;
+        }
+        int from = geometry.square(this.x, this.y);
+        int to = geometry.square(x, y);
+        boolean slide = geometry.getLayout() == BoardGeometry.MAILBOX
+                      ? Mailbox.canSlide(state, this.allegiance, this.type, from, to)
+                      : Attacks.canSlide(state, this.allegiance, this.type, from, to);
+        return slide && state.getAllegianceAt(to) != this.allegiance;
     }
     
     /** Returns whether a drop can be undertaken by this Piece.
+     * The tile must be empty, the drop must not leave this piece's King in check,
+     * and it must keep to the drop rules of this piece's type.
+     * The drop rules come last, as a drop that may not mate is made on the board to test it.
      * @param   state       The current state of the game at the time of verification. 
      * @param   x           The x-value to which this piece is trying to drop on.
      * @param   y           The y-value to which this piece is trying to drop on.
      * @return              Whether this Piece can be dropped on the given x and y values.
      */
     protected boolean isValidDrop(GameState state, int x, int y) {
-        int space = -1;
-        for (int i = 0; i < state.getCorrectDropTable(this.getAllegiance()).size(); i++) {
-            if (state.getCorrectDropTable(this.getAllegiance()).get(i) == this) {
-                space = i;
-            }
-        }        
-        return state.getPieceAt(x, y) instanceof EmptyPiece && !state.willKingBeInCheckAfterDrop(x, y, this.getAllegiance(), space);
+        int square = state.getGeometry().square(x, y);
+        return state.getTypeAt(square) == PieceType.EMPTY 
+            && !state.willKingBeInCheckAfterDrop(x, y, this.allegiance, this.type)
+            && MoveGenerator.isLegalDrop(state, this.allegiance, this.type, square);
     }
     
     /** Moves the piece, and captures any pieces at the target tile.
@@ -176,11 +342,11 @@ public abstract class Piece {
      */
     protected GameState move (GameState state, int x, int y) {
         if (this.isValidMove(state, x, y)) {
-            if (!(state.getPieceAt(x, y) instanceof EmptyPiece)) {
+            if (state.getTypeAt(state.getGeometry().square(x, y)) != PieceType.EMPTY) {
                 state.addPieceToDropTable(this.allegiance, state.getPieceAt(x, y));
             } 
             state.setPieceAt(x, y, this);
-            state.setPieceAt(this.x, this.y, new EmptyPiece(this.x, this.y));
+            state.removePieceAt(this.x, this.y);
             this.y = y;
             this.x = x;
         }
@@ -203,7 +369,7 @@ public abstract class Piece {
      * @return              Whether this piece must promote after it gets to the target tile.
      */
     protected boolean mustPromoteIfMoved(GameState state, int x, int y) {
-        return false;
+        return PieceRules.mustPromote(state.getGeometry(), this.type, this.allegiance, y);
     }
     
     /** Returns the piece this piece is promoted to.
@@ -231,6 +397,13 @@ public abstract class Piece {
         this.y = y;
     }
 
+    /** Sets the board this piece is on.
+     * @param   geometry    The board, which gives the piece its promotion zone.
+     */
+    protected void setGeometry (BoardGeometry geometry) {
+        this.geometry = geometry;
+    }
+
     /** Returns this piece's x-value.
      * @return              This piece's x location on the board.
      */
@@ -296,7 +469,43 @@ public abstract class Piece {
         return this.doubleCharRepresentation[this.allegiance+1];
     }
 
+    /** Returns this piece's type code.
+     * @return              One of the type codes in PieceType.
+     */
+    public int getType () {
+        return type;
+    }
+
     public boolean getCheckmatable() {
         return this.checkmatable;
     }
+
+    /** Returns whether this piece is the same as another object.
+     * Pieces are made by the GameState whenever they are asked for,
+     * so two Pieces are the same when they are of the same type and allegiance, 
+     * on the same tile, or both in a drop table.
+     * @param   other       The object to compare with.
+     * @return              Whether the other object is the same piece.
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (this == other) {
+            return true;
+        } else if (other == null || other.getClass() != this.getClass()) {
+            return false;
+        }
+        Piece piece = (Piece) other;
+        return this.type == piece.type
+            && this.allegiance == piece.allegiance
+            && this.x == piece.x
+            && this.y == piece.y;
+    }
+
+    /** Returns a hash code for this piece, from its type, allegiance and location.
+     * @return              The hash code of this piece.
+     */
+    @Override
+    public int hashCode () {
+        return ((PieceType.code(this.allegiance, this.type) * 9 + this.y + 1) * 10) + this.x + 1;
+    }
 }
@@ -0,0 +1,345 @@
+package mgci.jhdap.shogi;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A Class that reads custom piece definitions from a file,
+ * and compiles them into the same tables as the standard pieces.
+ * Once loaded, a custom piece is looked up by the MoveGenerator, Attacks and GameState
+ * exactly as a standard piece is, with its own type code and bitboards.
+ * <br><br>
+ * Each piece starts with a "piece" line giving its name, followed by one line per rule.
+ * Anything after a '#' is a comment. For example:
+ * <pre>
+ * piece Shining Gundam
+ *     letter      D
+ *     slides      forward:3 forward-diagonal:3 sideways:2
+ *     promotes    G Gundam
+ *
+ * piece G Gundam
+ *     slides      forward sideways forward-diagonal back:3 back-diagonal:3
+ * </pre>
+ * The rules are:
+ * <ul>
+ * <li> letter: The SFEN letter of the piece. Every piece needs one,
+ *      except those another piece promotes to, which are written with a '+'.
+ * <li> image: The image of the piece, without the "d" or "u" of its allegiance.
+ *      By default, its name without spaces or punctuation, as a PNG file.
+ * <li> steps: The tiles the piece steps or jumps to, as x,y offsets with forward being positive y.
+ *      Each must be listed with its mirror across the piece's file, such as 1,2 with -1,2,
+ *      as a piece moves the same to its left as to its right. A long list may go on another "steps" line.
+ *      Steps are never blocked, so a step of more than one tile is a jump, as the knight's is.
+ * <li> slides: The directions the piece slides in, out of forward, back, sideways,
+ *      forward-diagonal and back-diagonal, each with an optional :range. By default, to the edge of the board.
+ * <li> promotes: The name of the piece it promotes to, which must be in the same file,
+ *      and may not promote again.
+ * <li> last-ranks: How many ranks at the far end of the board the piece must promote on,
+ *      and may not be dropped on, as the pawn, lance and knight do.
+ * <li> drop: Limits on dropping the piece: one-per-file and no-drop-mate, as for the pawn.
+ * </ul>
+ * A file is checked in full before any piece in it is defined,
+ * and a piece may only be defined once.
+ */
+public final class PieceLoader {
+    /** The names of the slide directions, indexed by PieceRules slide direction.
+     */
+    private static final String[] DIRECTION_NAMES = {"forward", "back", "sideways", "forward-diagonal", "back-diagonal"};
+
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private PieceLoader () {
+    }
+
+    /** Reads and defines the custom pieces of a file.
+     * @param   file        The file of piece definitions.
+     * @return              The type codes given to the pieces, in the order they are defined.
+     * @throws  IOException If the file cannot be read.
+     * @throws  IllegalArgumentException
+     *                      If a definition is not valid, giving its line.
+     *                      No piece of the file is defined.
+     */
+    public static int[] load (File file) throws IOException {
+        Reader reader = new FileReader(file);
+        try {
+            return load(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Reads and defines the custom pieces of a stream of definitions.
+     * @param   reader      The definitions.
+     * @return              The type codes given to the pieces, in the order they are defined.
+     * @throws  IOException If the definitions cannot be read.
+     * @throws  IllegalArgumentException
+     *                      If a definition is not valid, giving its line.
+     *                      No piece of the stream is defined.
+     */
+    public static int[] load (Reader reader) throws IOException {
+        List<Definition> definitions = new ArrayList<Definition>();
+        BufferedReader lines = new BufferedReader(reader);
+        int number = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            number++;
+            int comment = line.indexOf('#');
+            line = (comment == -1 ? line : line.substring(0, comment)).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+", 2);
+            if (fields.length < 2) {
+                throw error(number, "\"" + fields[0] + "\" needs a value");
+            }
+            if (fields[0].equals("piece")) {
+                definitions.add(new Definition(fields[1], number));
+            } else if (definitions.isEmpty()) {
+                throw error(number, "a rule must follow a \"piece\" line");
+            } else {
+                definitions.get(definitions.size() - 1).read(fields[0], fields[1], number);
+            }
+        }
+
+        /* Every piece is given its type code first,
+         * so that a piece may promote to one defined after it.
+         */
+        Map<String, Definition> named = new HashMap<String, Definition>();
+        int type = PieceType.FIRST_CUSTOM;
+        for (Definition definition : definitions) {
+            while (type < PieceType.COUNT && PieceType.isDefined(type)) {
+                type++;
+            }
+            if (type == PieceType.COUNT) {
+                throw error(definition.line, "no type codes are left for \"" + definition.name + "\"");
+            }
+            for (int i = PieceType.PAWN; i < PieceType.COUNT; i++) {
+                if (definition.name.equalsIgnoreCase(PieceType.getName(i))) {
+                    throw error(definition.line, "\"" + definition.name + "\" is already defined");
+                }
+            }
+            if (named.put(definition.name.toLowerCase(), definition) != null) {
+                throw error(definition.line, "\"" + definition.name + "\" is defined twice");
+            }
+            definition.type = type++;
+        }
+
+        for (Definition definition : definitions) {
+            definition.promotion = definition.type;
+            if (definition.promotesTo != null) {
+                Definition target = named.get(definition.promotesTo.toLowerCase());
+                if (target == null) {
+                    throw error(definition.line, "\"" + definition.promotesTo + "\" is not defined in the same file");
+                } else if (target.promotedFrom != null || target == definition) {
+                    throw error(definition.line, "\"" + target.name + "\" is already the promotion of another piece");
+                }
+                definition.promotion = target.type;
+                target.promotedFrom = definition;
+            } else if (definition.lastRanks > 0) {
+                throw error(definition.line, "\"" + definition.name + "\" must promote to have last ranks");
+            }
+        }
+
+        for (Definition definition : definitions) {
+            int step = definition.findUnmirroredStep();
+            if (step != -1) {
+                int x = definition.steps[step];
+                int y = definition.steps[step+1];
+                throw error(definition.stepLines[step/2], "the step " + x + "," + y + " of \"" + definition.name
+                                                          + "\" needs its mirror " + -x + "," + y);
+            }
+        }
+
+        StringBuilder letters = new StringBuilder();
+        for (Definition definition : definitions) {
+            if (definition.promotedFrom != null) {
+                if (definition.promotesTo != null) {
+                    throw error(definition.line, "\"" + definition.name + "\" is a promoted piece, and may not promote again");
+                } else if (definition.letter != ' ') {
+                    throw error(definition.line, "\"" + definition.name + "\" is a promoted piece, and has no letter of its own");
+                }
+            } else if (definition.letter == ' ') {
+                throw error(definition.line, "\"" + definition.name + "\" needs a letter");
+            } else if (PieceType.typeOfLetter(definition.letter) != -1 || letters.indexOf("" + definition.letter) != -1) {
+                throw error(definition.line, "the letter " + definition.letter + " is already used");
+            }
+            letters.append(definition.letter);
+        }
+
+        int[] types = new int[definitions.size()];
+        for (int i = 0; i < types.length; i++) {
+            Definition definition = definitions.get(i);
+            char shown = definition.promotedFrom == null ? definition.letter : definition.promotedFrom.letter;
+            PieceType.define(definition.type, definition.name, definition.letter, shown, definition.image);
+            types[i] = definition.type;
+        }
+        for (Definition definition : definitions) {
+            PieceRules.define(definition.type, definition.steps, definition.slides,
+                              definition.promotion, definition.lastRanks, definition.drops);
+        }
+        return types;
+    }
+
+    /** Makes the exception thrown for a definition that is not valid.
+     * @param   line        The number of the line at fault, counting from 1.
+     * @param   message     What is wrong with it.
+     * @return              The exception.
+     */
+    private static IllegalArgumentException error (int line, String message) {
+        return new IllegalArgumentException("Line " + line + ": " + message);
+    }
+
+    /** The rules of one piece, as read from its lines of the file.
+     */
+    private static final class Definition {
+        /** The name of the piece. */
+        private final String name;
+
+        /** The line of its "piece" line. */
+        private final int line;
+
+        /** Its SFEN letter, or a space if it has none. */
+        private char letter = ' ';
+
+        /** The name of its image, without the prefix of its allegiance. */
+        private String image;
+
+        /** Pairs of x and y offsets of its steps. */
+        private int[] steps = {};
+
+        /** The line each pair of steps is on. */
+        private int[] stepLines = {};
+
+        /** The range of its slide in each direction, or 0. */
+        private int[] slides = new int[PieceRules.DIRECTIONS];
+
+        /** The name of the piece it promotes to, or null. */
+        private String promotesTo;
+
+        /** The number of ranks at the far end of the board it must promote on. */
+        private int lastRanks;
+
+        /** Its drop flags. */
+        private int drops;
+
+        /** The type code it is given. */
+        private int type;
+
+        /** The type code it promotes to, or its own. */
+        private int promotion;
+
+        /** The piece that promotes to it, or null. */
+        private Definition promotedFrom;
+
+        Definition (String name, int line) {
+            this.name = name;
+            this.line = line;
+            this.image = name.replaceAll("[^A-Za-z0-9]", "") + ".png";
+        }
+
+        /** Reads one rule of the piece.
+         * @param   key         The name of the rule.
+         * @param   value       The rest of its line.
+         * @param   number      The number of its line.
+         */
+        void read (String key, String value, int number) {
+            String[] words = value.split("[\\s,]+");
+            try {
+                if (key.equals("letter")) {
+                    if (!value.matches("[A-Za-z]")) {
+                        throw error(number, "a letter must be a single letter from A to Z");
+                    }
+                    this.letter = Character.toUpperCase(value.charAt(0));
+                } else if (key.equals("image")) {
+                    this.image = value;
+                } else if (key.equals("steps")) {
+                    if (words.length % 2 != 0) {
+                        throw error(number, "steps must be pairs of x,y offsets");
+                    }
+                    int start = this.steps.length;
+                    this.steps = Arrays.copyOf(this.steps, start + words.length);
+                    this.stepLines = Arrays.copyOf(this.stepLines, this.steps.length / 2);
+                    for (int i = 0; i < words.length; i += 2) {
+                        int x = Integer.parseInt(words[i]);
+                        int y = Integer.parseInt(words[i+1]);
+                        if (Math.abs(x) > 8 || Math.abs(y) > 8 || x == 0 && y == 0) {
+                            throw error(number, "a step must move from 1 to 8 tiles each way");
+                        }
+                        this.steps[start + i] = x;
+                        this.steps[start + i + 1] = y;
+                        this.stepLines[(start + i) / 2] = number;
+                    }
+                } else if (key.equals("slides")) {
+                    for (String word : words) {
+                        String[] parts = word.split(":");
+                        int direction = indexOf(DIRECTION_NAMES, parts[0]);
+                        int range = parts.length > 1 ? Integer.parseInt(parts[1]) : PieceRules.UNLIMITED;
+                        if (direction == -1 || parts.length > 2) {
+                            throw error(number, "unknown slide \"" + word + "\"");
+                        } else if (range < 1 || range > PieceRules.UNLIMITED) {
+                            throw error(number, "a slide's range must be from 1 to " + PieceRules.UNLIMITED);
+                        }
+                        this.slides[direction] = range;
+                    }
+                } else if (key.equals("promotes")) {
+                    this.promotesTo = value;
+                } else if (key.equals("last-ranks")) {
+                    this.lastRanks = Integer.parseInt(value);
+                    if (this.lastRanks < 0 || this.lastRanks > PieceRules.PROMOTION_RANKS) {
+                        throw error(number, "last ranks must be from 0 to " + PieceRules.PROMOTION_RANKS);
+                    }
+                } else if (key.equals("drop")) {
+                    for (String word : words) {
+                        if (word.equals("one-per-file")) {
+                            this.drops |= PieceRules.ONE_PER_FILE;
+                        } else if (word.equals("no-drop-mate")) {
+                            this.drops |= PieceRules.NO_DROP_MATE;
+                        } else {
+                            throw error(number, "unknown drop rule \"" + word + "\"");
+                        }
+                    }
+                } else {
+                    throw error(number, "unknown rule \"" + key + "\"");
+                }
+            } catch (NumberFormatException e) {
+                throw error(number, "not a number in \"" + value + "\"");
+            }
+        }
+
+        /** Finds a step whose mirror across the piece's file is not also one of its steps.
+         * @return              The index of the step's x offset, or -1 if every step has its mirror.
+         */
+        int findUnmirroredStep () {
+            for (int i = 0; i < this.steps.length; i += 2) {
+                boolean found = false;
+                for (int j = 0; j < this.steps.length && !found; j += 2) {
+                    found = this.steps[j] == -this.steps[i] && this.steps[j+1] == this.steps[i+1];
+                }
+                if (!found) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Finds a word in an array of words.
+         * @param   words       The words.
+         * @param   word        The word to look for.
+         * @return              Its index, or -1 if it is not there.
+         */
+        private static int indexOf (String[] words, String word) {
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].equals(word)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
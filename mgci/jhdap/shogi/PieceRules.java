@@ -0,0 +1,302 @@
+package mgci.jhdap.shogi;
+
+import java.util.Arrays;
+
+/** A Class holding the rules of every piece type as data.
+ * How a piece steps and slides, what it promotes to,
+ * which ranks it may not stand on and what limits its drops
+ * are all looked up in tables indexed by type code,
+ * so the MoveGenerator, Attacks and Piece follow the same rules
+ * through a single code path instead of one method per Piece subclass.
+ * <br><br>
+ * Custom pieces are added to the same tables by define, as PieceLoader reads them from a file,
+ * so they are looked up exactly as fast as the standard pieces.
+ * <br><br>
+ * The tables describe a piece with an allegiance of 1, moving up the board.
+ * Forward offsets are negated, and ranks counted from the other edge,
+ * for pieces with an allegiance of -1.
+ */
+public final class PieceRules {
+    /** A slide direction: forward along the piece's file. */
+    public static final int FORWARD = 0;
+    /** A slide direction: back along the piece's file. */
+    public static final int BACK = 1;
+    /** A slide direction: both ways along the piece's rank. */
+    public static final int SIDEWAYS = 2;
+    /** A slide direction: both diagonals leading forward. */
+    public static final int FORWARD_DIAGONAL = 3;
+    /** A slide direction: both diagonals leading back. */
+    public static final int BACK_DIAGONAL = 4;
+    /** The number of slide directions. */
+    public static final int DIRECTIONS = 5;
+
+    /** The x and y offset of one tile in each slide direction,
+     * indexed by direction, for a piece with an allegiance of 1.
+     * The sideways and diagonal directions also slide the mirrored way, with x negated.
+     */
+    private static final int[][] DIRECTION_OFFSETS = {{0, 1}, {0, -1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /** A slide range with no limit but the edge of the board, even the largest one. */
+    public static final int UNLIMITED = BoardGeometry.MAX_SIZE - 1;
+
+    /** A drop flag: the piece may not be dropped on a file
+     * that already holds an unpromoted piece of the same type and allegiance (nifu). */
+    public static final int ONE_PER_FILE = 1;
+    /** A drop flag: the piece may not be dropped to give checkmate (uchifuzume). */
+    public static final int NO_DROP_MATE = 2;
+
+    /** The number of ranks at the far end of the standard board that make up the promotion zone.
+     * Other boards give their own in BoardGeometry.
+     */
+    public static final int PROMOTION_RANKS = 3;
+
+    /** The tiles each piece type can step to,
+     * as pairs of x and y offsets.
+     */
+    private static final int[][] STEPS = new int[PieceType.COUNT][];
+
+    /** The number of tiles each piece type slides in each direction, or 0,
+     * indexed by type code and then by slide direction.
+     */
+    private static final int[][] SLIDES = new int[PieceType.COUNT][DIRECTIONS];
+
+    /** Whether each piece type slides in any direction, indexed by type code.
+     */
+    private static final boolean[] SLIDER = new boolean[PieceType.COUNT];
+
+    /** The type codes of every piece type that slides, in order.
+     */
+    private static int[] sliders = {};
+
+    /** The type each piece type promotes to, or the same type if it does not promote.
+     */
+    private static final int[] PROMOTIONS = new int[PieceType.COUNT];
+
+    /** The type each piece type turns back into when it is captured,
+     * which is the type it promoted from, or the same type if it is not a promoted piece.
+     */
+    private static final int[] DEMOTIONS = new int[PieceType.COUNT];
+
+    /** The number of ranks at the far end of the board each piece type may not stand on,
+     * as it would have no move left there.
+     * A piece moving onto them must promote, and may not be dropped on them.
+     */
+    private static final int[] LAST_RANKS = new int[PieceType.COUNT];
+
+    /** The limits on dropping each piece type, as a set of drop flags.
+     */
+    private static final int[] DROPS = new int[PieceType.COUNT];
+
+    /** The greatest type code in use, so that loops over every type can stop there.
+     * Custom types raise it as they are defined.
+     */
+    private static int lastType = PieceType.PROMOTED_ROOK;
+
+    static {
+        int[] none = {};
+        int[] gold = {-1, 1, 0, 1, 1, 1, -1, 0, 1, 0, 0, -1};
+        int[] diagonals = {-1, 1, 1, 1, -1, -1, 1, -1};
+        int[] orthogonals = {0, 1, -1, 0, 1, 0, 0, -1};
+        for (int i = 0; i < PieceType.COUNT; i++) {
+            STEPS[i] = none;
+            PROMOTIONS[i] = i;
+            DEMOTIONS[i] = i;
+        }
+        STEPS[PieceType.PAWN] = new int[]{0, 1};
+        STEPS[PieceType.KNIGHT] = new int[]{-1, 2, 1, 2};
+        STEPS[PieceType.SILVER_GENERAL] = new int[]{-1, 1, 0, 1, 1, 1, -1, -1, 1, -1};
+        STEPS[PieceType.GOLD_GENERAL] = gold;
+        STEPS[PieceType.KING] = new int[]{-1, 1, 0, 1, 1, 1, -1, 0, 1, 0, -1, -1, 0, -1, 1, -1};
+        STEPS[PieceType.PROMOTED_PAWN] = gold;
+        STEPS[PieceType.PROMOTED_LANCE] = gold;
+        STEPS[PieceType.PROMOTED_KNIGHT] = gold;
+        STEPS[PieceType.PROMOTED_SILVER_GENERAL] = gold;
+        STEPS[PieceType.PROMOTED_BISHOP] = orthogonals;
+        STEPS[PieceType.PROMOTED_ROOK] = diagonals;
+
+        SLIDES[PieceType.LANCE][FORWARD] = UNLIMITED;
+        for (int type : new int[]{PieceType.BISHOP, PieceType.PROMOTED_BISHOP}) {
+            SLIDES[type][FORWARD_DIAGONAL] = UNLIMITED;
+            SLIDES[type][BACK_DIAGONAL] = UNLIMITED;
+        }
+        for (int type : new int[]{PieceType.ROOK, PieceType.PROMOTED_ROOK}) {
+            SLIDES[type][FORWARD] = UNLIMITED;
+            SLIDES[type][BACK] = UNLIMITED;
+            SLIDES[type][SIDEWAYS] = UNLIMITED;
+        }
+
+        for (int type = PieceType.PAWN; type <= PieceType.ROOK; type++) {
+            PROMOTIONS[type] = type + (PieceType.PROMOTED_PAWN - PieceType.PAWN);
+            DEMOTIONS[PROMOTIONS[type]] = type;
+        }
+
+        LAST_RANKS[PieceType.PAWN] = 1;
+        LAST_RANKS[PieceType.LANCE] = 1;
+        LAST_RANKS[PieceType.KNIGHT] = 2;
+
+        DROPS[PieceType.PAWN] = ONE_PER_FILE | NO_DROP_MATE;
+
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            updateSlider(type);
+        }
+    }
+
+    /** This class only holds tables, and is never instantiated.
+     */
+    private PieceRules () {
+    }
+
+    /** Returns the step offsets of a piece type.
+     * The array is shared, and must not be changed.
+     * @param   type        The type code of the piece.
+     * @return              Pairs of x and y offsets, for a piece with an allegiance of 1.
+     */
+    static int[] getSteps (int type) {
+        return STEPS[type];
+    }
+
+    /** Returns how far a piece type slides in a given direction.
+     * A slide stops at the first piece in its way, whatever its range.
+     * @param   type        The type code of the piece.
+     * @param   direction   One of the slide directions.
+     * @return              The most tiles it slides, UNLIMITED, or 0 if it does not slide that way.
+     */
+    public static int getSlide (int type, int direction) {
+        return SLIDES[type][direction];
+    }
+
+    /** Returns the x and y offset of one tile in a slide direction.
+     * The array is shared, and must not be changed.
+     * @param   direction   One of the slide directions.
+     * @return              The offsets, for a piece with an allegiance of 1.
+     *                      A sideways or diagonal slide also goes the mirrored way.
+     */
+    static int[] getDirectionOffsets (int direction) {
+        return DIRECTION_OFFSETS[direction];
+    }
+
+    /** Returns whether a piece type slides in any direction.
+     * @param   type        The type code of the piece.
+     * @return              Whether it has any slides.
+     */
+    public static boolean isSlider (int type) {
+        return SLIDER[type];
+    }
+
+    /** Returns the type codes of every piece type that slides.
+     * The array is shared, and must not be changed.
+     * @return              The type codes of the sliders, in order.
+     */
+    static int[] getSliders () {
+        return sliders;
+    }
+
+    /** Returns the greatest type code in use,
+     * so that a loop over every type need go no further.
+     * @return              PieceType.PROMOTED_ROOK, or the last custom type defined.
+     */
+    public static int getLastType () {
+        return lastType;
+    }
+
+    /** Returns the type a piece type promotes to.
+     * @param   type        The type code of the piece.
+     * @return              The promoted type, or the same type if it does not promote.
+     */
+    public static int getPromotion (int type) {
+        return PROMOTIONS[type];
+    }
+
+    /** Returns the type a piece type turns back into when it is captured.
+     * @param   type        The type code of the piece.
+     * @return              The type it promoted from,
+     *                      or the same type if it is not a promoted piece.
+     */
+    public static int getDemotion (int type) {
+        return DEMOTIONS[type];
+    }
+
+    /** Returns whether a piece type has a given limit on its drops.
+     * @param   type        The type code of the piece.
+     * @param   rule        One of the drop flags.
+     * @return              Whether the limit applies to the piece.
+     */
+    public static boolean hasDropRule (int type, int rule) {
+        return (DROPS[type] & rule) != 0;
+    }
+
+    /** Returns whether a piece may promote after moving to a given rank,
+     * which is whenever it can promote at all and the rank is in the promotion zone.
+     * @param   geometry    The board the piece is on.
+     * @param   type        The type code of the piece.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   y           The y-value the piece moves to.
+     * @return              Whether the piece can promote there.
+     */
+    public static boolean canPromote (BoardGeometry geometry, int type, int allegiance, int y) {
+        return PROMOTIONS[type] != type && geometry.ranksFromEnd(allegiance, y) < geometry.getPromotionRanks();
+    }
+
+    /** Returns whether a piece must promote after moving to a given rank,
+     * which is also whether it may not be dropped there.
+     * A piece is never made to promote outside the promotion zone,
+     * so on a board with a shallow zone, such as minishogi's,
+     * a knight only has to promote on the last rank.
+     * @param   geometry    The board the piece is on.
+     * @param   type        The type code of the piece.
+     * @param   allegiance  The allegiance of the piece. Either 1 or -1.
+     * @param   y           The y-value the piece moves to.
+     * @return              Whether the piece would have no moves left there.
+     */
+    public static boolean mustPromote (BoardGeometry geometry, int type, int allegiance, int y) {
+        return geometry.ranksFromEnd(allegiance, y) < Math.min(LAST_RANKS[type], geometry.getPromotionRanks());
+    }
+
+    /** Sets the rules of a custom piece type, works out its attacks in Attacks and values it in Evaluation.
+     * Every step must come with its mirror across the piece's file,
+     * as every piece must move the same to its left as to its right:
+     * GameState.getAttackers finds the attackers of a tile from the tile itself.
+     * PieceLoader rejects a piece whose steps are not.
+     * Each custom type is only defined once, while no search is running,
+     * as the tables are shared by every GameState and thread.
+     * @param   type        The custom type code, from PieceType.FIRST_CUSTOM up.
+     * @param   steps       Pairs of x and y offsets, for a piece with an allegiance of 1.
+     * @param   slides      The range of the type's slide in each direction, or 0.
+     * @param   promotion   The type it promotes to, or the same type if it does not promote.
+     * @param   lastRanks   The number of ranks at the far end of the board it may not stand on.
+     * @param   drops       The limits on dropping it, as a set of drop flags.
+     */
+    static void define (int type, int[] steps, int[] slides, int promotion, int lastRanks, int drops) {
+        STEPS[type] = Arrays.copyOf(steps, steps.length);
+        SLIDES[type] = Arrays.copyOf(slides, DIRECTIONS);
+        PROMOTIONS[type] = promotion;
+        if (promotion != type) {
+            DEMOTIONS[promotion] = type;
+        }
+        LAST_RANKS[type] = lastRanks;
+        DROPS[type] = drops;
+        lastType = Math.max(lastType, type);
+        updateSlider(type);
+        Attacks.compile(type);
+        Evaluation.define(type);
+    }
+
+    /** Brings the slider flag and list up to date for a type whose slides have been set.
+     * @param   type        The type code of the piece.
+     */
+    private static void updateSlider (int type) {
+        boolean slider = false;
+        for (int range : SLIDES[type]) {
+            slider |= range > 0;
+        }
+        SLIDER[type] = slider;
+        int count = 0;
+        int[] list = new int[PieceType.COUNT];
+        for (int i = 0; i < PieceType.COUNT; i++) {
+            if (SLIDER[i]) {
+                list[count++] = i;
+            }
+        }
+        sliders = Arrays.copyOf(list, count);
+    }
+}
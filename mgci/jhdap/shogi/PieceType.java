@@ -0,0 +1,230 @@
+package mgci.jhdap.shogi;
+
+import java.util.Arrays;
+
+/** A Class holding the numeric type codes of the shogi pieces.
+ * The GameState uses these codes, rather than Piece objects,
+ * to index its bitboards, so that a piece's type can be found
+ * without an instanceof check or a virtual call.
+ * <br><br>
+ * Unpromoted types are numbered 1 to 8,
+ * and each promoted type is its unpromoted type plus 8.
+ * The first 7 types are the ones that can be held in a drop table.
+ * Types from FIRST_CUSTOM on are left free for custom pieces,
+ * which are given their names and letters by define when they are loaded.
+ * <br><br>
+ * A piece on the board is stored by the GameState as a single piece code,
+ * and everything else about it (its name, characters and images)
+ * is kept here once per type, rather than once per Piece object.
+ */
+public final class PieceType {
+    /** The type code of an empty tile. */
+    public static final int EMPTY = 0;
+    /** The type code of a pawn. */
+    public static final int PAWN = 1;
+    /** The type code of a lance. */
+    public static final int LANCE = 2;
+    /** The type code of a knight. */
+    public static final int KNIGHT = 3;
+    /** The type code of a silver general. */
+    public static final int SILVER_GENERAL = 4;
+    /** The type code of a bishop. */
+    public static final int BISHOP = 5;
+    /** The type code of a rook. */
+    public static final int ROOK = 6;
+    /** The type code of a gold general. */
+    public static final int GOLD_GENERAL = 7;
+    /** The type code of a king. */
+    public static final int KING = 8;
+    /** The type code of a promoted pawn. */
+    public static final int PROMOTED_PAWN = 9;
+    /** The type code of a promoted lance. */
+    public static final int PROMOTED_LANCE = 10;
+    /** The type code of a promoted knight. */
+    public static final int PROMOTED_KNIGHT = 11;
+    /** The type code of a promoted silver general. */
+    public static final int PROMOTED_SILVER_GENERAL = 12;
+    /** The type code of a promoted bishop. */
+    public static final int PROMOTED_BISHOP = 13;
+    /** The type code of a promoted rook. */
+    public static final int PROMOTED_ROOK = 14;
+
+    /** The type code of the first custom piece. */
+    public static final int FIRST_CUSTOM = 16;
+
+    /** The number of type slots reserved for each allegiance.
+     * Bitboards are indexed by (allegiance+1)*COUNT + type.
+     * Every piece code still fits in a byte, and every type in the 5 bits PackedMove keeps for it.
+     */
+    public static final int COUNT = 32;
+
+    /** The name of each type, indexed by type code,
+     * or null for a custom type that has not been defined.
+     * Shared by every Piece of that type.
+     */
+    private static final String[] NAMES = Arrays.copyOf(new String[]{
+        "Empty Tile", "Pawn", "Lance", "Knight", "Silver General", "Bishop", "Rook", "Gold General", "King",
+        "Promoted Pawn", "Promoted Lance", "Promoted Knight", "Promoted Silver General", "Promoted Bishop", "Promoted Rook",
+    }, COUNT);
+
+    /** The SFEN letter of each type, indexed by type code.
+     * Promoted types have none, and are written as a '+' before the letter of the type they promote from.
+     */
+    private static final char[] LETTERS = new char[COUNT];
+
+    static {
+        Arrays.fill(LETTERS, ' ');
+        " PLNSBRGK".getChars(0, KING + 1, LETTERS, 0);
+    }
+
+    /** The 2 character representation of each type, indexed by type code and then by allegiance plus 1.
+     */
+    private static final String[][] CHARACTERS = Arrays.copyOf(new String[][]{
+        {". ", ". ", ". "},
+        {"p ", "P#", "P "}, {"l ", "L#", "L "}, {"n ", "N#", "N "}, {"s ", "S#", "S "},
+        {"b ", "B#", "B "}, {"r ", "R#", "R "}, {"g ", "G#", "G "}, {"k ", "K#", "K "},
+        {"p+", "P*", "P+"}, {"l+", "L*", "L+"}, {"n+", "N*", "N+"}, {"s+", "S*", "S+"},
+        {"b+", "B*", "B+"}, {"r+", "R*", "R+"},
+    }, COUNT);
+
+    /** The image file of each type, indexed by type code and then by allegiance plus 1.
+     */
+    private static final String[][] IMAGE_NAMES = Arrays.copyOf(new String[][]{
+        {"dEmpty.png", "nEmpty.png", "uEmpty.png"},
+        {"dPawn.png", "nPawn.png", "uPawn.png"},
+        {"dLance.png", "nLance.png", "uLance.png"},
+        {"dKnight.png", "nKnight.png", "uKnight.png"},
+        {"dSilver.png", "nSilver.png", "uSilver.png"},
+        {"dBishop.png", "nBishop.png", "uBishop.png"},
+        {"dRook.png", "nRook.png", "uRook.png"},
+        {"dGold.png", "nGold.png", "uGold.png"},
+        {"dKing.png", "nKing.png", "uKing.png"},
+        {"dPPawn.png", "nPPawn.png", "uPpawn.png"},
+        {"dPLance.png", "nPLance.png", "uPLance.png"},
+        {"dPKnight.png", "nPKnight.png", "uPKnight.png"},
+        {"dPSilver.png", "nPSilver.png", "uPSilver.png"},
+        {"dPBishop.png", "nPBishop.png", "uPBishop.png"},
+        {"dPRook.png", "nPRook.png", "uPRook.png"},
+    }, COUNT);
+
+    /** This class only holds constants, and is never instantiated.
+     */
+    private PieceType () {
+    }
+
+    /** Returns the bitboard index of a type with a given allegiance.
+     * @param   allegiance  The allegiance of the piece. Either 1, 0 or -1.
+     * @param   type        The type code of the piece.
+     * @return              The index of the bitboard holding such pieces.
+     */
+    public static int index (int allegiance, int type) {
+        return (allegiance + 1) * COUNT + type;
+    }
+
+    /** Returns the code a piece of a given type and allegiance is stored as on the board.
+     * A code fits in a byte: the type in the low 5 bits,
+     * and the allegiance plus 1 above them, which is 0 for the top player,
+     * 1 for a mercenary and 2 for the bottom player.
+     * The code of an empty tile is 0.
+     * @param   allegiance  The allegiance of the piece. Either 1, 0 or -1.
+     * @param   type        The type code of the piece.
+     * @return              The piece code, which is also its bitboard index.
+     */
+    public static int code (int allegiance, int type) {
+        return type == EMPTY ? 0 : index(allegiance, type);
+    }
+
+    /** Returns the type of a piece code.
+     * @param   code        The piece code.
+     * @return              The type code.
+     */
+    public static int typeOf (int code) {
+        return code & (COUNT - 1);
+    }
+
+    /** Returns the allegiance of a piece code.
+     * @param   code        The piece code.
+     * @return              The allegiance, or 0 for an empty tile.
+     */
+    public static int allegianceOf (int code) {
+        return code == 0 ? 0 : code / COUNT - 1;
+    }
+
+    /** Returns the name of a type.
+     * @param   type        The type code.
+     * @return              The name, such as "Silver General".
+     */
+    public static String getName (int type) {
+        return NAMES[type];
+    }
+
+    /** Returns the 2 character representations of a type.
+     * The array is shared, and must not be changed.
+     * @param   type        The type code.
+     * @return              One representation per allegiance, indexed by allegiance plus 1.
+     */
+    static String[] getCharacters (int type) {
+        return CHARACTERS[type];
+    }
+
+    /** Returns the image files of a type.
+     * The array is shared, and must not be changed.
+     * @param   type        The type code.
+     * @return              One image file per allegiance, indexed by allegiance plus 1.
+     */
+    static String[] getImageNames (int type) {
+        return IMAGE_NAMES[type];
+    }
+
+    /** Returns whether a type code stands for a piece,
+     * which is every standard type and every custom type that has been defined.
+     * @param   type        The type code.
+     * @return              Whether the type has a name.
+     */
+    public static boolean isDefined (int type) {
+        return type > EMPTY && type < COUNT && NAMES[type] != null;
+    }
+
+    /** Returns the SFEN letter of a type.
+     * @param   type        The type code.
+     * @return              The upper case letter, or a space for a promoted type.
+     */
+    public static char getLetter (int type) {
+        return LETTERS[type];
+    }
+
+    /** Returns the type written with a given SFEN letter.
+     * @param   letter      The letter, in either case.
+     * @return              The unpromoted type code, or -1 if no type has that letter.
+     */
+    public static int typeOfLetter (char letter) {
+        letter = Character.toUpperCase(letter);
+        for (int type = PAWN; type < COUNT && letter != ' '; type++) {
+            if (LETTERS[type] == letter) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    /** Gives a custom type its name, letter, characters and images.
+     * The characters are the letter, in lower case for the top player,
+     * followed by a space, or by "+" for a promoted type, as for the standard pieces.
+     * @param   type        The custom type code, from FIRST_CUSTOM up.
+     * @param   name        The name of the type, such as "Shining Gundam".
+     * @param   letter      The SFEN letter of the type, or a space for a promoted type.
+     * @param   letterShown The letter shown in its characters;
+     *                      for a promoted type, the letter of the type it promotes from.
+     * @param   image       The image file name of the type without its prefix,
+     *                      such as "Gundam.png" for "dGundam.png" and "uGundam.png".
+     */
+    static void define (int type, String name, char letter, char letterShown, String image) {
+        boolean promoted = letter == ' ';
+        char upper = Character.toUpperCase(letterShown);
+        char lower = Character.toLowerCase(letterShown);
+        NAMES[type] = name;
+        LETTERS[type] = Character.toUpperCase(letter);
+        CHARACTERS[type] = new String[]{lower + (promoted ? "+" : " "), upper + (promoted ? "*" : "#"), upper + (promoted ? "+" : " ")};
+        IMAGE_NAMES[type] = new String[]{"d" + image, "n" + image, "u" + image};
+    }
+}
@@ -15,31 +15,16 @@ public abstract class PromotablePiece extends Piece {
         super(x, y, allegiance);
     }
     
-    protected abstract boolean isValidNonDropMove(GameState state, int x, int y);
-
     /** Returns whether or not this PromotablePiece can promote.
      * @return  Whether the pawn can promote 
      * in its current location.
      */
     protected boolean isPromotable () {
-        /* Uses the formula:
-        (5+a)a &lt; ay,
-        where a is the allegiance number, 
-        and y is the y-value of this pawn.
-        If allegiance is +!, 
-        then pawns promote in ranks 7, 8 and 9.
-        If allegiance is -1, 
-        then pawns promote in ranks 1, 2 and 3.
-        If allegiance is +1, 
-        the formula is 6 &lt; y, 
-        which is true for ranks 7, 8 and 9.
-        If allegiance is -1,
-        the formula is -4 &lt; -y,
-        which is true for ranks 1, 2 and 3.
-        Therefore the function works 
-        for all necessary occasions.*/
-        return ((4 + this.allegiance) * this.allegiance 
-                < this.y * this.allegiance);
+        /* The promotion zone is the last ranks of this piece's board:
+         * on the standard board, ranks 7, 8 and 9 for an allegiance of 1,
+         * and ranks 1, 2 and 3 for an allegiance of -1.
+         */
+        return PieceRules.canPromote(this.geometry, this.type, this.allegiance, this.y);
     }
 
     protected abstract Piece promote();
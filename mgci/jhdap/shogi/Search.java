@@ -0,0 +1,600 @@
+package mgci.jhdap.shogi;
+
+/** A Class that chooses the computer player's moves,
+ * by an iterative-deepening alpha-beta search.
+ * Each iteration searches the position one ply deeper than the last,
+ * trying the best move of the last iteration first,
+ * until the depth limit is reached or the time for the move runs out.
+ * The depth and time limits set how strong, and how slow, the computer player is.
+ * <br><br>
+ * The search makes and unmakes packed moves on its own copy of the GameState,
+ * picking moves with one MovePicker per ply, so it allocates nothing once it has started.
+ * The clock is read at every node, so a search stops on time however deep it is,
+ * and an iteration cut short is thrown away in favour of the last one to finish.
+ * Each position searched is stored in a TranspositionTable, whose best move is tried first
+ * when the position is reached again, and whose score is used instead if it was searched deep enough.
+ * After it come captures, then the killer moves, the quiet moves that last cut the search off at the same ply,
+ * then other quiet moves by their history; the moves of each stage are only generated if none before cut it off.
+ * Captures that do not lose material by static exchange evaluation, and every reply to a check,
+ * are searched past the depth limit until the position is quiet,
+ * and quiet positions are scored by Evaluation.
+ * <br><br>
+ * The search runs on several threads at once (lazy SMP).
+ * Each thread searches the whole position with its own copy of the GameState, its own MovePickers,
+ * and its own killer moves and history, and every other one starts a ply deeper.
+ * They share nothing but the TranspositionTable, through which each finds the others' results,
+ * so the threads spread out over the tree without any other coordination.
+ * The thread that called findMove chooses the move, and stops the others once it has.
+ * <br><br>
+ * A search is meant to run on a thread of its own, such as a SwingWorker's,
+ * and may be stopped from any other thread.
+ */
+public class Search {
+    /** The most plies a search goes from the root, quiescence included. */
+    public static final int MAX_PLY = 64;
+
+    /** The score of a side that gives checkmate on the next move.
+     * A mate found further away scores one less for each ply to it.
+     */
+    public static final int MATE = 30000;
+
+    /** A score above any other. */
+    private static final int INFINITY = MATE + 1;
+
+    /** The depth limit of a new Search, in plies. */
+    public static final int DEFAULT_DEPTH = MAX_PLY;
+
+    /** The time limit of a new Search, in milliseconds. */
+    public static final long DEFAULT_TIME = 2000L;
+
+    /** The most threads a search may run on. */
+    public static final int MAX_THREADS = 256;
+
+    /** The most a quiet move's history may reach before every history of its thread is halved. */
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    /** The most plies an iteration searches to. */
+    private int maxDepth = DEFAULT_DEPTH;
+
+    /** The time a search may take, in milliseconds. */
+    private long moveTime = DEFAULT_TIME;
+
+    /** The table of positions already searched, shared by the threads
+     * and kept from one search to the next.
+     */
+    private TranspositionTable table = new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES);
+
+    /** The search of each thread, the first being that of the thread calling findMove.
+     * Kept from one search to the next, with their histories.
+     */
+    private Worker[] workers = {new Worker(0)};
+
+    /** The System.nanoTime at which the current search stops. */
+    private long deadline;
+
+    /** Whether another thread has asked the current search to stop. */
+    private volatile boolean stopRequested;
+
+    /** Whether the thread calling findMove has chosen its move, so that the others may stop. */
+    private volatile boolean finished;
+
+    /** Constructs a Search with the default depth and time limits,
+     * on as many threads as there are processors.
+     */
+    public Search () {
+        this.setThreads(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Returns the most plies an iteration searches to.
+     * @return              The depth limit.
+     */
+    public int getMaxDepth () {
+        return this.maxDepth;
+    }
+
+    /** Sets the most plies an iteration searches to.
+     * @param   maxDepth    The depth limit, from 1 to MAX_PLY.
+     * @throws  IllegalArgumentException
+     *                      If the depth limit is out of range.
+     */
+    public void setMaxDepth (int maxDepth) {
+        if (maxDepth < 1 || maxDepth > MAX_PLY) {
+            throw new IllegalArgumentException("The depth must be from 1 to " + MAX_PLY + ", not " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /** Returns the time a search may take.
+     * @return              The time limit, in milliseconds.
+     */
+    public long getMoveTime () {
+        return this.moveTime;
+    }
+
+    /** Sets the time a search may take.
+     * The first iteration always finishes, so that there is a move to play.
+     * @param   moveTime    The time limit, in milliseconds, at least 1.
+     * @throws  IllegalArgumentException
+     *                      If the time limit is not positive.
+     */
+    public void setMoveTime (long moveTime) {
+        if (moveTime < 1) {
+            throw new IllegalArgumentException("The time must be at least 1 millisecond, not " + moveTime);
+        }
+        this.moveTime = moveTime;
+    }
+
+    /** Returns the number of threads a search runs on.
+     * @return              The thread count, the thread calling findMove included.
+     */
+    public int getThreads () {
+        return this.workers.length;
+    }
+
+    /** Sets the number of threads a search runs on, from the next search on.
+     * @param   threads     The thread count, the thread calling findMove included,
+     *                      from 1 to MAX_THREADS.
+     * @throws  IllegalArgumentException
+     *                      If the thread count is out of range.
+     */
+    public void setThreads (int threads) {
+        if (threads < 1 || threads > MAX_THREADS) {
+            throw new IllegalArgumentException("The threads must be from 1 to " + MAX_THREADS + ", not " + threads);
+        }
+        Worker[] resized = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            resized[i] = i < this.workers.length ? this.workers[i] : new Worker(i);
+        }
+        this.workers = resized;
+    }
+
+    /** Returns the table of positions already searched.
+     * @return              The transposition table.
+     */
+    public TranspositionTable getTable () {
+        return this.table;
+    }
+
+    /** Sets the table of positions already searched, such as a larger one,
+     * or one shared with other searches.
+     * @param   table       The transposition table.
+     */
+    public void setTable (TranspositionTable table) {
+        this.table = table;
+    }
+
+    /** Returns the number of nodes the last search visited.
+     * @return              The number of positions searched by every thread, quiescence included.
+     */
+    public long getNodes () {
+        long nodes = 0;
+        for (Worker worker : this.workers) {
+            nodes += worker.nodes;
+        }
+        return nodes;
+    }
+
+    /** Returns the depth of the last iteration of the last search to finish.
+     * @return              The depth, in plies.
+     */
+    public int getDepth () {
+        return this.workers[0].completedDepth;
+    }
+
+    /** Returns the score of the move chosen by the last search.
+     * @return              The score for the side that moved,
+     *                      within MAX_PLY of MATE or -MATE if a mate was found.
+     */
+    public int getScore () {
+        return this.workers[0].score;
+    }
+
+    /** Asks the current search to stop as soon as it can.
+     * It still returns the best move of its last finished iteration.
+     * May be called from any thread, but has no effect on a search that has not started yet,
+     * as findMove clears the request when it starts.
+     */
+    public void stop () {
+        this.stopRequested = true;
+    }
+
+    /** Finds the best move in a position, within the depth and time limits.
+     * The position is copied, and is not changed.
+     * Only one search runs on a Search at a time, as every search uses the same Workers:
+     * a call made while another is running waits for it to return,
+     * and a search only returns once its helper threads have stopped.
+     * @param   position    The position, with the player to move as its side to move.
+     * @return              The packed move, or 0 if the player has no legal move.
+     */
+    public synchronized int findMove (GameState position) {
+        Worker[] workers = this.workers;
+        this.deadline = System.nanoTime() + this.moveTime*1000000L;
+        this.stopRequested = false;
+        this.finished = false;
+        this.table.newSearch();
+        for (Worker worker : workers) {
+            worker.start(position);
+        }
+
+        Thread[] helpers = new Thread[workers.length - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Thread(workers[i + 1], "Search helper " + (i + 1));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        int move = workers[0].iterate();
+        this.finished = true;
+
+        // the helpers stop at their next node, and are waited for so that no helper is still searching
+        // when the next call starts its Workers
+        boolean interrupted = false;
+        for (Thread helper : helpers) {
+            while (helper.isAlive()) {
+                try {
+                    helper.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return move;
+    }
+
+    /** Converts a score to be stored in the table.
+     * A mate score counts plies from the root, so it is stored counting from the position instead,
+     * to be right wherever the position is reached again.
+     * @param   value       The score, counting mates from the root.
+     * @param   ply         The distance of the position from the root.
+     * @return              The score, counting mates from the position.
+     */
+    private static int toTable (int value, int ply) {
+        if (value >= MATE - MAX_PLY) {
+            return value + ply;
+        } else if (value <= -MATE + MAX_PLY) {
+            return value - ply;
+        }
+        return value;
+    }
+
+    /** Converts a score read from the table, undoing toTable.
+     * @param   value       The score, counting mates from the position.
+     * @param   ply         The distance of the position from the root.
+     * @return              The score, counting mates from the root.
+     */
+    private static int fromTable (int value, int ply) {
+        if (value >= MATE - MAX_PLY) {
+            return value - ply;
+        } else if (value <= -MATE + MAX_PLY) {
+            return value + ply;
+        }
+        return value;
+    }
+
+    /** Moves a move to the front of a list, keeping the order of the others.
+     * @param   moves       The list.
+     * @param   move        The packed move. Nothing changes if it is not in the list.
+     */
+    private static void moveToFront (MoveList moves, int move) {
+        int i = 0;
+        while (i < moves.size() && moves.get(i) != move) {
+            i++;
+        }
+        if (i == moves.size()) {
+            return;
+        }
+        for (; i > 0; i--) {
+            moves.set(i, moves.get(i-1));
+        }
+        moves.set(0, move);
+    }
+
+    /** The search of one thread, and everything it changes as it searches.
+     */
+    private final class Worker implements Runnable {
+        /** The number of the thread, 0 for the thread calling findMove. */
+        private final int id;
+
+        /** The position being searched, a copy of the one asked about. */
+        private GameState state;
+
+        /** The moves of the root, the best of the last iteration first. */
+        private final MoveList rootMoves = new MoveList();
+
+        /** The move picker of each ply, indexed by ply. */
+        private final MovePicker[] pickers = new MovePicker[MAX_PLY + 1];
+
+        /** The two quiet moves that last cut the search off at each ply, indexed by ply,
+         * the latest first, or 0.
+         */
+        private final int[][] killers = new int[MAX_PLY + 1][2];
+
+        /** How much each quiet move has cut the search off, weighted by depth,
+         * indexed by the piece code of the piece moved or dropped, and then by the square it goes to.
+         */
+        private final int[][] history = new int[3*PieceType.COUNT][BoardGeometry.MAX_SQUARES];
+
+        /** Whether the current iteration has been cut short. */
+        private boolean stopped;
+
+        /** The best move of the iteration being searched. */
+        private int iterationMove;
+
+        /** The nodes visited by the current or last search. */
+        private long nodes;
+
+        /** The depth of the last iteration to finish. */
+        private int completedDepth;
+
+        /** The score of the last iteration to finish, for the side to move. */
+        private int score;
+
+        Worker (int id) {
+            this.id = id;
+            for (int i = 0; i < this.pickers.length; i++) {
+                this.pickers[i] = new MovePicker();
+            }
+        }
+
+        /** Readies this thread's search of a position.
+         * The history of the last search is kept, but halved,
+         * as the moves that were good then may not be now, and the killer moves are forgotten.
+         * @param   position    The position, which is copied.
+         */
+        void start (GameState position) {
+            this.state = new GameState(position);
+            this.stopped = false;
+            this.nodes = 0;
+            this.completedDepth = 0;
+            this.score = 0;
+            this.halveHistory();
+            for (int[] plyKillers : this.killers) {
+                plyKillers[0] = 0;
+                plyKillers[1] = 0;
+            }
+        }
+
+        /** Searches as a helper thread, until the thread calling findMove has chosen its move.
+         */
+        @Override
+        public void run () {
+            this.iterate();
+        }
+
+        /** Searches the position one ply deeper at a time,
+         * until the depth limit is reached, the search is stopped, or a mate is found.
+         * Every other helper thread starts a ply deeper, so that the threads do not all search in step.
+         * @return              The best move of the last iteration to finish,
+         *                      or 0 if the player has no legal move.
+         */
+        int iterate () {
+            MoveList moves = this.rootMoves;
+            MovePicker picker = this.pickers[0];
+            picker.start(this.state, 0, 0, 0, this.history);
+            moves.clear();
+            for (int move = picker.next(); move != 0; move = picker.next()) {
+                moves.add(move);
+            }
+            if (moves.size() == 0) {
+                return 0;
+            }
+            for (int depth = 1 + this.id % 2; depth <= Search.this.maxDepth; depth++) {
+                int iterationScore = this.searchRoot(depth);
+                if (this.stopped) {
+                    break;
+                }
+                this.completedDepth = depth;
+                this.score = iterationScore;
+                moveToFront(moves, this.iterationMove);
+                if (moves.size() == 1 || Math.abs(iterationScore) >= MATE - MAX_PLY) {
+                    break;
+                }
+            }
+            return moves.get(0);
+        }
+
+        /** Searches every root move to a given depth,
+         * keeping the best in iterationMove.
+         * @param   depth       The depth of the iteration.
+         * @return              The score of the best move, or anything if the iteration is cut short.
+         */
+        private int searchRoot (int depth) {
+            MoveList moves = this.rootMoves;
+            int alpha = -INFINITY;
+            this.iterationMove = moves.get(0);
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                this.state.makeMove(move);
+                int value = -this.alphaBeta(depth - 1, -INFINITY, -alpha, 1);
+                this.state.unmakeMove();
+                if (this.stopped) {
+                    return alpha;
+                }
+                if (value > alpha) {
+                    alpha = value;
+                    this.iterationMove = move;
+                }
+            }
+            return alpha;
+        }
+
+        /** Searches a position to a given depth.
+         * A player in check searches one ply deeper, so that mates are not cut off by the depth limit.
+         * @param   depth       The plies left to search, before quiescence.
+         * @param   alpha       The score the player to move is already sure of.
+         * @param   beta        The score the other player is already sure of, negated.
+         * @param   ply         The distance from the root.
+         * @return              The score for the player to move, between alpha and beta,
+         *                      or anything if the search is stopped.
+         */
+        private int alphaBeta (int depth, int alpha, int beta, int ply) {
+            if (depth <= 0) {
+                return this.quiesce(alpha, beta, ply);
+            } else if (this.isOutOfTime()) {
+                return 0;
+            }
+            this.nodes++;
+            if (ply >= MAX_PLY) {
+                return Evaluation.evaluate(this.state);
+            }
+            TranspositionTable table = Search.this.table;
+            long key = this.state.getKey();
+            long entry = table.probe(key);
+            if (entry != 0L && TranspositionTable.getDepth(entry) >= depth) {
+                int value = fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT) {
+                    return Math.max(alpha, Math.min(beta, value));
+                } else if (bound == TranspositionTable.LOWER && value >= beta) {
+                    return beta;
+                } else if (bound == TranspositionTable.UPPER && value <= alpha) {
+                    return alpha;
+                }
+            }
+            int side = this.state.getSideToMove();
+            int searchDepth = depth;
+            if (this.state.isKingInCheck(side)) {
+                searchDepth++;
+            }
+            int[] plyKillers = this.killers[ply];
+            MovePicker picker = this.pickers[ply];
+            picker.start(this.state, entry != 0L ? TranspositionTable.getMove(entry) : 0,
+                         plyKillers[0], plyKillers[1], this.history);
+            int bestMove = 0;
+            int bound = TranspositionTable.UPPER;
+            boolean anyMove = false;
+            for (int move = picker.next(); move != 0; move = picker.next()) {
+                anyMove = true;
+                this.state.makeMove(move);
+                int value = -this.alphaBeta(searchDepth - 1, -beta, -alpha, ply + 1);
+                this.state.unmakeMove();
+                if (this.stopped) {
+                    return 0;
+                }
+                if (value > alpha) {
+                    alpha = value;
+                    bestMove = move;
+                    bound = TranspositionTable.EXACT;
+                    if (alpha >= beta) {
+                        bound = TranspositionTable.LOWER;
+                        if (PackedMove.getCaptured(move) == 0) {
+                            this.addHistory(side, move, depth);
+                            if (plyKillers[0] != move) {
+                                plyKillers[1] = plyKillers[0];
+                                plyKillers[0] = move;
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+            if (!anyMove) {
+                return -MATE + ply;
+            }
+            table.store(key, bestMove, toTable(alpha, ply), depth, bound);
+            return bound == TranspositionTable.LOWER ? beta : alpha;
+        }
+
+        /** Searches the captures of a position, until it is quiet.
+         * The player to move may stand on the score of the position instead of capturing,
+         * unless in check, when every legal move is searched.
+         * Otherwise a capture that loses material in the exchange that follows it is not searched,
+         * as standing pat already scores better.
+         * Only in check are the quiet moves generated at all.
+         * @param   alpha       The score the player to move is already sure of.
+         * @param   beta        The score the other player is already sure of, negated.
+         * @param   ply         The distance from the root.
+         * @return              The score for the player to move, between alpha and beta,
+         *                      or anything if the search is stopped.
+         */
+        private int quiesce (int alpha, int beta, int ply) {
+            if (this.isOutOfTime()) {
+                return 0;
+            }
+            this.nodes++;
+            if (ply >= MAX_PLY) {
+                return Evaluation.evaluate(this.state);
+            }
+            MovePicker picker = this.pickers[ply];
+            boolean inCheck = this.state.isKingInCheck(this.state.getSideToMove());
+            if (inCheck) {
+                picker.start(this.state, 0, 0, 0, this.history);
+            } else {
+                int standPat = Evaluation.evaluate(this.state);
+                if (standPat >= beta) {
+                    return beta;
+                } else if (standPat > alpha) {
+                    alpha = standPat;
+                }
+                picker.startCaptures(this.state);
+            }
+            boolean anyMove = false;
+            for (int move = picker.next(); move != 0; move = picker.next()) {
+                anyMove = true;
+                if (!inCheck && this.state.getExchangeValue(move) < 0) {
+                    continue;
+                }
+                this.state.makeMove(move);
+                int value = -this.quiesce(-beta, -alpha, ply + 1);
+                this.state.unmakeMove();
+                if (this.stopped) {
+                    return 0;
+                }
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        return beta;
+                    }
+                }
+            }
+            if (inCheck && !anyMove) {
+                return -MATE + ply;
+            }
+            return alpha;
+        }
+
+        /** Checks whether this thread has to stop, because the search was asked to,
+         * its time is up, or, for a helper thread, the move has been chosen.
+         * The first iteration of the thread calling findMove is never timed out,
+         * so that there is always a move to play.
+         * @return              Whether the search is stopped.
+         */
+        private boolean isOutOfTime () {
+            if (!this.stopped && (Search.this.stopRequested
+                                  || this.id != 0 && Search.this.finished
+                                  || this.completedDepth > 0 && System.nanoTime() - Search.this.deadline >= 0)) {
+                this.stopped = true;
+            }
+            return this.stopped;
+        }
+
+        /** Adds to the history of a quiet move that cut the search off,
+         * more for a deeper search, as its cut-off saved more.
+         * Every history is halved once one grows past HISTORY_LIMIT,
+         * so that they stay below the ordering score of a promotion.
+         * @param   side        The allegiance of the player that made the move.
+         * @param   move        The packed move.
+         * @param   depth       The depth it was searched to.
+         */
+        private void addHistory (int side, int move, int depth) {
+            int[] row = this.history[MovePicker.getHistoryRow(side, move)];
+            int to = PackedMove.getTo(move);
+            row[to] += depth*depth;
+            if (row[to] > HISTORY_LIMIT) {
+                this.halveHistory();
+            }
+        }
+
+        /** Halves the history of every quiet move.
+         */
+        private void halveHistory () {
+            for (int[] row : this.history) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+        }
+    }
+}
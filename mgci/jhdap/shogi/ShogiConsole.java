@@ -1,6 +1,8 @@
 package mgci.jhdap.shogi;
 
 import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
 
 /** Experimental debug console for shogi GUI.
  * 
@@ -65,6 +67,12 @@ public class ShogiConsole extends CommandLineInterface
 		commands.add(new BoardOffset ("^b os( \\d+ \\d+)?$", 
 				"b os\t\tsets the board offset relative to the top left corner of JPanel"));
 
+		commands.add(new Bench ("^bench( \\d+| alloc)?$", 
+				"bench\t\ttimes the rules engine over a fixed set of positions"
+						+"\n\t\tfor the given milliseconds per benchmark, 1000 by default"
+						+"\n\t\tand prints the time and bytes allocated per call"
+						+"\n\t\tbench alloc checks that no benchmark allocates once warmed up"));
+
 		commands.add(new Choices ("^choices \\d[a-i\\d]$", 
 				"choices\t\tdraws all possible moves of the piece at XY"
 						+"\n\t\tNote: there is currently a strange bug where" 
@@ -95,6 +103,18 @@ public class ShogiConsole extends CommandLineInterface
 		commands.add(new DumpState ("^dump state$", 
 				"dump state\tcalls the toString() method of this GameState"));	
 
+		commands.add(new Engine ("^engine( (side -?[01]|depth \\d+|time \\d+|hash \\d+|threads \\d+))?$", 
+				"engine\t\tsets up the computer player, or prints its settings"
+						+"\n\t\tengine side sets the player it plays"
+						+"\n\t\t1 = bottom player"
+						+"\n\t\t-1 = top player"
+						+"\n\t\t0 = neither"
+						+"\n\t\tengine depth sets the most plies it searches"
+						+"\n\t\tengine time sets the milliseconds it searches per move"
+						+"\n\t\tengine hash sets the megabytes of its transposition table,"
+						+"\n\t\trounded down to a power of two, and clears it"
+						+"\n\t\tengine threads sets the number of threads it searches on"));
+
 		commands.add(new Exit ("^exit$", 
 				"exit\t\texits the program"));
 
@@ -116,9 +136,21 @@ public class ShogiConsole extends CommandLineInterface
 		commands.add(new Param ("^param$", 
 				"param\t\tlists the regex format of all valid commands"));
 
+		commands.add(new PerftCommand ("^perft (\\d+( \\d+)?|suite( \\d+)?)$", 
+				"perft\t\tcounts the move paths of the given depth from the current board"
+						+"\n\t\tand lists the count after each first move"
+						+"\n\t\tan optional second number splits the count across that many threads"
+						+"\n\t\tperft suite checks the known counts of the perft suite,"
+						+"\n\t\tup to the given depth if there is one"));
+
 		commands.add(new PieceSize ("^p size( \\d+ \\d+)?$", 
 				"p size\t\tsets the size of the shogi pieces"));
 
+		commands.add(new Pieces ("^pieces load [\\w\\p{Punct} ]+$", 
+				"pieces load\tloads the custom piece definitions of the given file"
+						+"\n\t\tpath is relative to the parent directory (\"Shogi/\")"
+						+"\n\t\tthe pieces can then be placed with sfen"));
+
 		commands.add(new Player ("^player( -?1)?$", 
 				"player\t\tsets the current player"					
 						+"\n\t\t1 = bottom player"
@@ -141,6 +173,16 @@ public class ShogiConsole extends CommandLineInterface
 		commands.add(new Reset ("^reset$", 
 				"reset\t\tresets shogi board"));	
 
+		commands.add(new See ("^see (\\d[a-i\\d]|suite)$", 
+				"see\t\tprints what the player to move wins by capturing on the given tile"
+						+"\n\t\tif both players go on capturing there"
+						+"\n\t\tsee suite checks the known values of the exchange suite"));
+
+		commands.add(new Sfen ("^sfen( [\\w\\p{Punct} ]+)?$", 
+				"sfen\t\tsets the board to the given SFEN position,"
+						+"\n\t\tor prints the SFEN position of the board;"
+						+"\n\t\ta '~' before a piece makes it a mercenary"));
+
 		commands.add(new ShowLast ("^show last( [01])?$", 
 				"show last\t\tenables or disables the indication of the last move"));
 
@@ -167,6 +209,19 @@ public class ShogiConsole extends CommandLineInterface
 	}
 
 
+	/** Called when the computer player has chosen its move.
+	 * Prints the move and how far the search went.
+	 * 
+	 * @param packed		the packed move, or 0 if there is none
+	 * @param search		the search that chose it
+	 */
+	public void logComputerMove (int packed, Search search)
+	{
+		println ("Computer plays " + (packed == 0 ? "nothing" : PackedMove.toString (packed, gui.board.state.getGeometry ())) 
+				+ " (depth " + search.getDepth () + ", score " + search.getScore () 
+				+ ", " + search.getNodes () + " nodes)");
+	}
+
 	/** Prints a configuration message.
 	 * 
 	 * @param config		the name of the changed field
@@ -352,6 +407,43 @@ public class ShogiConsole extends CommandLineInterface
 	}
 
 
+	private class Bench extends Command
+	{
+		public Bench(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String[] parameters = command.split (" ");
+			Benchmark benchmark = new Benchmark ();
+
+			if (parameters.length == 2 && parameters[1].equals ("alloc"))
+			{
+				for (int i = 0; i < Benchmark.getCount (); i++)
+				{
+					double bytes = benchmark.checkAllocation (i);
+					if (bytes < 0)
+					{
+						println ("This JVM does not count allocated bytes.");
+						return;
+					}
+					else if (bytes == 0)
+						println ("ok    " + Benchmark.getName (i));
+					else
+						logError ("FAIL  " + Benchmark.getName (i) + String.format (" allocates %.1f B/call", bytes));
+				}
+			}
+			else
+			{
+				long millis = parameters.length == 2 ? Long.parseLong (parameters[1]) : 1000;
+				for (int i = 0; i < Benchmark.getCount (); i++)
+					println (benchmark.run (i, millis));
+			}
+		}
+	}
+
 	private class BoardOffset extends Command
 	{
 		public BoardOffset(String regex, String detail) {
@@ -577,6 +669,67 @@ public class ShogiConsole extends CommandLineInterface
 	}
 
 
+	private class Engine extends Command
+	{
+		public Engine(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String[] parameters = command.split (" ");
+			if (parameters.length == 3)
+			{
+				try
+				{
+					if (parameters[1].equals ("side"))
+					{
+						gui.board.stopComputerTurn ();
+						gui.board.computerPlayer = Integer.parseInt (parameters[2]);
+						logConfig ("computer player", parameters[2]);
+						gui.board.playComputerTurn ();
+					}
+					else if (parameters[1].equals ("depth"))
+					{
+						gui.board.search.setMaxDepth (Integer.parseInt (parameters[2]));
+						logConfig ("search depth", parameters[2]);
+					}
+					else if (parameters[1].equals ("time"))
+					{
+						gui.board.search.setMoveTime (Long.parseLong (parameters[2]));
+						logConfig ("search time", parameters[2] + " ms");
+					}
+					else if (parameters[1].equals ("threads"))
+					{
+						gui.board.search.setThreads (Integer.parseInt (parameters[2]));
+						logConfig ("search threads", parameters[2]);
+					}
+					else
+					{
+						TranspositionTable table = new TranspositionTable (Integer.parseInt (parameters[2]));
+						gui.board.search.setTable (table);
+						logConfig ("hash size", table.getMegabytes () + " MB");
+					}
+				}
+				catch (IllegalArgumentException e)
+				{
+					logError (e.getMessage ());
+				}
+				catch (OutOfMemoryError e)
+				{
+					logError ("Not enough memory for a hash of " + parameters[2] + " MB.");
+				}
+			}
+			else
+				println ("computer player = " + gui.board.computerPlayer 
+						+ ", search depth = " + gui.board.search.getMaxDepth ()
+						+ ", search time = " + gui.board.search.getMoveTime () + " ms"
+						+ ", hash size = " + gui.board.search.getTable ().getMegabytes () + " MB"
+						+ ", search threads = " + gui.board.search.getThreads ());
+		}
+	}
+
 	private class Exit extends Command
 	{
 		public Exit(String regex, String detail) {
@@ -712,6 +865,91 @@ public class ShogiConsole extends CommandLineInterface
 		}
 	}
 
+	private class PerftCommand extends Command
+	{
+		/** The size of the table shared by the threads of a split count. 
+		 */
+		private static final int PERFT_HASH_MEGABYTES = 256;
+
+		public PerftCommand(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String[] parameters = command.split(" ");
+
+			if (parameters[1].equals ("suite"))
+			{
+				int maxDepth = parameters.length == 3 ? Integer.parseInt (parameters[2]) : Integer.MAX_VALUE;
+				boolean passed = true;
+				for (int i = 0; i < Perft.getSuiteSize (); i++)
+				{
+					// each position gets a fresh GameState, so the board on screen is left alone
+					GameState state = new GameState ();
+					state.sfenBoardConfigure (Perft.getSuitePosition (i));
+					println (Perft.getSuitePosition (i));
+					for (int depth = 1; depth <= Math.min (maxDepth, Perft.getSuiteDepth (i)); depth++)
+					{
+						long expected = Perft.getSuiteCount (i, depth);
+						long start = System.nanoTime ();
+						long nodes = Perft.perft (state, depth);
+						long time = System.nanoTime () - start;
+						String result = "  depth " + depth + ": " + nodes + formatSpeed (nodes, time);
+						if (nodes == expected)
+							println (result);
+						else
+						{
+							logError (result + " expected " + expected);
+							passed = false;
+						}
+					}
+				}
+				if (passed)
+					println ("Perft suite passed.");
+				else
+					logError ("Perft suite failed.");
+			}
+			else
+			{
+				int depth = Integer.parseInt (parameters[1]);
+				int threads = parameters.length == 3 ? Integer.parseInt (parameters[2]) : 1;
+				GameState state = new GameState (gui.board.state);
+
+				if (depth == 0)
+					println ("1 node");
+				else
+				{
+					MoveList moves = new MoveList ();
+					MoveGenerator.generateLegalMoves (state, moves);
+					long[] counts = new long[moves.size ()];
+					long start = System.nanoTime ();
+					long nodes = threads > 1 
+							? Perft.divide (state, depth, moves, counts, threads, new PerftTable (PERFT_HASH_MEGABYTES))
+							: Perft.divide (state, depth, moves, counts);
+					long time = System.nanoTime () - start;
+
+					for (int i = 0; i < moves.size (); i++)
+						println (PackedMove.toString (moves.get (i), state.getGeometry ()) + ": " + counts[i]);
+					println (moves.size () + " moves, " + nodes + " nodes" + formatSpeed (nodes, time));
+				}
+			}
+		}
+
+		/** Formats the time taken by a count and its speed.
+		 * 
+		 * @param nodes		the number of paths counted
+		 * @param time		the time taken, in nanoseconds
+		 * @return the time and speed as a String
+		 */
+		private String formatSpeed (long nodes, long time)
+		{
+			long ms = time / 1000000;
+			return " in " + ms + " ms (" + (long) (nodes * 1e9 / Math.max (time, 1)) + " nodes/s)";
+		}
+	}
+
 	private class PieceSize extends Command
 	{
 		public PieceSize(String regex, String detail) {
@@ -735,6 +973,35 @@ public class ShogiConsole extends CommandLineInterface
 		}
 	}
 
+	private class Pieces extends Command
+	{
+		public Pieces(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String path = command.substring ("pieces load ".length ());
+			gui.board.stopComputerTurn ();
+			try
+			{
+				int[] types = PieceLoader.load (new File (path));
+				for (int type : types)
+					println ("Loaded " + PieceType.getName (type) + " as " + PieceType.getCharacters (type)[2].trim ());
+			}
+			catch (IOException e)
+			{
+				logError ("Could not read " + path + ": " + e.getMessage ());
+			}
+			catch (IllegalArgumentException e)
+			{
+				logError (path + ": " + e.getMessage ());
+			}
+			gui.board.playComputerTurn ();
+		}
+	}
+
 	private class Player extends Command
 	{
 		public Player(String regex, String detail) {
@@ -749,8 +1016,11 @@ public class ShogiConsole extends CommandLineInterface
 			{		
 				if (parameters[1] == "2")
 					parameters[1] = "-1";
+				gui.board.stopComputerTurn ();
 				gui.board.turn = Integer.parseInt(parameters[1]);
+				gui.board.state.setSideToMove (gui.board.turn);
 				logConfig("current player", parameters[1]);
+				gui.board.playComputerTurn ();
 			}
 			else
 				println ("current player = " + gui.board.turn);
@@ -793,6 +1063,102 @@ public class ShogiConsole extends CommandLineInterface
 		}		
 	}	
 
+	private class See extends Command
+	{
+		public See(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String[] parameters = command.split(" ");
+
+			if (parameters[1].equals ("suite"))
+			{
+				boolean passed = true;
+				for (int i = 0; i < Evaluation.getExchangeSuiteSize (); i++)
+				{
+					GameState state = new GameState ();
+					state.sfenBoardConfigure (Evaluation.getExchangeSuitePosition (i));
+					int square = Evaluation.getExchangeSuiteSquare (i);
+					int value = state.getExchangeValue (square, state.getSideToMove ());
+					int expected = Evaluation.getExchangeSuiteValue (i);
+					String result = Evaluation.getExchangeSuitePosition (i) + " on " 
+							+ new Tile (Bitboard.x (square), Bitboard.y (square)).getCode (1) + ": " + value;
+					if (value == expected)
+						println (result);
+					else
+					{
+						logError (result + " expected " + expected);
+						passed = false;
+					}
+				}
+				if (passed)
+					println ("Exchange suite passed.");
+				else
+					logError ("Exchange suite failed.");
+			}
+			else
+			{
+				Tile at = new Tile (parameters[1]);
+				if (at.isValid ())
+					println (parameters[1] + ": " 
+							+ gui.board.state.getExchangeValue (gui.board.state.getGeometry ().square (at.x, at.y), gui.board.turn));
+				else
+					logInvalidCoordinates (parameters[1]);
+			}
+		}
+	}
+
+	private class Sfen extends Command
+	{
+		public Sfen(String regex, String detail) {
+			super(regex, detail);
+		}
+
+		@Override
+		void execute(String command) 
+		{
+			String[] parameters = command.split (" ", 2);
+			if (parameters.length == 2)
+			{
+				// read into a new GameState, so a bad position leaves the board as it was
+				GameState state = new GameState ();
+				try
+				{
+					state.sfenBoardConfigure (parameters[1]);
+				}
+				catch (IllegalArgumentException e)
+				{
+					logError (e.getMessage ());
+					return;
+				}
+				gui.board.stopComputerTurn ();
+				gui.board.setState (state);
+				gui.board.turn = state.getSideToMove ();
+				gui.board.winner = 0;
+				gui.board.lastMoved = null;
+				gui.stats.reset (gui.board.turn);
+				gui.board.repaint ();
+				logConfig ("position", parameters[1]);
+
+				// a player with no legal move has lost, whether in check or not
+				int turn = gui.board.turn;
+				if (!MoveGenerator.hasAnyLegalMove (state, turn))
+				{
+					println ((state.isKingInCheck (turn) ? "Checkmate" : "Stalemate") 
+							+ ": player " + (turn == 1 ? 1 : 2) + " has no legal move");
+					gui.putWinner (-turn);
+				}
+				else
+					gui.board.playComputerTurn ();
+			}
+			else
+				println ("sfen = " + gui.board.state.toSfen ());
+		}
+	}
+
 	private class ShowLast extends Command
 	{
 		public ShowLast(String regex, String detail) {
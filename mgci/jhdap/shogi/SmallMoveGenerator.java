@@ -0,0 +1,315 @@
+package mgci.jhdap.shogi;
+
+/** A Class that generates the legal moves and drops of a position
+ * on a board that fits the low half of a Bitboard, such as the 5*5 of minishogi.
+ * It works as MoveGenerator does on the standard board, but as every tile of such a board,
+ * and so every piece, attacker and pin on it, is in the low half,
+ * each set of tiles is a single long, and the high half is never looked at.
+ * The attacks are those of the whole 9*9 grid, so they are kept to the tiles of the board
+ * by its BoardGeometry's mask.
+ * <br><br>
+ * Only MoveGenerator calls this class, for a board whose layout is LOW_HALF,
+ * and the drop rules and the adding of moves to a MoveList are shared with it.
+ */
+final class SmallMoveGenerator {
+    /** This class only holds static methods, and is never instantiated.
+     */
+    private SmallMoveGenerator () {
+    }
+
+    /** Adds legal moves and drops of a given allegiance to a MoveList.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are generated. Either 1 or -1.
+     * @param   only        The square of the only piece to move,
+     *                      MoveGenerator.ALL for every piece, or MoveGenerator.NONE for no piece.
+     * @param   dropType    The type code of the only piece to drop,
+     *                      MoveGenerator.ALL for every type, or MoveGenerator.NONE for no drops.
+     * @param   board       The tiles pieces on the board may move onto,
+     *                      such as the occupied tiles for captures only. Drops are not limited by it.
+     * @param   list        The list the moves are added to.
+     */
+    static void generate (GameState state, int allegiance, int only, int dropType, long board, MoveList list) {
+        int enemy = -allegiance;
+        int king = state.getKingSquare(allegiance);
+        BoardGeometry geometry = state.getGeometry();
+        long own = state.getOccupiedLow(allegiance);
+        long occupied = state.getAllOccupiedLow();
+        /* The tiles any piece may move onto: those on the board that do not hold one of its own pieces,
+         * out of those asked for.
+         */
+        long open = geometry.getMaskLow() & ~own & board;
+
+        /* The tiles that moves other than the King's may end on.
+         * Every tile of the board, unless the King is in check.
+         */
+        long target = geometry.getMaskLow();
+        /* The tiles behind the King on the lines of sliding checkers,
+         * which the attacker lookups would miss.
+         */
+        long shadow = 0L;
+        long pinned = 0L;
+
+        if (king != -1) {
+            long checkers = state.getAttackersLow(king, enemy);
+            int checks = Long.bitCount(checkers);
+            if (checks > 1) {
+                target = 0L;
+            } else if (checks == 1) {
+                target = checkers | blocks(state, enemy, king, Long.numberOfTrailingZeros(checkers));
+            }
+            for (; checkers != 0; checkers &= checkers - 1) {
+                int checker = Long.numberOfTrailingZeros(checkers);
+                int type = state.getTypeAt(checker);
+                if (PieceRules.isSlider(type) && Attacks.canSlide(state, enemy, type, checker, king)) {
+                    shadow |= Attacks.lineThrough(checker, king, 0) & Attacks.emptyBoardSlides(enemy, type, checker, 0);
+                }
+            }
+
+            /* A piece is pinned if it is the only piece between the King
+             * and an enemy slider that would otherwise reach the King.
+             */
+            for (long snipers = enemySliders(state, allegiance, king); snipers != 0; snipers &= snipers - 1) {
+                long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers), 0) & occupied;
+                if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                    pinned |= blockers;
+                }
+            }
+        }
+
+        if (only != MoveGenerator.NONE) {
+            long pieces = only == MoveGenerator.ALL ? own : 1L << only;
+            for (; pieces != 0; pieces &= pieces - 1) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                int type = state.getTypeAt(from);
+                long moves = Attacks.steps(allegiance, type, from, 0);
+                if (PieceRules.isSlider(type)) {
+                    moves |= Attacks.slides(state, allegiance, type, from, 0);
+                }
+                moves &= open;
+                if (from == king) {
+                    moves &= ~shadow;
+                } else {
+                    moves &= target;
+                    if ((pinned >>> from & 1L) != 0) {
+                        int pinner = pinner(state, allegiance, king, from);
+                        moves &= Attacks.between(king, pinner, 0) | 1L << pinner;
+                    }
+                }
+                for (; moves != 0; moves &= moves - 1) {
+                    int to = Long.numberOfTrailingZeros(moves);
+                    if (from != king || state.getAttackersLow(to, enemy) == 0) {
+                        MoveGenerator.addBoardMove(geometry, from, to, type, state.getTypeAt(to), allegiance, list);
+                    }
+                }
+            }
+        }
+
+        if (dropType != MoveGenerator.NONE) {
+            int first = dropType == MoveGenerator.ALL ? PieceType.PAWN : dropType;
+            int last = dropType == MoveGenerator.ALL ? PieceRules.getLastType() : dropType;
+            long empty = ~occupied & target;
+            for (int type = first; type <= last; type++) {
+                if (state.getHandCount(allegiance, type) != 0) {
+                    int files = MoveGenerator.filesHolding(state, allegiance, type);
+                    for (long drops = empty; drops != 0; drops &= drops - 1) {
+                        int to = Long.numberOfTrailingZeros(drops);
+                        if (MoveGenerator.isLegalDrop(state, allegiance, type, to, files)) {
+                            list.add(PackedMove.createDrop(type, to));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns whether a given allegiance has at least one legal move or drop,
+     * as MoveGenerator.hasAnyLegalMove does.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance whose moves are looked for. Either 1 or -1.
+     * @return              Whether any legal move or drop exists.
+     */
+    static boolean hasAnyLegalMove (GameState state, int allegiance) {
+        int enemy = -allegiance;
+        int king = state.getKingSquare(allegiance);
+        long mask = state.getGeometry().getMaskLow();
+        long own = state.getOccupiedLow(allegiance);
+        long open = mask & ~own;
+        long target = mask;
+
+        if (king != -1) {
+            long checkers = state.getAttackersLow(king, enemy);
+            int checks = Long.bitCount(checkers);
+            long shadow = 0L;
+            for (long rest = checkers; rest != 0; rest &= rest - 1) {
+                int checker = Long.numberOfTrailingZeros(rest);
+                int type = state.getTypeAt(checker);
+                if (PieceRules.isSlider(type) && Attacks.canSlide(state, enemy, type, checker, king)) {
+                    shadow |= Attacks.lineThrough(checker, king, 0) & Attacks.emptyBoardSlides(enemy, type, checker, 0);
+                }
+            }
+
+            for (long moves = Attacks.steps(allegiance, PieceType.KING, king, 0) & open & ~shadow; moves != 0; moves &= moves - 1) {
+                if (state.getAttackersLow(Long.numberOfTrailingZeros(moves), enemy) == 0) {
+                    return true;
+                }
+            }
+
+            if (checks > 1) {
+                return false;
+            } else if (checks == 1) {
+                int checker = Long.numberOfTrailingZeros(checkers);
+                if (canReach(state, allegiance, king, checker)) {
+                    return true;
+                }
+                target = blocks(state, enemy, king, checker);
+                for (long blocks = target; blocks != 0; blocks &= blocks - 1) {
+                    if (canReach(state, allegiance, king, Long.numberOfTrailingZeros(blocks))) {
+                        return true;
+                    }
+                }
+            } else {
+                for (long pieces = own & ~(1L << king); pieces != 0; pieces &= pieces - 1) {
+                    int from = Long.numberOfTrailingZeros(pieces);
+                    int type = state.getTypeAt(from);
+                    long moves = Attacks.steps(allegiance, type, from, 0);
+                    if (PieceRules.isSlider(type)) {
+                        moves |= Attacks.slides(state, allegiance, type, from, 0);
+                    }
+                    moves &= open;
+                    int pinner = moves != 0 ? pinner(state, allegiance, king, from) : -1;
+                    if (pinner != -1) {
+                        moves &= Attacks.between(king, pinner, 0) | 1L << pinner;
+                    }
+                    if (moves != 0) {
+                        return true;
+                    }
+                }
+            }
+        } else if (own != 0) {
+            return true;
+        }
+
+        long empty = ~state.getAllOccupiedLow() & target;
+        for (int type = PieceType.PAWN; type <= PieceRules.getLastType(); type++) {
+            if (state.getHandCount(allegiance, type) == 0) {
+                continue;
+            }
+            int files = MoveGenerator.filesHolding(state, allegiance, type);
+            for (long drops = empty; drops != 0; drops &= drops - 1) {
+                if (MoveGenerator.isLegalDrop(state, allegiance, type, Long.numberOfTrailingZeros(drops), files)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether a piece other than the King can legally move onto a given tile,
+     * while that King is in check from a single checker.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the moving piece.
+     * @param   king        The square of the King.
+     * @param   to          The tile to move onto.
+     * @return              Whether any such move exists.
+     */
+    private static boolean canReach (GameState state, int allegiance, int king, int to) {
+        for (long pieces = state.getAttackersLow(to, allegiance) & ~(1L << king); pieces != 0; pieces &= pieces - 1) {
+            int pinner = pinner(state, allegiance, king, Long.numberOfTrailingZeros(pieces));
+            if (pinner == -1 || to == pinner || (Attacks.between(king, pinner, 0) >>> to & 1L) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Finds the tiles a piece may move onto to block a check,
+     * which are none for a check by a step.
+     * @param   state       The current state of the game.
+     * @param   enemy       The allegiance of the checker.
+     * @param   king        The square of the King in check.
+     * @param   checker     The square of the checker.
+     * @return              The blocking tiles.
+     */
+    private static long blocks (GameState state, int enemy, int king, int checker) {
+        if (Attacks.canStep(enemy, state.getTypeAt(checker), checker, king)) {
+            return 0L;
+        }
+        return Attacks.between(king, checker, 0);
+    }
+
+    /** Finds the enemy sliders that would attack a King if nothing stood in their way.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the King.
+     * @param   king        The square of the King.
+     * @return              The squares of such sliders.
+     */
+    private static long enemySliders (GameState state, int allegiance, int king) {
+        int enemy = -allegiance;
+        long sliders = 0L;
+        for (int type : PieceRules.getSliders()) {
+            long pieces = state.getPiecesLow(enemy, type);
+            if (pieces != 0) {
+                sliders |= pieces & Attacks.emptyBoardSlides(allegiance, type, king, 0);
+            }
+        }
+        return sliders;
+    }
+
+    /** Finds the enemy slider a piece is pinned to its King by,
+     * if it is the only piece standing between them.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the piece and the King.
+     * @param   king        The square of the King.
+     * @param   square      The square of the piece.
+     * @return              The square of the pinning slider, or -1 if the piece is not pinned.
+     */
+    private static int pinner (GameState state, int allegiance, int king, int square) {
+        long occupied = state.getAllOccupiedLow();
+        for (long snipers = enemySliders(state, allegiance, king); snipers != 0; snipers &= snipers - 1) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            if ((Attacks.between(king, sniper, 0) & occupied) == 1L << square) {
+                return sniper;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns whether dropping a piece on a given square would checkmate the enemy King,
+     * as MoveGenerator.isDropMate does.
+     * @param   state       The current state of the game.
+     * @param   allegiance  The allegiance of the player dropping the piece.
+     * @param   type        The type code of the dropped piece.
+     * @param   to          The empty square the piece is dropped on.
+     * @return              Whether the drop would checkmate.
+     */
+    static boolean isDropMate (GameState state, int allegiance, int type, int to) {
+        int defender = -allegiance;
+        int king = state.getKingSquare(defender);
+        boolean slider = PieceRules.isSlider(type);
+        if (king == -1 || !(Attacks.canStep(allegiance, type, to, king)
+                            || slider && Attacks.canSlide(state, allegiance, type, to, king))) {
+            return false;
+        }
+        state.makeMove(PackedMove.createDrop(type, to), allegiance);
+        if (slider) {
+            boolean mate = !hasAnyLegalMove(state, defender);
+            state.unmakeMove();
+            return mate;
+        }
+        boolean mate = true;
+
+        long escapes = Attacks.steps(defender, PieceType.KING, king, 0) & state.getGeometry().getMaskLow()
+                     & ~state.getOccupiedLow(defender);
+        for (; mate && escapes != 0; escapes &= escapes - 1) {
+            mate = state.getAttackersLow(Long.numberOfTrailingZeros(escapes), allegiance) != 0;
+        }
+
+        long capturers = state.getAttackersLow(to, defender) & ~(1L << king);
+        for (; mate && capturers != 0; capturers &= capturers - 1) {
+            mate = pinner(state, defender, king, Long.numberOfTrailingZeros(capturers)) != -1;
+        }
+
+        state.unmakeMove();
+        return mate;
+    }
+}
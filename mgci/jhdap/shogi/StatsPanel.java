@@ -214,13 +214,23 @@ public class StatsPanel extends JPanel implements Runnable
 	/** Resets the timers and the move history. 
 	 */
 	public void reset ()
+	{
+		reset (1);
+	}
+
+	/** Resets the timers and the move history for a game
+	 * that starts with the given player to move, such as
+	 * a position loaded from SFEN.
+	 * 
+	 * @param turn		whose turn it is: 1 = player 1 ; -1 = player 2
+	 */
+	public void reset (int turn)
 	{
 		stopTimer ();
 		player1.reset();
 		player2.reset();
 		historyText.setText ("");
-		player1.setPlaying ();
-		turn = 1;
+		this.turn = turn;
 		startTimer ();
 	}
 
@@ -0,0 +1,198 @@
+package mgci.jhdap.shogi;
+
+/** A Class holding a hash table of search results, shared by several threads without locks.
+ * Each entry is keyed by a position's Zobrist key, and holds the best move found there,
+ * its score, the depth it was searched to, whether the score is exact or a bound,
+ * and the search it was stored in.
+ * A search that reaches a position again, by another order of the same moves
+ * or by a drop of the same piece on another move, looks it up instead of searching it again.
+ * <br><br>
+ * Entries are held in buckets of four, 64 bytes each, the size of a cache line,
+ * so that a lookup only has to read one or two lines from memory.
+ * A new entry replaces the entry of its bucket that is worth least,
+ * which is the shallowest, counting each search since the entry was stored as AGE_PLIES shallower.
+ * Deep results are kept over shallow ones, but not forever.
+ * <br><br>
+ * As in PerftTable, an entry is two longs: the key exclusive or'd with the data, and the data.
+ * Writes are not locked, so two threads may mix the halves of their entries,
+ * but a mixed entry no longer matches its key and is only lost, never misread.
+ */
+public final class TranspositionTable {
+    /** The bound of a score that is exact. */
+    public static final int EXACT = 3;
+
+    /** The bound of a score that is at least the score stored, as the search failed high. */
+    public static final int LOWER = 2;
+
+    /** The bound of a score that is at most the score stored, as the search failed low. */
+    public static final int UPPER = 1;
+
+    /** The size of a new table, in megabytes. */
+    public static final int DEFAULT_MEGABYTES = 16;
+
+    /** The most memory a table may take, in megabytes. */
+    public static final int MAX_MEGABYTES = 4096;
+
+    /** The number of entries in a bucket. */
+    private static final int BUCKET_SIZE = 4;
+
+    /** How many plies an entry's depth is worth less for each search since it was stored. */
+    private static final int AGE_PLIES = 8;
+
+    /** The bits of the data holding the move, as packed by PackedMove. */
+    private static final int MOVE_BITS = PackedMove.BITS;
+
+    /** The first bit of the score, held as a 16-bit signed number. */
+    private static final int SCORE_SHIFT = MOVE_BITS;
+
+    /** The first bit of the depth, held in 8 bits. */
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + 16;
+
+    /** The first bit of the bound, held in 2 bits. */
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;
+
+    /** The first bit of the search the entry was stored in, held in 8 bits. */
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + 2;
+
+    /** The entries, in buckets of BUCKET_SIZE, two longs each: the checked key and the data.
+     */
+    private final long[] entries;
+
+    /** The number of buckets minus one. The number of buckets is a power of two.
+     */
+    private final int mask;
+
+    /** The memory the table takes, in megabytes. */
+    private final int megabytes;
+
+    /** The number of the current search, stored with each entry to tell its age.
+     * Only its lowest 8 bits are used.
+     */
+    private volatile int generation;
+
+    /** Constructs an empty table of a given size.
+     * @param   megabytes   The memory the table takes, in megabytes.
+     *                      A power of two from 1 to MAX_MEGABYTES, or it is rounded down to one.
+     * @throws  IllegalArgumentException
+     *                      If the size is out of range.
+     */
+    public TranspositionTable (int megabytes) {
+        if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException("The hash size must be from 1 to " + MAX_MEGABYTES + " MB, not " + megabytes);
+        }
+        this.megabytes = Integer.highestOneBit(megabytes);
+        int buckets = (int) (((long) this.megabytes << 20) / (16*BUCKET_SIZE));
+        this.entries = new long[2*BUCKET_SIZE*buckets];
+        this.mask = buckets - 1;
+    }
+
+    /** Returns the memory the table takes.
+     * @return              Its size, in megabytes.
+     */
+    public int getMegabytes () {
+        return this.megabytes;
+    }
+
+    /** Starts a new search, so that the entries of earlier searches
+     * are replaced before the entries of this one.
+     */
+    public void newSearch () {
+        this.generation++;
+    }
+
+    /** Looks up the entry of a position.
+     * @param   key         The Zobrist key of the position.
+     * @return              The entry's data, to be read by getMove, getScore, getDepth and getBound,
+     *                      or 0 if the table does not hold the position.
+     */
+    public long probe (long key) {
+        int bucket = this.index(key);
+        for (int i = bucket; i < bucket + 2*BUCKET_SIZE; i += 2) {
+            long data = this.entries[i + 1];
+            if ((this.entries[i] ^ data) == key && data != 0L) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /** Stores the result of searching a position.
+     * It replaces the position's own entry if there is one,
+     * keeping its move if the new result has none,
+     * or else the entry of the bucket that is worth least.
+     * @param   key         The Zobrist key of the position.
+     * @param   move        The best packed move found, or 0 if none was.
+     * @param   score       The score, from -32768 to 32767.
+     * @param   depth       The depth searched to, from 0 to 255.
+     * @param   bound       EXACT, LOWER or UPPER.
+     */
+    public void store (long key, int move, int score, int depth, int bound) {
+        int bucket = this.index(key);
+        int generation = this.generation;
+        int victim = bucket;
+        int worst = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + 2*BUCKET_SIZE; i += 2) {
+            long data = this.entries[i + 1];
+            if ((this.entries[i] ^ data) == key && data != 0L) {
+                if (move == 0) {
+                    move = getMove(data);
+                }
+                victim = i;
+                break;
+            }
+            int worth = data == 0L ? Integer.MIN_VALUE
+                      : getDepth(data) - AGE_PLIES*((generation - (int) (data >>> GENERATION_SHIFT)) & 0xFF);
+            if (worth < worst) {
+                worst = worth;
+                victim = i;
+            }
+        }
+        long data = move
+                  | (long) (score & 0xFFFF) << SCORE_SHIFT
+                  | (long) depth << DEPTH_SHIFT
+                  | (long) bound << BOUND_SHIFT
+                  | (long) (generation & 0xFF) << GENERATION_SHIFT;
+        this.entries[victim] = key ^ data;
+        this.entries[victim + 1] = data;
+    }
+
+    /** Returns the move of an entry.
+     * @param   data        The entry's data, as given by probe.
+     * @return              The best packed move found, or 0 if none was.
+     */
+    public static int getMove (long data) {
+        return (int) data & (1 << MOVE_BITS) - 1;
+    }
+
+    /** Returns the score of an entry.
+     * @param   data        The entry's data, as given by probe.
+     * @return              The score, as stored.
+     */
+    public static int getScore (long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    /** Returns the depth of an entry.
+     * @param   data        The entry's data, as given by probe.
+     * @return              The depth the position was searched to.
+     */
+    public static int getDepth (long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /** Returns the bound of an entry.
+     * @param   data        The entry's data, as given by probe.
+     * @return              EXACT, LOWER or UPPER.
+     */
+    public static int getBound (long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    /** Finds the bucket of a position.
+     * @param   key         The Zobrist key of the position.
+     * @return              The index of the bucket's first long.
+     */
+    private int index (long key) {
+        return ((int) (key ^ key >>> 32) & this.mask) * 2*BUCKET_SIZE;
+    }
+}
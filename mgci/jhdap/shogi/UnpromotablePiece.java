@@ -14,8 +14,6 @@ public abstract class UnpromotablePiece extends Piece {
         super(x, y, allegiance);
     }
     
-    protected abstract boolean isValidNonDropMove(GameState state, int x, int y);
-
     /** Returns whether or not this piece can promote.
      * @return  Whether or not this piece can promote,
      * which is always false.
@@ -0,0 +1,60 @@
+package mgci.jhdap.shogi;
+
+import java.util.Random;
+
+/** A Class holding the random keys used to hash a GameState.
+ * A position's key is the exclusive or of one key per occupied square,
+ * one key per drop table count, and a key for the side to move.
+ * This lets the GameState update its key in constant time
+ * every time a single square or drop table count changes.
+ * <br><br>
+ * The keys come from a fixed seed,
+ * so the same position has the same key in every run of the program.
+ */
+public final class Zobrist {
+    /** The most pieces of one type that a drop table can hold.
+     * There are 18 pawns in a game, and no other type is more common.
+     */
+    public static final int MAX_HAND_COUNT = 18;
+
+    /** The key of each piece on each square,
+     * indexed by PieceType.index(allegiance, type) and then by square,
+     * for as many squares as the largest BoardGeometry has.
+     */
+    static final long[][] PIECES = new long[3*PieceType.COUNT][BoardGeometry.MAX_SQUARES];
+
+    /** The key of each drop table count,
+     * indexed by PieceType.index(allegiance, type) and then by count.
+     * The key of a count of 0 is 0, so an empty drop table adds nothing.
+     */
+    static final long[][] HANDS = new long[3*PieceType.COUNT][MAX_HAND_COUNT+1];
+
+    /** The key added when it is the top player (-1) to move. */
+    static final long SIDE;
+
+    static {
+        Random random = new Random(0x5348_4F47_49L);
+        for (int i = 0; i < PIECES.length; i++) {
+            for (int j = 0; j < Bitboard.SQUARES; j++) {
+                PIECES[i][j] = random.nextLong();
+            }
+            for (int j = 1; j <= MAX_HAND_COUNT; j++) {
+                HANDS[i][j] = random.nextLong();
+            }
+        }
+        SIDE = random.nextLong();
+        /* The squares past the 81 of a Bitboard only come after the rest,
+         * so that a position on the grid has the same key as before there were more.
+         */
+        for (int i = 0; i < PIECES.length; i++) {
+            for (int j = Bitboard.SQUARES; j < BoardGeometry.MAX_SQUARES; j++) {
+                PIECES[i][j] = random.nextLong();
+            }
+        }
+    }
+
+    /** This class only holds constants, and is never instantiated.
+     */
+    private Zobrist () {
+    }
+}